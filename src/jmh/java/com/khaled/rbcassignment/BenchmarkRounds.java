@@ -0,0 +1,73 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Rounds played by the benchmarks, the same for every run
+ */
+final class BenchmarkRounds {
+
+    static final int SIMULATION_ID        = 1;
+    static final int NUMBER_OF_GENERATORS = 6;
+
+    private BenchmarkRounds() {
+    }
+
+    /**
+     * Codecs of the round topics as configured in application.properties
+     */
+    static MessageCodecs messageCodecs() {
+        return new MessageCodecs(Arrays.asList(GameController.ROUND_START_TOPIC, GameController.ROUND_INPUT_TOPIC, GameController.ROUND_INPUT_BATCH_TOPIC,
+                GameController.ROUND_COMPLETED_TOPIC, GameController.ROUND_INPUT_AFTER_THE_FACT_TOPIC, GameController.ROUND_INPUT_AFTER_THE_FACT_BATCH_TOPIC));
+    }
+
+    static RoundStartDto roundStart(int roundNumber, String predictionStrategy) {
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSimulationId(SIMULATION_ID);
+        roundStartDto.setSeed(42);
+        roundStartDto.setNumberOfPartictipants(NUMBER_OF_GENERATORS + 3 + 1);
+        roundStartDto.setSeasonNumber(1);
+        roundStartDto.setRoundNumber(roundNumber);
+        roundStartDto.setPredictionStrategy(predictionStrategy);
+        roundStartDto.setStartedAtMicros(LatencyMetrics.nowMicros());
+        return roundStartDto;
+    }
+
+    static List<RoundInputDto> inputs(SourceEnum source, String namePrefix, int count, SplittableRandom random) {
+        List<RoundInputDto> inputs = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            RoundInputDto roundInputDto = new RoundInputDto();
+            roundInputDto.setSimulationId(SIMULATION_ID);
+            roundInputDto.setSource(source);
+            roundInputDto.setSourceName(namePrefix + i);
+            roundInputDto.setValue(random.nextInt(1, 100));
+            roundInputDto.setSeasonNumber(1);
+            roundInputDto.setRoundNumber(1);
+            inputs.add(roundInputDto);
+        }
+        return inputs;
+    }
+
+    static RoundResultDto roundResult(int roundNumber, int numberOfPlayers, SplittableRandom random) {
+        RoundResultDto roundResultDto = new RoundResultDto();
+        roundResultDto.setSimulationId(SIMULATION_ID);
+        roundResultDto.setSeasonNumber(1);
+        roundResultDto.setRoundNumber(roundNumber);
+        roundResultDto.setNumberOfParticipatns(NUMBER_OF_GENERATORS + numberOfPlayers);
+        roundResultDto.getGeneratorsInputsForCurrentRound().addAll(inputs(SourceEnum.GENERATOR, "Generator", NUMBER_OF_GENERATORS, random));
+        roundResultDto.getPlayersInputsForCurrentRound().addAll(inputs(SourceEnum.PLAYER, "Player", numberOfPlayers, random));
+        for (RoundInputDto player : roundResultDto.getPlayersInputsForCurrentRound()) {
+            roundResultDto.getResultForCurrentRound().put(player.getSourceName(), random.nextInt(0, NUMBER_OF_GENERATORS + 1));
+        }
+        return roundResultDto;
+    }
+
+    static ConsumerRecord<String, byte[]> record(String topic, byte[] payload) {
+        return new ConsumerRecord<>(topic, 0, 0L, String.valueOf(SIMULATION_ID), payload);
+    }
+}
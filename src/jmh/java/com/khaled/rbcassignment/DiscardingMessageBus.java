@@ -0,0 +1,26 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.common.header.Headers;
+import org.springframework.kafka.listener.MessageListener;
+
+/**
+ * MessageBus of the benchmarks: published messages are dropped, only their size is kept so the
+ * encoding is not optimized away. Nothing is recorded per message, unlike a mock.
+ */
+public class DiscardingMessageBus implements MessageBus {
+
+    private volatile long publishedBytes;
+
+    @Override
+    public void publish(String topic, String key, byte[] message, Headers headers) {
+        publishedBytes += message.length;
+    }
+
+    @Override
+    public void subscribe(String groupId, MessageListener<String, byte[]> listener, String... topics) {
+    }
+
+    public long getPublishedBytes() {
+        return publishedBytes;
+    }
+}
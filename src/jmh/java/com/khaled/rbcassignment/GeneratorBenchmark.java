@@ -0,0 +1,42 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round start handled by a generator (value generated, input encoded and published),
+ * with the values of the round seeds precomputed or computed on every round
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark {
+
+    @Param({"true", "false"})
+    private boolean precomputed;
+
+    private Generator generator;
+    private ConsumerRecord<String, byte[]> roundStart;
+
+    @Setup
+    public void setup() {
+        generator = new Generator1();
+        generator.setMessageBus(new DiscardingMessageBus());
+        generator.setMessageCodecs(BenchmarkRounds.messageCodecs());
+        if(precomputed){
+            generator.precomputeValues(Generator.DEFAULT_MIN_SEED, Generator.DEFAULT_MAX_SEED);
+        }
+        roundStart = BenchmarkRounds.record(GameController.ROUND_START_TOPIC,
+                new BinaryMessageCodec().encode(BenchmarkRounds.roundStart(1, PredictionStrategies.FREQUENCY)));
+    }
+
+    @Benchmark
+    public void onMessage() {
+        generator.onMessage(roundStart);
+    }
+}
@@ -0,0 +1,60 @@
+package com.khaled.rbcassignment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Values of the six generators for a round seed, looked up in the precomputed seed table
+ * or computed with a new Random every round, per round
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorValueBenchmark {
+
+    private static final int NUMBER_OF_SEEDS = 1024;
+
+    private List<Generator> generators;
+    private int[] seeds;
+
+    @Setup
+    public void setup() {
+        generators = Arrays.asList(new Generator1(), new Generator2(), new Generator3(),
+                new Generator4(), new Generator5(), new Generator6());
+        for (Generator generator : generators) {
+            generator.precomputeValues(Generator.DEFAULT_MIN_SEED, Generator.DEFAULT_MAX_SEED);
+        }
+        seeds = new SplittableRandom(1).ints(NUMBER_OF_SEEDS, Generator.DEFAULT_MIN_SEED, Generator.DEFAULT_MAX_SEED).toArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_SEEDS)
+    public long computeValue() {
+        long sum = 0;
+        for (int seed : seeds) {
+            for (Generator generator : generators) {
+                sum += generator.computeValue(seed);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_SEEDS)
+    public long generateValue() {
+        long sum = 0;
+        for (int seed : seeds) {
+            for (Generator generator : generators) {
+                sum += generator.generateValue(seed);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,78 @@
+package com.khaled.rbcassignment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of the round messages with the JSON and the binary codec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    @Param({"json", "binary"})
+    private String codec;
+
+    @Param({"10", "1000"})
+    private int numberOfPlayers;
+
+    private MessageCodec messageCodec;
+    private RoundStartDto roundStart;
+    private RoundInputBatchDto roundInputBatch;
+    private RoundResultDto roundResult;
+    private byte[] encodedRoundStart;
+    private byte[] encodedRoundInputBatch;
+    private byte[] encodedRoundResult;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(1);
+        messageCodec = "json".equals(codec) ? MessageCodecs.JSON : new BinaryMessageCodec();
+
+        roundStart = BenchmarkRounds.roundStart(1, PredictionStrategies.FREQUENCY);
+        roundInputBatch = new RoundInputBatchDto();
+        roundInputBatch.setSimulationId(BenchmarkRounds.SIMULATION_ID);
+        roundInputBatch.setInputs(BenchmarkRounds.inputs(SourceEnum.PLAYER, "Player", numberOfPlayers, random));
+        roundResult = BenchmarkRounds.roundResult(1, numberOfPlayers, random);
+
+        encodedRoundStart      = messageCodec.encode(roundStart);
+        encodedRoundInputBatch = messageCodec.encode(roundInputBatch);
+        encodedRoundResult     = messageCodec.encode(roundResult);
+    }
+
+    @Benchmark
+    public byte[] encodeRoundStart() {
+        return messageCodec.encode(roundStart);
+    }
+
+    @Benchmark
+    public RoundStartDto decodeRoundStart() {
+        return messageCodec.decode(encodedRoundStart, RoundStartDto.class);
+    }
+
+    @Benchmark
+    public byte[] encodeRoundInputBatch() {
+        return messageCodec.encode(roundInputBatch);
+    }
+
+    @Benchmark
+    public RoundInputBatchDto decodeRoundInputBatch() {
+        return messageCodec.decode(encodedRoundInputBatch, RoundInputBatchDto.class);
+    }
+
+    @Benchmark
+    public byte[] encodeRoundResult() {
+        return messageCodec.encode(roundResult);
+    }
+
+    @Benchmark
+    public RoundResultDto decodeRoundResult() {
+        return messageCodec.decode(encodedRoundResult, RoundResultDto.class);
+    }
+}
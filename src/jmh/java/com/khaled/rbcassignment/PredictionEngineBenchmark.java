@@ -0,0 +1,53 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round start handled by the PredictionEngine (prediction sampled from the history, input published)
+ * for every strategy as the history of the simulation grows
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredictionEngineBenchmark {
+
+    @Param({PredictionStrategies.FREQUENCY, PredictionStrategies.MARKOV, PredictionStrategies.SEED})
+    private String predictionStrategy;
+
+    @Param({"100", "10000", "1000000"})
+    private int historySize;
+
+    private PredictionEngine predictionEngine;
+    private ConsumerRecord<String, byte[]> roundStart;
+
+    @Setup
+    public void setup() {
+        predictionEngine = new PredictionEngine();
+        predictionEngine.setMessageBus(new DiscardingMessageBus());
+        predictionEngine.setMessageCodecs(BenchmarkRounds.messageCodecs());
+        roundStart = BenchmarkRounds.record(GameController.ROUND_START_TOPIC,
+                new BinaryMessageCodec().encode(BenchmarkRounds.roundStart(1, predictionStrategy)));
+
+        //The first round start creates the history of the simulation
+        predictionEngine.listenOnRoundStart(roundStart);
+        PredictionStrategy history = predictionEngine.historicalData.get(BenchmarkRounds.SIMULATION_ID);
+        SplittableRandom random = new SplittableRandom(1);
+        for (int recorded = 0; recorded < historySize; recorded += BenchmarkRounds.NUMBER_OF_GENERATORS) {
+            for (RoundInputDto roundInputDto : BenchmarkRounds.inputs(SourceEnum.GENERATOR, "Generator", BenchmarkRounds.NUMBER_OF_GENERATORS, random)) {
+                history.record(roundInputDto);
+            }
+        }
+    }
+
+    @Benchmark
+    public void listenOnRoundStart() {
+        predictionEngine.listenOnRoundStart(roundStart);
+    }
+}
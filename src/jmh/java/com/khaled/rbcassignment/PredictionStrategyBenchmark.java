@@ -0,0 +1,107 @@
+package com.khaled.rbcassignment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulations replayed through every PredictionStrategy, per round: the prediction then the generators values
+ * revealed to the strategy the way the PredictionEngine sees them.
+ *
+ * The rounds are recorded once from the real generators with random round seeds, every strategy plays the same
+ * simulations. The hit rate (rounds where the prediction matches at least one generator) is hits / rounds and the
+ * average match points per round is points / rounds, from the secondary results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredictionStrategyBenchmark {
+
+    private static final int NUMBER_OF_SIMULATIONS = 16;
+    private static final int ROUNDS_PER_SIMULATION = 1_000;
+
+    @Param({PredictionStrategies.FREQUENCY, PredictionStrategies.MARKOV, PredictionStrategies.SEED})
+    private String predictionStrategy;
+
+    private final PredictionStrategies predictionStrategies = new PredictionStrategies();
+    private List<Generator> generators;
+    private int[][] seeds;
+    private int[][][] values;
+    private int simulation;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Matches {
+        public long rounds;
+        public long hits;
+        public long points;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rounds = 0;
+            hits   = 0;
+            points = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        generators = Arrays.asList(new Generator1(), new Generator2(), new Generator3(),
+                new Generator4(), new Generator5(), new Generator6());
+
+        Random random = new Random(1);
+        seeds  = new int[NUMBER_OF_SIMULATIONS][ROUNDS_PER_SIMULATION];
+        values = new int[NUMBER_OF_SIMULATIONS][ROUNDS_PER_SIMULATION][generators.size()];
+        for (int simulation = 0; simulation < NUMBER_OF_SIMULATIONS; simulation++) {
+            for (int round = 0; round < ROUNDS_PER_SIMULATION; round++) {
+                seeds[simulation][round] = random.nextInt(100);
+                for (int g = 0; g < generators.size(); g++) {
+                    values[simulation][round][g] = generators.get(g).generateValue(seeds[simulation][round]);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUNDS_PER_SIMULATION)
+    public void replay(Matches matches) {
+        int[] simulationSeeds = seeds[simulation];
+        int[][] simulationValues = values[simulation];
+        simulation = (simulation + 1) % NUMBER_OF_SIMULATIONS;
+
+        PredictionStrategy strategy = predictionStrategies.create(predictionStrategy);
+        Random random = new Random(7);
+        List<RoundInputDto> revealed = new ArrayList<>();
+        for (Generator generator : generators) {
+            RoundInputDto roundInputDto = new RoundInputDto();
+            roundInputDto.setSource(SourceEnum.GENERATOR);
+            roundInputDto.setSourceName(generator.getName());
+            revealed.add(roundInputDto);
+        }
+
+        RoundStartDto roundStartDto = new RoundStartDto();
+        for (int round = 0; round < simulationSeeds.length; round++) {
+            roundStartDto.setSeed(simulationSeeds[round]);
+            int prediction = strategy.predict(roundStartDto, random);
+
+            int roundMatches = 0;
+            for (int g = 0; g < revealed.size(); g++) {
+                if(simulationValues[round][g] == prediction){
+                    roundMatches++;
+                }
+                revealed.get(g).setValue(simulationValues[round][g]);
+                strategy.record(revealed.get(g));
+            }
+            matches.rounds++;
+            matches.hits   += roundMatches > 0 ? 1 : 0;
+            matches.points += roundMatches;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.khaled.rbcassignment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring of one round by the ResultAnalyzer: ScoringEngine (calculateMatchPoints) against the per player scan (countMatches)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultAnalyzerBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int numberOfPlayers;
+
+    private ResultAnalyzer resultAnalyzer;
+    private List<RoundInputDto> generators;
+    private List<RoundInputDto> players;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(1);
+        resultAnalyzer = new ResultAnalyzer();
+        resultAnalyzer.setMessageBus(new DiscardingMessageBus());
+        resultAnalyzer.setMessageCodecs(BenchmarkRounds.messageCodecs());
+        generators = BenchmarkRounds.inputs(SourceEnum.GENERATOR, "Generator", BenchmarkRounds.NUMBER_OF_GENERATORS, random);
+        players    = BenchmarkRounds.inputs(SourceEnum.PLAYER, "Player", numberOfPlayers, random);
+    }
+
+    @Benchmark
+    public Map calculateMatchPoints() {
+        return resultAnalyzer.calculateMatchPoints(generators, players);
+    }
+
+    @Benchmark
+    public int countMatches() {
+        int matches = 0;
+        for (RoundInputDto player : players) {
+            matches += resultAnalyzer.countMatches(player.getValue(), generators);
+        }
+        return matches;
+    }
+}
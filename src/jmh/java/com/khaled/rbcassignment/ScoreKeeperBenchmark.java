@@ -0,0 +1,81 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A completed round received by the ScoreKeeper: decoding, players scores and leaderboard.
+ * Rounds are not stored so the benchmark measures the same work on every invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreKeeperBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int numberOfPlayers;
+
+    private ScoreKeeper scoreKeeper;
+    private ConsumerRecord<String, byte[]> roundCompleted;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(1);
+        BinaryMessageCodec binaryMessageCodec = new BinaryMessageCodec();
+        scoreKeeper = new ScoreKeeper();
+        scoreKeeper.setMessageBus(new DiscardingMessageBus());
+        scoreKeeper.setMessageCodecs(BenchmarkRounds.messageCodecs());
+        scoreKeeper.setRoundHistoryStore(new DiscardingRoundHistoryStore());
+
+        //The first round creates the scores of the simulation
+        scoreKeeper.listenOnRoundCompleted(BenchmarkRounds.record(GameController.ROUND_COMPLETED_TOPIC,
+                binaryMessageCodec.encode(BenchmarkRounds.roundResult(1, numberOfPlayers, random))));
+        roundCompleted = BenchmarkRounds.record(GameController.ROUND_COMPLETED_TOPIC,
+                binaryMessageCodec.encode(BenchmarkRounds.roundResult(2, numberOfPlayers, random)));
+    }
+
+    @Benchmark
+    public void listenOnRoundCompleted() {
+        scoreKeeper.listenOnRoundCompleted(roundCompleted);
+    }
+
+    private static class DiscardingRoundHistoryStore implements RoundHistoryStore {
+        @Override
+        public void append(RoundResultDto roundResultDto) {
+        }
+
+        @Override
+        public List<RoundResultDto> getRounds(int simulationId) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int countRounds(int simulationId) {
+            return 0;
+        }
+
+        @Override
+        public Iterator<RoundResultDto> iterateRounds(int simulationId, int fromIndex) {
+            return Collections.emptyIterator();
+        }
+
+        @Override
+        public Collection<Integer> getSimulationIds() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void simulationCompleted(int simulationId) {
+        }
+    }
+}
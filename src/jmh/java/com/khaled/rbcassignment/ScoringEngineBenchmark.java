@@ -0,0 +1,72 @@
+package com.khaled.rbcassignment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Match points of every player of a round: per player scan of the generators (countMatches)
+ * against the histogram ScoringEngine, flat and hashed
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringEngineBenchmark {
+
+    @Param({"1000", "100000"})
+    private int numberOfPlayers;
+
+    private int[] generatorsValues;
+    private int[] playersValues;
+    private int[] scores;
+    private List<RoundInputDto> generators;
+
+    private ResultAnalyzer resultAnalyzer;
+    private ScoringEngine flatEngine;
+    private ScoringEngine hashedEngine;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(1);
+        generatorsValues = random.ints(BenchmarkRounds.NUMBER_OF_GENERATORS, 0, 100).toArray();
+        playersValues    = random.ints(numberOfPlayers, 1, 100).toArray();
+        scores           = new int[numberOfPlayers];
+
+        generators = new ArrayList<>();
+        for (int value : generatorsValues) {
+            RoundInputDto roundInputDto = new RoundInputDto();
+            roundInputDto.setValue(value);
+            generators.add(roundInputDto);
+        }
+
+        resultAnalyzer = new ResultAnalyzer();
+        flatEngine     = new ScoringEngine();
+        hashedEngine   = new ScoringEngine(Integer.MIN_VALUE, Integer.MAX_VALUE, 0);
+    }
+
+    @Benchmark
+    public int[] countMatches() {
+        for (int i = 0; i < numberOfPlayers; i++) {
+            scores[i] = resultAnalyzer.countMatches(playersValues[i], generators);
+        }
+        return scores;
+    }
+
+    @Benchmark
+    public int[] flat() {
+        flatEngine.score(generatorsValues, generatorsValues.length, playersValues, numberOfPlayers, scores);
+        return scores;
+    }
+
+    @Benchmark
+    public int[] hashed() {
+        hashedEngine.score(generatorsValues, generatorsValues.length, playersValues, numberOfPlayers, scores);
+        return scores;
+    }
+}
@@ -0,0 +1,65 @@
+package com.khaled.rbcassignment;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulations played by the TurboEngine on one thread then on all the cores of the common ForkJoinPool,
+ * in rounds per minute
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TurboEngineBenchmark {
+
+    private static final int NUMBER_OF_SIMULATIONS = 64;
+    private static final int NUMBER_OF_SEASONS     = 10;
+    private static final int NUMBER_OF_ROUNDS      = 100;
+    private static final int NUMBER_OF_PLAYERS     = 100;
+    private static final int ROUNDS_PER_INVOCATION = NUMBER_OF_SIMULATIONS * NUMBER_OF_SEASONS * NUMBER_OF_ROUNDS;
+
+    private TurboEngine turboEngine;
+    private List<SimulationDto> simulations;
+
+    @Setup
+    public void setup() {
+        GeneratorPool generatorPool = new GeneratorPool(null, new MessageCodecs(), GeneratorPool.BUILT_IN_GENERATORS.keySet());
+        List<Player> players = new ArrayList<>();
+        for (int playerNumber = 1; playerNumber <= NUMBER_OF_PLAYERS; playerNumber++) {
+            players.add(new Player("Player" + playerNumber, null, null));
+        }
+        turboEngine = new TurboEngine(generatorPool.getGenerators(), players, new PredictionStrategies(), new ScoringEngine());
+
+        simulations = new ArrayList<>();
+        for (int simulationId = 1; simulationId <= NUMBER_OF_SIMULATIONS; simulationId++) {
+            SimulationDto simulationDto = new SimulationDto();
+            simulationDto.setSimulationId(simulationId);
+            simulationDto.setNumberOfSeasons(NUMBER_OF_SEASONS);
+            simulationDto.setNumberOfRounds(NUMBER_OF_ROUNDS);
+            simulationDto.setSeed(simulationId);
+            simulations.add(simulationDto);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUNDS_PER_INVOCATION)
+    public List<SimulationScoreDto> singleThread() {
+        List<SimulationScoreDto> scores = new ArrayList<>(simulations.size());
+        for (SimulationDto simulationDto : simulations) {
+            scores.add(turboEngine.run(simulationDto));
+        }
+        return scores;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUNDS_PER_INVOCATION)
+    public List<SimulationScoreDto> forkJoin() {
+        return turboEngine.runAll(simulations);
+    }
+}
@@ -0,0 +1,453 @@
+package com.khaled.rbcassignment;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact binary encoding for the round messages (RoundStartDto, RoundInputDto, RoundInputBatchDto and RoundResultDto).
+ *
+ * Payload layout:
+ *      MAGIC | VERSION | MESSAGE_TYPE | field*
+ *
+ * Every field starts with a varint tag (fieldNumber << 3 | wireType) followed by either a varint or a
+ * length delimited value, fields with default values are not written. Readers skip fields they don't know,
+ * so new fields can be added without breaking older readers, VERSION is only bumped for incompatible changes.
+ *
+ *      ints          : zigzag varint
+ *      enums         : ordinal + 1 (0 is null)
+ *      participants  : varint id of an interned name, or the UTF-8 name the first time it appears in the payload
+ *      lists / maps  : one length delimited field per element
+ *
+ * @author Khaled Mansour
+ */
+public class BinaryMessageCodec implements MessageCodec {
+
+    static final byte MAGIC   = (byte) 0xB1;
+    static final byte VERSION = 1;
+
+    private static final byte ROUND_START       = 1;
+    private static final byte ROUND_INPUT       = 2;
+    private static final byte ROUND_RESULT      = 3;
+    private static final byte ROUND_INPUT_BATCH = 4;
+
+    private static final int VARINT           = 0;
+    private static final int LENGTH_DELIMITED = 2;
+
+    //Participants known to every reader/writer of this version, any other name is interned per payload
+    private static final List<String> WELL_KNOWN_PARTICIPANTS = Collections.unmodifiableList(Arrays.asList(
+            "Generator1", "Generator2", "Generator3", "Generator4", "Generator5", "Generator6", "PredictionEngine"));
+    private static final Map<String, Integer> WELL_KNOWN_PARTICIPANT_IDS = new HashMap<>();
+    static {
+        for (int id = 0; id < WELL_KNOWN_PARTICIPANTS.size(); id++) {
+            WELL_KNOWN_PARTICIPANT_IDS.put(WELL_KNOWN_PARTICIPANTS.get(id), id);
+        }
+    }
+
+    private static final ThreadLocal<Writer> WRITERS = ThreadLocal.withInitial(Writer::new);
+
+    public static boolean isBinary(byte[] payload) {
+        return payload != null && payload.length >= 3 && payload[0] == MAGIC;
+    }
+
+    @Override
+    public byte[] encode(Object message) {
+        Writer writer = WRITERS.get();
+        writer.reset();
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION);
+
+        if(message instanceof RoundStartDto){
+            writer.writeByte(ROUND_START);
+            writeRoundStart(writer, (RoundStartDto) message);
+        } else if(message instanceof RoundInputDto){
+            writer.writeByte(ROUND_INPUT);
+            writeRoundInput(writer, (RoundInputDto) message);
+        } else if(message instanceof RoundResultDto){
+            writer.writeByte(ROUND_RESULT);
+            writeRoundResult(writer, (RoundResultDto) message);
+        } else if(message instanceof RoundInputBatchDto){
+            writer.writeByte(ROUND_INPUT_BATCH);
+            writeRoundInputBatch(writer, (RoundInputBatchDto) message);
+        } else {
+            throw new IllegalArgumentException("Binary codec doesn't support " + (message == null ? null : message.getClass()));
+        }
+        return writer.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] payload, Class<T> type) {
+        if(!isBinary(payload)){
+            throw new IllegalArgumentException("Payload is not binary encoded");
+        }
+        if(payload[1] > VERSION){
+            throw new IllegalArgumentException("Unsupported binary codec version " + payload[1]);
+        }
+
+        Reader reader = new Reader(payload, 3);
+        Object message;
+        switch (payload[2]){
+            case ROUND_START:   message = readRoundStart(reader, payload.length); break;
+            case ROUND_INPUT:   message = readRoundInput(reader, payload.length); break;
+            case ROUND_RESULT:  message = readRoundResult(reader, payload.length); break;
+            case ROUND_INPUT_BATCH: message = readRoundInputBatch(reader, payload.length); break;
+            default: throw new IllegalArgumentException("Unknown binary message type " + payload[2]);
+        }
+        return type.cast(message);
+    }
+
+    private void writeRoundStart(Writer writer, RoundStartDto roundStartDto) {
+        writer.writeInt(1, roundStartDto.getSimulationId());
+        writer.writeInt(2, roundStartDto.getSeed());
+        writer.writeInt(3, roundStartDto.getNumberOfPartictipants());
+        writer.writeInt(4, roundStartDto.getRoundNumber());
+        writer.writeInt(5, roundStartDto.getSeasonNumber());
+        writer.writeString(6, roundStartDto.getPredictionStrategy());
+        writer.writeLong(7, roundStartDto.getStartedAtMicros());
+    }
+
+    private RoundStartDto readRoundStart(Reader reader, int limit) {
+        RoundStartDto roundStartDto = new RoundStartDto();
+        while (reader.pos < limit){
+            int tag = reader.readVarint();
+            switch (tag >>> 3){
+                case 1:  roundStartDto.setSimulationId(reader.readInt()); break;
+                case 2:  roundStartDto.setSeed(reader.readInt()); break;
+                case 3:  roundStartDto.setNumberOfPartictipants(reader.readInt()); break;
+                case 4:  roundStartDto.setRoundNumber(reader.readInt()); break;
+                case 5:  roundStartDto.setSeasonNumber(reader.readInt()); break;
+                case 6:  roundStartDto.setPredictionStrategy(reader.readString()); break;
+                case 7:  roundStartDto.setStartedAtMicros(reader.readLong()); break;
+                default: reader.skip(tag & 7);
+            }
+        }
+        return roundStartDto;
+    }
+
+    private void writeRoundInput(Writer writer, RoundInputDto roundInputDto) {
+        writer.writeInt(1, roundInputDto.getSimulationId());
+        writer.writeEnum(2, roundInputDto.getSource());
+        writer.writeParticipant(3, roundInputDto.getSourceName());
+        writer.writeInt(4, roundInputDto.getValue());
+        writer.writeInt(5, roundInputDto.getSeasonNumber());
+        writer.writeInt(6, roundInputDto.getRoundNumber());
+    }
+
+    private RoundInputDto readRoundInput(Reader reader, int limit) {
+        RoundInputDto roundInputDto = new RoundInputDto();
+        while (reader.pos < limit){
+            int tag = reader.readVarint();
+            switch (tag >>> 3){
+                case 1:  roundInputDto.setSimulationId(reader.readInt()); break;
+                case 2:  roundInputDto.setSource(reader.readEnum(SourceEnum.values())); break;
+                case 3:  roundInputDto.setSourceName(reader.readParticipant(tag & 7)); break;
+                case 4:  roundInputDto.setValue(reader.readInt()); break;
+                case 5:  roundInputDto.setSeasonNumber(reader.readInt()); break;
+                case 6:  roundInputDto.setRoundNumber(reader.readInt()); break;
+                default: reader.skip(tag & 7);
+            }
+        }
+        return roundInputDto;
+    }
+
+    private void writeRoundInputBatch(Writer writer, RoundInputBatchDto roundInputBatchDto) {
+        writer.writeInt(1, roundInputBatchDto.getSimulationId());
+        for (RoundInputDto roundInputDto : roundInputBatchDto.getInputs()) {
+            int mark = writer.beginNested(2);
+            writeRoundInput(writer, roundInputDto);
+            writer.endNested(mark);
+        }
+    }
+
+    private RoundInputBatchDto readRoundInputBatch(Reader reader, int limit) {
+        RoundInputBatchDto roundInputBatchDto = new RoundInputBatchDto();
+        while (reader.pos < limit){
+            int tag = reader.readVarint();
+            switch (tag >>> 3){
+                case 1:  roundInputBatchDto.setSimulationId(reader.readInt()); break;
+                case 2:  roundInputBatchDto.getInputs().add(readRoundInput(reader, reader.readNestedLimit())); break;
+                default: reader.skip(tag & 7);
+            }
+        }
+        return roundInputBatchDto;
+    }
+
+    private void writeRoundResult(Writer writer, RoundResultDto roundResultDto) {
+        writer.writeInt(1, roundResultDto.getSimulationId());
+        writer.writeInt(2, roundResultDto.getRoundNumber());
+        writer.writeInt(3, roundResultDto.getSeasonNumber());
+        synchronized (roundResultDto.getGeneratorsInputsForCurrentRound()) {
+            for (RoundInputDto roundInputDto : roundResultDto.getGeneratorsInputsForCurrentRound()) {
+                int mark = writer.beginNested(4);
+                writeRoundInput(writer, roundInputDto);
+                writer.endNested(mark);
+            }
+        }
+        synchronized (roundResultDto.getPlayersInputsForCurrentRound()) {
+            for (RoundInputDto roundInputDto : roundResultDto.getPlayersInputsForCurrentRound()) {
+                int mark = writer.beginNested(5);
+                writeRoundInput(writer, roundInputDto);
+                writer.endNested(mark);
+            }
+        }
+        for (Map.Entry<String, Integer> result : roundResultDto.getResultForCurrentRound().entrySet()) {
+            int mark = writer.beginNested(6);
+            writer.writeParticipant(1, result.getKey());
+            writer.writeInt(2, result.getValue());
+            writer.endNested(mark);
+        }
+        writer.writeInt(7, roundResultDto.getNumberOfInputsReceivedForCurrentRound().get());
+        writer.writeInt(8, roundResultDto.getNumberOfParticipatns());
+        writer.writeLong(9, roundResultDto.getRoundStartedAtMicros());
+    }
+
+    private RoundResultDto readRoundResult(Reader reader, int limit) {
+        RoundResultDto roundResultDto = new RoundResultDto();
+        while (reader.pos < limit){
+            int tag = reader.readVarint();
+            switch (tag >>> 3){
+                case 1:  roundResultDto.setSimulationId(reader.readInt()); break;
+                case 2:  roundResultDto.setRoundNumber(reader.readInt()); break;
+                case 3:  roundResultDto.setSeasonNumber(reader.readInt()); break;
+                case 4:  roundResultDto.getGeneratorsInputsForCurrentRound().add(readRoundInput(reader, reader.readNestedLimit())); break;
+                case 5:  roundResultDto.getPlayersInputsForCurrentRound().add(readRoundInput(reader, reader.readNestedLimit())); break;
+                case 6:  readResultEntry(reader, reader.readNestedLimit(), roundResultDto.getResultForCurrentRound()); break;
+                case 7:  roundResultDto.getNumberOfInputsReceivedForCurrentRound().set(reader.readInt()); break;
+                case 8:  roundResultDto.setNumberOfParticipatns(reader.readInt()); break;
+                case 9:  roundResultDto.setRoundStartedAtMicros(reader.readLong()); break;
+                default: reader.skip(tag & 7);
+            }
+        }
+        return roundResultDto;
+    }
+
+    private void readResultEntry(Reader reader, int limit, Map<String, Integer> results) {
+        String participant = null;
+        int score = 0;
+        while (reader.pos < limit){
+            int tag = reader.readVarint();
+            switch (tag >>> 3){
+                case 1:  participant = reader.readParticipant(tag & 7); break;
+                case 2:  score = reader.readInt(); break;
+                default: reader.skip(tag & 7);
+            }
+        }
+        if(participant != null){
+            results.put(participant, score);
+        }
+    }
+
+    /**
+     * Growable output buffer, reused by the encoding thread
+     */
+    private static final class Writer {
+        private byte[] buffer = new byte[256];
+        private int pos;
+        private final Map<String, Integer> internedParticipants = new HashMap<>();
+
+        void reset() {
+            pos = 0;
+            internedParticipants.clear();
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, pos);
+        }
+
+        private void ensureCapacity(int extraBytes) {
+            if(pos + extraBytes > buffer.length){
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, pos + extraBytes));
+            }
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[pos++] = (byte) value;
+        }
+
+        void writeVarint(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0){
+                buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[pos++] = (byte) value;
+        }
+
+        void writeTag(int fieldNumber, int wireType) {
+            writeVarint(fieldNumber << 3 | wireType);
+        }
+
+        void writeInt(int fieldNumber, int value) {
+            if(value != 0){
+                writeTag(fieldNumber, VARINT);
+                writeVarint((value << 1) ^ (value >> 31));
+            }
+        }
+
+        void writeVarint64(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0){
+                buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[pos++] = (byte) value;
+        }
+
+        void writeLong(int fieldNumber, long value) {
+            if(value != 0){
+                writeTag(fieldNumber, VARINT);
+                writeVarint64((value << 1) ^ (value >> 63));
+            }
+        }
+
+        void writeEnum(int fieldNumber, Enum<?> value) {
+            if(value != null){
+                writeTag(fieldNumber, VARINT);
+                writeVarint(value.ordinal() + 1);
+            }
+        }
+
+        void writeString(int fieldNumber, String value) {
+            if(value != null){
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeTag(fieldNumber, LENGTH_DELIMITED);
+                writeVarint(bytes.length);
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+                pos += bytes.length;
+            }
+        }
+
+        void writeParticipant(int fieldNumber, String participant) {
+            if(participant == null){
+                return;
+            }
+            Integer id = WELL_KNOWN_PARTICIPANT_IDS.get(participant);
+            if(id == null){
+                id = internedParticipants.get(participant);
+            }
+            if(id != null){
+                writeTag(fieldNumber, VARINT);
+                writeVarint(id);
+            } else {
+                internedParticipants.put(participant, WELL_KNOWN_PARTICIPANTS.size() + internedParticipants.size());
+                writeString(fieldNumber, participant);
+            }
+        }
+
+        /**
+         * Start a nested message, one byte is reserved for its length and the content is shifted
+         * in endNested if the length needs more than one byte
+         */
+        int beginNested(int fieldNumber) {
+            writeTag(fieldNumber, LENGTH_DELIMITED);
+            ensureCapacity(1);
+            return pos++;
+        }
+
+        void endNested(int mark) {
+            int length = pos - mark - 1;
+            int lengthSize = varintSize(length);
+            if(lengthSize > 1){
+                ensureCapacity(lengthSize - 1);
+                System.arraycopy(buffer, mark + 1, buffer, mark + lengthSize, length);
+            }
+            int end = pos + lengthSize - 1;
+            pos = mark;
+            writeVarint(length);
+            pos = end;
+        }
+
+        private static int varintSize(int value) {
+            int size = 1;
+            while ((value & ~0x7F) != 0){
+                size++;
+                value >>>= 7;
+            }
+            return size;
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private int pos;
+        private final List<String> internedParticipants = new ArrayList<>();
+
+        Reader(byte[] buffer, int pos) {
+            this.buffer = buffer;
+            this.pos    = pos;
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = buffer[pos++];
+                value |= (b & 0x7F) << shift;
+                if(b >= 0){
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint at " + pos);
+        }
+
+        int readInt() {
+            int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readVarint64() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if(b >= 0){
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint at " + pos);
+        }
+
+        long readLong() {
+            long value = readVarint64();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        <E extends Enum<E>> E readEnum(E[] values) {
+            int ordinal = readVarint() - 1;
+            return ordinal >= 0 && ordinal < values.length ? values[ordinal] : null;
+        }
+
+        String readString() {
+            int length = readVarint();
+            String value = new String(buffer, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        String readParticipant(int wireType) {
+            if(wireType == VARINT){
+                int id = readVarint();
+                return id < WELL_KNOWN_PARTICIPANTS.size() ? WELL_KNOWN_PARTICIPANTS.get(id)
+                        : internedParticipants.get(id - WELL_KNOWN_PARTICIPANTS.size());
+            }
+            String participant = readString();
+            internedParticipants.add(participant);
+            return participant;
+        }
+
+        int readNestedLimit() {
+            int length = readVarint();
+            return pos + length;
+        }
+
+        void skip(int wireType) {
+            if(wireType == VARINT){
+                readVarint64();
+            } else if(wireType == LENGTH_DELIMITED){
+                pos = readNestedLimit();
+            } else {
+                throw new IllegalArgumentException("Unknown wire type " + wireType);
+            }
+        }
+    }
+}
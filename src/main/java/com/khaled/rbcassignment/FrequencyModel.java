@@ -0,0 +1,188 @@
+package com.khaled.rbcassignment;
+
+import java.util.Random;
+
+/**
+ * Frequencies of the values seen by the PredictionEngine for one simulation.
+ *
+ * Values in [minValue, maxValue) are counted in a flat int array, when a window is configured only the last
+ * window values are counted (ring buffer of the values, the oldest one is uncounted when a new one comes in),
+ * so the memory used is bounded by the range and the window whatever the number of rounds played.
+ *
+ * Sampling is O(1) with an alias table (Vose) over the distinct values seen, the table is rebuilt lazily in
+ * O(distinct values) by the first sample following a change and then shared, without locking, by every sampler.
+ *
+ * @author Khaled Mansour
+ */
+public class FrequencyModel {
+
+    private final int minValue;
+    private final int[] counts;
+    private final int[] window;
+
+    private int windowNext;
+    private int numberOfValues;
+    private int numberOfDistinctValues;
+
+    private volatile AliasTable aliasTable = AliasTable.EMPTY;
+
+    /**
+     * @param minValue
+     * @param maxValue
+     * @param windowSize number of most recent values sampled from, 0 to keep every value
+     */
+    public FrequencyModel(int minValue, int maxValue, int windowSize) {
+        if(maxValue <= minValue){
+            throw new IllegalArgumentException("maxValue must be greater than minValue");
+        }
+        if(windowSize < 0){
+            throw new IllegalArgumentException("windowSize must not be negative");
+        }
+        this.minValue = minValue;
+        this.counts   = new int[(int) ((long) maxValue - minValue)];
+        this.window   = windowSize == 0 ? null : new int[windowSize];
+    }
+
+    /**
+     * @param value
+     * @return false if the value is outside [minValue, maxValue) and was not recorded
+     */
+    public synchronized boolean record(int value) {
+        int index = value - minValue;
+        if(value < minValue || index >= counts.length){
+            return false;
+        }
+
+        if(window != null){
+            if(numberOfValues == window.length){
+                //Window is full, forget the oldest value which is about to be overwritten
+                if(--counts[window[windowNext]] == 0){
+                    numberOfDistinctValues--;
+                }
+                numberOfValues--;
+            }
+            window[windowNext] = index;
+            windowNext = (windowNext + 1) % window.length;
+        }
+
+        if(counts[index]++ == 0){
+            numberOfDistinctValues++;
+        }
+        numberOfValues++;
+        aliasTable = null;
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return table().total == 0;
+    }
+
+    /**
+     * Pick a value with a probability proportional to its frequency
+     * @param random
+     * @return the value picked
+     */
+    public int sample(Random random) {
+        AliasTable table = table();
+        if(table.total == 0){
+            throw new IllegalStateException("No value recorded");
+        }
+        int i = random.nextInt(table.values.length);
+        int picked = nextLong(random, table.total) < table.thresholds[i] ? i : table.aliases[i];
+        return table.values[picked] + minValue;
+    }
+
+    private AliasTable table() {
+        AliasTable table = aliasTable;
+        return table != null ? table : rebuild();
+    }
+
+    private synchronized AliasTable rebuild() {
+        if(aliasTable == null){
+            aliasTable = AliasTable.build(counts, numberOfDistinctValues, numberOfValues);
+        }
+        return aliasTable;
+    }
+
+    private static long nextLong(Random random, long bound) {
+        if(bound <= Integer.MAX_VALUE){
+            return random.nextInt((int) bound);
+        }
+        long value;
+        do {
+            value = random.nextLong() >>> 1;
+        } while (value - value % bound + (bound - 1) < 0);
+        return value % bound;
+    }
+
+    /**
+     * Column i is picked with probability 1/n, then keeps values[i] when a draw in [0, total) falls under
+     * thresholds[i] and falls back to values[aliases[i]] otherwise. Thresholds are integers so the
+     * frequencies are reproduced exactly.
+     */
+    private static class AliasTable {
+        private static final AliasTable EMPTY = new AliasTable(new int[0], new long[0], new int[0], 0);
+
+        private final int[] values;
+        private final long[] thresholds;
+        private final int[] aliases;
+        private final long total;
+
+        private AliasTable(int[] values, long[] thresholds, int[] aliases, long total) {
+            this.values     = values;
+            this.thresholds = thresholds;
+            this.aliases    = aliases;
+            this.total      = total;
+        }
+
+        private static AliasTable build(int[] counts, int numberOfDistinctValues, long total) {
+            if(total == 0){
+                return EMPTY;
+            }
+            int n = numberOfDistinctValues;
+            int[] values = new int[n];
+            long[] thresholds = new long[n];
+            int[] aliases = new int[n];
+
+            int next = 0;
+            for (int index = 0; index < counts.length && next < n; index++) {
+                if(counts[index] != 0){
+                    values[next] = index;
+                    thresholds[next] = (long) counts[index] * n;
+                    next++;
+                }
+            }
+
+            //Columns under the average are topped up by a column over it, both worklists share one array
+            int[] worklist = new int[n];
+            int smallTop = 0;
+            int largeBottom = n;
+            for (int i = 0; i < n; i++) {
+                if(thresholds[i] < total){
+                    worklist[smallTop++] = i;
+                } else {
+                    worklist[--largeBottom] = i;
+                }
+            }
+            while (smallTop > 0 && largeBottom < n){
+                int small = worklist[--smallTop];
+                int large = worklist[largeBottom++];
+                aliases[small] = large;
+                thresholds[large] -= total - thresholds[small];
+                if(thresholds[large] < total){
+                    worklist[smallTop++] = large;
+                } else {
+                    worklist[--largeBottom] = large;
+                }
+            }
+            //What is left is exactly the average, always keep it
+            while (smallTop > 0){
+                thresholds[worklist[--smallTop]] = total;
+            }
+            while (largeBottom < n){
+                thresholds[worklist[largeBottom++]] = total;
+            }
+            return new AliasTable(values, thresholds, aliases, total);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.khaled.rbcassignment;
+
+import java.util.Random;
+
+/**
+ * Plays a value seen in the history as often as it was seen, a random value of the range when there is no history
+ *
+ * @author Khaled Mansour
+ */
+public class FrequencyPredictionStrategy implements PredictionStrategy {
+
+    private final int minValue;
+    private final int maxValue;
+    private final FrequencyModel frequencyModel;
+
+    public FrequencyPredictionStrategy(int minValue, int maxValue, int windowSize) {
+        this.minValue       = minValue;
+        this.maxValue       = maxValue;
+        this.frequencyModel = new FrequencyModel(minValue, maxValue, windowSize);
+    }
+
+    @Override
+    public synchronized int predict(RoundStartDto roundStartDto, Random random) {
+        return frequencyModel.isEmpty() ? minValue + random.nextInt(maxValue - minValue) : frequencyModel.sample(random);
+    }
+
+    @Override
+    public synchronized void record(RoundInputDto roundInputDto) {
+        frequencyModel.record(roundInputDto.getValue());
+    }
+}
@@ -1,29 +1,27 @@
 package com.khaled.rbcassignment;
 
-import com.google.gson.Gson;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.listener.MessageListener;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -34,66 +32,166 @@ import java.util.concurrent.atomic.AtomicInteger;
  * This object listens to the below event(s)
  *      ROOT_SEED_TOPIC         : generated from SeedGenerator and is being used as a seed for all Round Start seeds
  *      SIMULATION_START_TOPIC  : generated from the same object when it receives HTTP request to run a simulation
+ *      SIMULATION_START_BATCH_TOPIC : same as SIMULATION_START_TOPIC for the simulations of a batch request
  *      ROUND_COMPLETED_TOPIC   : generated from ResultAnalyzer after receiving all inputs and calculating the result
  *
  * This object responds to the below API call(s)
  * POST /simulations
+ * POST /simulations/batch
+ *
+ * Every simulation draws its rounds seeds from its own SplittableRandom, seeded with SimulationDto.seed
+ * (derived from the latest root seed and the simulationId when not set), so concurrent simulations
+ * don't share any random state and a simulation always plays the same seeds for the same SimulationDto.seed.
+ *
+ * A share of the rounds (traceSampleRate) is traced: their round start carries the TraceHeaders.
+ *
+ * Round starts go through the RoundFlowControl, they are deferred while the ScoreKeeper lags too far behind.
+ *
+ * Simulation ids continue after the highest one found in the RoundHistoryStore, so a persistent store never sees
+ * an id reused after a restart.
+ *
+ * The simulations are kept in memory by the node which registered them, so the GameController runs on a single node
+ * (coordinator.enabled): the nodes added to scale the ResultAnalyzer out run with coordinator.enabled=false.
  *
  * @author Khaled Mansour
  */
 
 @RestController
-public class GameController implements MessageListener<String, String> {
+@ConditionalOnProperty(name = "coordinator.enabled", havingValue = "true", matchIfMissing = true)
+public class GameController implements MessageListener<String, byte[]> {
     private static final Logger log = LoggerFactory.getLogger(GameController.class);
 
     private AtomicInteger simulationIdSequence = new AtomicInteger(0);
 
-    private static final int    NUMBER_OF_GENERATORS_PLUS_PE     = 7;
-    public static final String ROOT_SEED_TOPIC                  = "root.seed";
-    public static final String SIMULATION_START_TOPIC           = "simulation.start";
-    public static final String ROUND_START_TOPIC                = "round.start";
-    public static final String ROUND_INPUT_TOPIC                = "round.input";
-    public static final String ROUND_COMPLETED_TOPIC            = "round.completed";
-    public static final String ROUND_INPUT_AFTER_THE_FACT_TOPIC = "round.input.afterTheFact";
-    public static final String SIMULATION_COMPLETED_TOPIC       = "simulation.completed";
+    private static final int    NUMBER_OF_GENERATORS                  = 6;
+    public static final String ROOT_SEED_TOPIC                        = "root.seed";
+    public static final String SIMULATION_START_TOPIC                 = "simulation.start";
+    public static final String SIMULATION_START_BATCH_TOPIC           = "simulation.start.batch";
+    public static final String ROUND_START_TOPIC                      = "round.start";
+    public static final String ROUND_INPUT_TOPIC                      = "round.input";
+    public static final String ROUND_INPUT_BATCH_TOPIC                = "round.input.batch";
+    public static final String ROUND_COMPLETED_TOPIC                  = "round.completed";
+    public static final String ROUND_INPUT_AFTER_THE_FACT_TOPIC       = "round.input.afterTheFact";
+    public static final String ROUND_INPUT_AFTER_THE_FACT_BATCH_TOPIC = "round.input.afterTheFact.batch";
+    public static final String ROUND_DEADLINE_TOPIC                   = "round.deadline";
+    public static final String SIMULATION_COMPLETED_TOPIC             = "simulation.completed";
+
+
+    //Written by a listener thread, read by the request threads
+    @Getter @Setter private volatile int latestSeed;
+    @Getter @Setter private Map<Integer, SimulationDto> simulationsMap = new ConcurrentHashMap<>();
+    @Getter @Setter private Map<Integer, SplittableRandom> simulationsRandoms = new ConcurrentHashMap<>();
+    //Start time of the current round of every simulation, a round is completed once
+    private final Map<Integer, Long> currentRoundStarts = new ConcurrentHashMap<>();
 
 
-    @Getter @Setter private int latestSeed;
-    @Getter @Setter private Map<Integer, SimulationDto> simulationsMap = new ConcurrentHashMap<>();
-    @Getter @Setter private Random generator;
+    @Autowired
+    @Getter @Setter private MessageBus messageBus;
+
+    @Autowired
+    @Getter @Setter private MessageCodecs messageCodecs = new MessageCodecs();
 
+    @Autowired
+    @Getter @Setter private PredictionStrategies predictionStrategies = new PredictionStrategies();
+
+    //Only set when the generators are hosted by the pool (generators.mode=pool)
+    @Autowired(required = false)
+    @Getter @Setter private GeneratorPool generatorPool;
+
+    //Publishes the next round start once the interval between rounds/seasons is elapsed
+    @Autowired
+    @Getter @Setter private RoundTimer roundTimer;
 
+    //Defers the round starts while too many rounds are waiting for the ScoreKeeper
     @Autowired
-    @Getter @Setter private KafkaTemplate kafkaTemplate;
+    @Getter @Setter private RoundFlowControl roundFlowControl = new RoundFlowControl();
+
+    //Seeds the simulation ids, ids restart from 1 without it
+    @Autowired(required = false)
+    @Getter @Setter private RoundHistoryStore roundHistoryStore;
 
     @Value("${numberOfPlayers}")
-    private int numberOfPlayers;
+    @Getter @Setter private int numberOfPlayers;
 
-    private ScheduledExecutorService executorService = Executors.newScheduledThreadPool(5);
+    @Value("${tracing.sampleRate:0}")
+    @Getter @Setter private double traceSampleRate;
+
+    @PostConstruct
+    public void subscribe() {
+        if(roundHistoryStore != null){
+            int lastSimulationId = 0;
+            for (Integer simulationId : roundHistoryStore.getSimulationIds()) {
+                lastSimulationId = Math.max(lastSimulationId, simulationId);
+            }
+            simulationIdSequence.set(lastSimulationId);
+        }
+        messageBus.subscribe("GameController", this, ROOT_SEED_TOPIC, SIMULATION_START_TOPIC, SIMULATION_START_BATCH_TOPIC, ROUND_COMPLETED_TOPIC);
+    }
 
     @RequestMapping(value = "/simulations", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<Void> simulations(@RequestBody SimulationDto simulationDto) {
-        simulationDto.setSimulationId(simulationIdSequence.incrementAndGet());
-        simulationsMap.put(simulationDto.getSimulationId(),simulationDto);
+        if(!predictionStrategies.isKnown(simulationDto.getPredictionStrategy())){
+            log.debug("Unknown prediction strategy {}, known strategies are {}", simulationDto.getPredictionStrategy(), predictionStrategies.getNames());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        register(simulationDto);
 
-        kafkaTemplate.send(SIMULATION_START_TOPIC, new Gson().toJson(simulationDto));
+        messageBus.publish(SIMULATION_START_TOPIC, String.valueOf(simulationDto.getSimulationId()), messageCodecs.encode(SIMULATION_START_TOPIC, simulationDto));
 
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
-    @KafkaListener(topics = {ROOT_SEED_TOPIC, SIMULATION_START_TOPIC, ROUND_COMPLETED_TOPIC })
-    public void onMessage(ConsumerRecord<String, String> message) {
+    /**
+     * Start several simulations with one request and one message
+     * @return the simulationId of every simulation, in the request order
+     */
+    @RequestMapping(value = "/simulations/batch", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<Integer>> simulationsBatch(@RequestBody List<SimulationDto> simulations) {
+        if(simulations == null || simulations.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        for (SimulationDto simulationDto : simulations) {
+            if(!predictionStrategies.isKnown(simulationDto.getPredictionStrategy())){
+                log.debug("Unknown prediction strategy {}, known strategies are {}", simulationDto.getPredictionStrategy(), predictionStrategies.getNames());
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+        }
+
+        SimulationBatchDto simulationBatchDto = new SimulationBatchDto();
+        List<Integer> simulationIds = new ArrayList<>(simulations.size());
+        for (SimulationDto simulationDto : simulations) {
+            register(simulationDto);
+            simulationBatchDto.getSimulations().add(simulationDto);
+            simulationIds.add(simulationDto.getSimulationId());
+        }
+
+        messageBus.publish(SIMULATION_START_BATCH_TOPIC, messageCodecs.encode(SIMULATION_START_BATCH_TOPIC, simulationBatchDto));
+
+        return new ResponseEntity<>(simulationIds, HttpStatus.OK);
+    }
+
+    private void register(SimulationDto simulationDto) {
+        simulationDto.setSimulationId(simulationIdSequence.incrementAndGet());
+        seedOf(simulationDto);
+        simulationsMap.put(simulationDto.getSimulationId(),simulationDto);
+    }
+
+    @Override
+    public void onMessage(ConsumerRecord<String, byte[]> message) {
         if (log.isTraceEnabled()) {
-            log.trace("Received message: {}" ,message.value());
+            log.trace("Received message on [{}]" ,message.topic());
         }
 
         if(GameController.ROOT_SEED_TOPIC.equals(message.topic())){
 
+            int newSeed = messageCodecs.decode(message, Integer.class);
             if(log.isTraceEnabled()){
-                log.trace("Old Seed {} Expired - Received New Seed on [{}] : {}" , latestSeed , message.topic(), message.value());
+                log.trace("Old Seed {} Expired - Received New Seed on [{}] : {}" , latestSeed , message.topic(), newSeed);
             }
-            latestSeed = Integer.parseInt(String.valueOf(message.value()));
+            latestSeed = newSeed;
 
+        } else if(GameController.SIMULATION_START_BATCH_TOPIC.equals(message.topic())){
+            listenOnSimulationStartBatch(message);
         } else if(message.topic().contains(GameController.SIMULATION_START_TOPIC)){
             listenOnSimulationStart(message);
         } else if(message.topic().contains(GameController.ROUND_COMPLETED_TOPIC)){
@@ -101,29 +199,58 @@ public class GameController implements MessageListener<String, String> {
         }
     }
 
-    public void listenOnSimulationStart(ConsumerRecord<String, String> message) {
+    public void listenOnSimulationStart(ConsumerRecord<String, byte[]> message) {
+        SimulationDto simulationDto = messageCodecs.decode(message, SimulationDto.class);
         if(log.isDebugEnabled()){
-            log.debug("Received Starting Simulation on [{}] : {}" , message.topic(), message.value());
+            log.debug("Received Starting Simulation on [{}] : {}" , message.topic(), simulationDto);
         }
-        SimulationDto simulationDto = new Gson().fromJson(message.value(), SimulationDto.class);
-        //Prepare the first round in the simulation
-        generator = new Random(latestSeed);
-        RoundStartDto roundStartDto = constructRoundStartDto(generator, simulationDto);
+        startSimulation(simulationDto);
+    }
 
-        simulationDto.getCurrentRoundNumber().incrementAndGet();
+    public void listenOnSimulationStartBatch(ConsumerRecord<String, byte[]> message) {
+        SimulationBatchDto simulationBatchDto = messageCodecs.decode(message, SimulationBatchDto.class);
+        log.debug("Received {} Starting Simulations on [{}]", simulationBatchDto.getSimulations().size(), message.topic());
+        for (SimulationDto simulationDto : simulationBatchDto.getSimulations()) {
+            startSimulation(simulationDto);
+        }
+    }
 
-        kafkaTemplate.send(ROUND_START_TOPIC,new Gson().toJson(roundStartDto));
+    private void startSimulation(SimulationDto simulationDto) {
+        //Prepare the first round in the simulation
+        simulationsRandoms.put(simulationDto.getSimulationId(), new SplittableRandom(seedOf(simulationDto)));
+
+        //Stamped once the flow control lets the round go, the time it was deferred is not round latency
+        roundFlowControl.start(() -> {
+            RoundStartDto roundStartDto = constructRoundStartDto(randomOf(simulationDto), simulationDto);
+            simulationDto.getCurrentRoundNumber().incrementAndGet();
+
+            String key = String.valueOf(simulationDto.getSimulationId());
+            byte[] message = messageCodecs.encode(ROUND_START_TOPIC, roundStartDto);
+            Headers headers = traceHeaders(roundStartDto);
+            currentRoundStarts.put(simulationDto.getSimulationId(), roundStartDto.getStartedAtMicros());
+            messageBus.publish(ROUND_START_TOPIC, key, message, headers);
+        });
     }
 
 
 
-    public void listenOnRoundCompleted(ConsumerRecord<String, String> message) {
-        RoundResultDto roundResultDto = new Gson().fromJson(message.value(), RoundResultDto.class);
+    public void listenOnRoundCompleted(ConsumerRecord<String, byte[]> message) {
+        RoundResultDto roundResultDto = messageCodecs.decode(message, RoundResultDto.class);
         SimulationDto simulationDto = simulationsMap.get(roundResultDto.getSimulationId());
-
+        if(simulationDto == null){
+            log.error("Round completed for unknown Simulation {}, ignored: is another node running with coordinator.enabled=true?", roundResultDto.getSimulationId());
+            return;
+        }
+        //The ResultAnalyzer may complete a round again when its partition is reassigned before the offsets are committed
+        if(roundResultDto.getRoundStartedAtMicros() != 0
+                && !currentRoundStarts.remove(roundResultDto.getSimulationId(), roundResultDto.getRoundStartedAtMicros())){
+            log.debug("Simulation {} > Season {} > Round {} already completed, ignored", roundResultDto.getSimulationId(),
+                    roundResultDto.getSeasonNumber(), roundResultDto.getRoundNumber());
+            return;
+        }
         if(log.isDebugEnabled()){
             log.debug("Simulation {} > Season {} > Round {} completed: {} ", simulationDto.getSimulationId(),
-                    simulationDto.getCurrentSeasonNumber(),simulationDto.getCurrentRoundNumber(),message.value());
+                    simulationDto.getCurrentSeasonNumber(),simulationDto.getCurrentRoundNumber(),roundResultDto.getResultForCurrentRound());
         }
         //Check if season has more rounds, if yes ,then start next round
         if(simulationDto.getCurrentRoundNumber().get() < simulationDto.getNumberOfRounds()){
@@ -135,11 +262,8 @@ public class GameController implements MessageListener<String, String> {
                         simulationDto.getSimulationId(), simulationDto.getCurrentSeasonNumber(), roundNumber);
             }
 
-            RoundStartDto roundStartDto = constructRoundStartDto(generator, simulationDto);
-
             //Add interval between rounds
-            executorService.schedule( () -> kafkaTemplate.send(ROUND_START_TOPIC,new Gson().toJson(roundStartDto))
-                    , simulationDto.getIntervalBetweenRounds(), TimeUnit.MILLISECONDS);
+            scheduleRoundStart(simulationDto, simulationDto.getIntervalBetweenRounds());
 
         } else if (simulationDto.getCurrentSeasonNumber().get() < simulationDto.getNumberOfSeasons()){
             //^Check if simulation has more seasons, if yes , then start next season
@@ -149,26 +273,71 @@ public class GameController implements MessageListener<String, String> {
             int seasonNumber    = simulationDto.getCurrentSeasonNumber().incrementAndGet();
             log.debug("Season is completed, Start Next Season: Simulation {} > Season {} > Round {}",simulationDto.getSimulationId(), seasonNumber ,1);
 
-            RoundStartDto roundStartDto = constructRoundStartDto(generator, simulationDto);
-
             //Add interval between seasons
-            executorService.schedule( () -> kafkaTemplate.send(ROUND_START_TOPIC,new Gson().toJson(roundStartDto))
-                    , simulationDto.getIntervalBetweenSeasons(), TimeUnit.MILLISECONDS);
+            scheduleRoundStart(simulationDto, simulationDto.getIntervalBetweenSeasons());
         } else {
             log.debug("Simulation {} is completed", simulationDto.getSimulationId());
             simulationDto.setStatus(StatusEnum.COMPLETE);
-            kafkaTemplate.send(SIMULATION_COMPLETED_TOPIC,new Gson().toJson(simulationDto));
+            simulationsRandoms.remove(simulationDto.getSimulationId());
+            messageBus.publish(SIMULATION_COMPLETED_TOPIC,String.valueOf(simulationDto.getSimulationId()),messageCodecs.encode(SIMULATION_COMPLETED_TOPIC, simulationDto));
+        }
+    }
+
+    private void scheduleRoundStart(SimulationDto simulationDto, long delayMillis) {
+        //Stamped once the flow control lets the round go, the time it was deferred is not round latency
+        roundFlowControl.start(() -> {
+            RoundStartDto roundStartDto = constructRoundStartDto(randomOf(simulationDto), simulationDto);
+            //The round starts when the timer publishes it, not now
+            roundStartDto.setStartedAtMicros(roundStartDto.getStartedAtMicros() + Math.max(0, delayMillis) * 1000);
+
+            String key = String.valueOf(simulationDto.getSimulationId());
+            byte[] message = messageCodecs.encode(ROUND_START_TOPIC, roundStartDto);
+            Headers headers = traceHeaders(roundStartDto);
+            currentRoundStarts.put(simulationDto.getSimulationId(), roundStartDto.getStartedAtMicros());
+            roundTimer.schedule(ROUND_START_TOPIC, key, message, headers, delayMillis);
+        });
+    }
+
+    /**
+     * @return the trace headers of the round start when the round is sampled, null otherwise
+     */
+    private Headers traceHeaders(RoundStartDto roundStartDto) {
+        if(traceSampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= traceSampleRate){
+            return null;
+        }
+        return TraceHeaders.start(roundStartDto, "GameController");
+    }
+
+    /**
+     * Rounds of one simulation are completed one at a time, its SplittableRandom is never used concurrently
+     */
+    private SplittableRandom randomOf(SimulationDto simulationDto) {
+        return simulationsRandoms.computeIfAbsent(simulationDto.getSimulationId(), simulationId -> new SplittableRandom(seedOf(simulationDto)));
+    }
+
+    /**
+     * @return the seed of the simulation, picked from the latest root seed when the simulation has none
+     */
+    private long seedOf(SimulationDto simulationDto) {
+        if(simulationDto.getSeed() == null){
+            //Mix the root seed with the simulationId so simulations started with the same root seed play different seeds
+            simulationDto.setSeed(new SplittableRandom(((long) latestSeed << 32) ^ simulationDto.getSimulationId()).nextLong());
         }
+        return simulationDto.getSeed();
     }
 
-    public RoundStartDto constructRoundStartDto(Random generator, SimulationDto simulationDto) {
+    public RoundStartDto constructRoundStartDto(SplittableRandom random, SimulationDto simulationDto) {
         RoundStartDto roundStartDto = new RoundStartDto();
-        roundStartDto.setSeed(generator.nextInt(100) );
+        roundStartDto.setSeed(random.nextInt(100) );
         roundStartDto.setSimulationId(simulationDto.getSimulationId());
-        roundStartDto.setNumberOfPartictipants( numberOfPlayers + GameController.NUMBER_OF_GENERATORS_PLUS_PE);
+        //Players, generators and the PredictionEngine
+        int numberOfGenerators = generatorPool == null ? NUMBER_OF_GENERATORS : generatorPool.size();
+        roundStartDto.setNumberOfPartictipants( numberOfPlayers + numberOfGenerators + 1);
 
         roundStartDto.setRoundNumber(simulationDto.getCurrentRoundNumber().get());
         roundStartDto.setSeasonNumber(simulationDto.getCurrentSeasonNumber().get());
+        roundStartDto.setPredictionStrategy(simulationDto.getPredictionStrategy());
+        roundStartDto.setStartedAtMicros(LatencyMetrics.nowMicros());
         return roundStartDto;
     }
 
@@ -1,17 +1,22 @@
 package com.khaled.rbcassignment;
 
-import com.google.gson.Gson;
+import lombok.Getter;
+import lombok.Setter;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Value;
 
+import javax.annotation.PostConstruct;
 import java.util.Map;
 import java.util.Random;
 
 /**
  * This object is the parent for all Generators
  *
+ * A generator value only depends on the round seed, the values of the seeds in [minSeed, maxSeed)
+ * are computed once at startup and looked up afterwards, other seeds are computed on every round.
+ *
  * This object listens to the below event(s)
  *  ROUND_START_TOPIC
  *
@@ -23,34 +28,104 @@ public abstract class Generator {
     public abstract Logger getLogger();
     public abstract String getName();
 
+    public static final int DEFAULT_MIN_SEED      = 0;
+    public static final int DEFAULT_MAX_SEED      = 100;
+    public static final int MAX_PRECOMPUTED_SEEDS = 1 << 20;
+
+    @Autowired
+    @Getter @Setter private MessageBus messageBus;
+
     @Autowired
-    private KafkaTemplate kafkaTemplate;
+    @Getter @Setter private MessageCodecs messageCodecs = new MessageCodecs();
+
+    @Value("${generators.minSeed:0}")
+    private int minSeed = DEFAULT_MIN_SEED;
+
+    @Value("${generators.maxSeed:100}")
+    private int maxSeed = DEFAULT_MAX_SEED;
+
+    private volatile SeedTable seedTable;
+
+    @PostConstruct
+    public void subscribe() {
+        precomputeValues(minSeed, maxSeed);
+        messageBus.subscribe(getName(), this::onMessage, GameController.ROUND_START_TOPIC, GameController.ROUND_COMPLETED_TOPIC);
+    }
+
+    /**
+     * @param gameControllerSeed seed of the round
+     * @return the value played by this generator for the round
+     */
+    public int generateValue(int gameControllerSeed) {
+        SeedTable table = seedTable;
+        if(table != null){
+            long index = (long) gameControllerSeed - table.minSeed;
+            if(index >= 0 && index < table.values.length){
+                return table.values[(int) index];
+            }
+        }
+        return computeValue(gameControllerSeed);
+    }
+
+    /**
+     * Compute the value of every seed in [minSeed, maxSeed) so generateValue only looks them up
+     * @param minSeed
+     * @param maxSeed
+     */
+    public void precomputeValues(int minSeed, int maxSeed) {
+        long numberOfSeeds = (long) maxSeed - minSeed;
+        if(numberOfSeeds <= 0 || numberOfSeeds > MAX_PRECOMPUTED_SEEDS){
+            throw new IllegalArgumentException("Seed range [" + minSeed + ", " + maxSeed + ") must hold 1 to " + MAX_PRECOMPUTED_SEEDS + " seeds");
+        }
+        int[] values = new int[(int) numberOfSeeds];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = computeValue(minSeed + i);
+        }
+        seedTable = new SeedTable(minSeed, values);
+    }
+
+    int computeValue(int gameControllerSeed) {
+        return new Random(getGeneratorSeed(gameControllerSeed)).nextInt(100);
+    }
+
+    private static final class SeedTable {
+        private final int minSeed;
+        private final int[] values;
+
+        SeedTable(int minSeed, int[] values) {
+            this.minSeed = minSeed;
+            this.values  = values;
+        }
+    }
 
-    public void onMessage(ConsumerRecord<String, String> message) {
+    public void onMessage(ConsumerRecord<String, byte[]> message) {
         if(getLogger().isTraceEnabled()){
-            getLogger().trace("Received Seed: {}", message.value());
+            getLogger().trace("Received message on [{}]", message.topic());
         }
 
         if(GameController.ROUND_START_TOPIC.equals(message.topic())){
-            RoundStartDto roundStartDto = new Gson().fromJson(message.value(), RoundStartDto.class);
+            RoundStartDto roundStartDto = messageCodecs.decode(message, RoundStartDto.class);
 
             RoundInputDto roundInputDto = new RoundInputDto();
 
-            int generatorSeed = getGeneratorSeed(roundStartDto.getSeed());
-            roundInputDto.setValue(new Random(generatorSeed).nextInt(100));
+            roundInputDto.setValue(generateValue(roundStartDto.getSeed()));
 
             roundInputDto.setSource(SourceEnum.GENERATOR);
             roundInputDto.setSourceName(getName());
             roundInputDto.setSimulationId(roundStartDto.getSimulationId());
+            roundInputDto.setSeasonNumber(roundStartDto.getSeasonNumber());
+            roundInputDto.setRoundNumber(roundStartDto.getRoundNumber());
 
             //Store the roundInput to be shared with the PredictionEngine once the round is completed
             getLastRoundInputMap().put(roundInputDto.getSimulationId(),roundInputDto);
 
-            kafkaTemplate.send(GameController.ROUND_INPUT_TOPIC,new Gson().toJson(roundInputDto));
+            messageBus.publish(GameController.ROUND_INPUT_TOPIC,String.valueOf(roundInputDto.getSimulationId()),messageCodecs.encode(GameController.ROUND_INPUT_TOPIC, roundInputDto),
+                    TraceHeaders.forward(message.headers(), getName()));
         } else if(GameController.ROUND_COMPLETED_TOPIC.equals(message.topic())){
-            RoundResultDto roundResultDto = new Gson().fromJson(message.value(), RoundResultDto.class);
+            RoundResultDto roundResultDto = messageCodecs.decode(message, RoundResultDto.class);
             RoundInputDto   roundInputDto = getLastRoundInputMap().get(roundResultDto.getSimulationId());
-            kafkaTemplate.send( GameController.ROUND_INPUT_AFTER_THE_FACT_TOPIC ,new Gson().toJson(roundInputDto));
+            messageBus.publish( GameController.ROUND_INPUT_AFTER_THE_FACT_TOPIC ,String.valueOf(roundResultDto.getSimulationId()),messageCodecs.encode(GameController.ROUND_INPUT_AFTER_THE_FACT_TOPIC, roundInputDto),
+                    TraceHeaders.forward(message.headers(), getName()));
         }
     }
 }
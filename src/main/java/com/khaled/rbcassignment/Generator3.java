@@ -4,7 +4,7 @@ import lombok.Setter;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
@@ -18,14 +18,14 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 
 @Component
+@ConditionalOnProperty(name = "generators.mode", havingValue = "components")
 public class Generator3 extends Generator{
     private static final Logger log = LoggerFactory.getLogger(Generator3.class);
 
     @Setter private Map<Integer, RoundInputDto> lastRoundInputMap = new ConcurrentHashMap<>();
 
     @Override
-    @KafkaListener(topics = {GameController.ROUND_START_TOPIC,GameController.ROUND_COMPLETED_TOPIC}, groupId = "Generator3")
-    public void onMessage(ConsumerRecord<String, String> message) {
+    public void onMessage(ConsumerRecord<String, byte[]> message) {
         super.onMessage(message);
     }
 
@@ -0,0 +1,152 @@
+package com.khaled.rbcassignment;
+
+import lombok.Getter;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Hosts any number of generators behind a single subscription.
+ *
+ * The round start is decoded once, every hosted generator computes its value from the round seed and all
+ * the values are sent as one RoundInputBatchDto. Once the round is completed the same values are shared
+ * with the PredictionEngine as one batch as well.
+ *
+ * The values of every hosted generator are precomputed for the seeds in [minSeed, maxSeed) when it is added.
+ *
+ * This object listens to the below event(s)
+ *  ROUND_START_TOPIC
+ *  ROUND_COMPLETED_TOPIC
+ *
+ * @author Khaled Mansour
+ */
+public class GeneratorPool {
+    private static final Logger log = LoggerFactory.getLogger(GeneratorPool.class);
+
+    //Generators that can be hosted by name, their seed function is the one of the generator component
+    public static final Map<String, Supplier<Generator>> BUILT_IN_GENERATORS;
+    static {
+        Map<String, Supplier<Generator>> generators = new LinkedHashMap<>();
+        generators.put("Generator1", Generator1::new);
+        generators.put("Generator2", Generator2::new);
+        generators.put("Generator3", Generator3::new);
+        generators.put("Generator4", Generator4::new);
+        generators.put("Generator5", Generator5::new);
+        generators.put("Generator6", Generator6::new);
+        BUILT_IN_GENERATORS = Collections.unmodifiableMap(generators);
+    }
+
+    @Getter private final List<Generator> generators = new ArrayList<>();
+    private final Map<Integer, int[]> lastRoundValues = new ConcurrentHashMap<>();
+
+    private final MessageBus messageBus;
+    private final MessageCodecs messageCodecs;
+    private final int minSeed;
+    private final int maxSeed;
+
+    public GeneratorPool(MessageBus messageBus, MessageCodecs messageCodecs, Collection<String> generatorNames) {
+        this(messageBus, messageCodecs, generatorNames, Generator.DEFAULT_MIN_SEED, Generator.DEFAULT_MAX_SEED);
+    }
+
+    public GeneratorPool(MessageBus messageBus, MessageCodecs messageCodecs, Collection<String> generatorNames, int minSeed, int maxSeed) {
+        this.messageBus    = messageBus;
+        this.messageCodecs = messageCodecs;
+        this.minSeed       = minSeed;
+        this.maxSeed       = maxSeed;
+        for (String generatorName : generatorNames) {
+            Supplier<Generator> generator = BUILT_IN_GENERATORS.get(generatorName);
+            if(generator == null){
+                throw new IllegalArgumentException("Unknown generator " + generatorName + ", known generators are " + BUILT_IN_GENERATORS.keySet());
+            }
+            addGenerator(generator.get());
+        }
+    }
+
+    /**
+     * Host one more generator, generators names must be unique
+     * @param generator
+     */
+    public void addGenerator(Generator generator) {
+        for (Generator hosted : generators) {
+            if(hosted.getName().equals(generator.getName())){
+                throw new IllegalArgumentException("Generator " + generator.getName() + " is already hosted");
+            }
+        }
+        generator.precomputeValues(minSeed, maxSeed);
+        generators.add(generator);
+    }
+
+    public int size() {
+        return generators.size();
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        messageBus.subscribe("GeneratorPool", this::onMessage, GameController.ROUND_START_TOPIC, GameController.ROUND_COMPLETED_TOPIC);
+    }
+
+    public void onMessage(ConsumerRecord<String, byte[]> message) {
+        if(log.isTraceEnabled()){
+            log.trace("Received message on [{}]", message.topic());
+        }
+
+        if(GameController.ROUND_START_TOPIC.equals(message.topic())){
+            listenOnRoundStart(message);
+        } else if(GameController.ROUND_COMPLETED_TOPIC.equals(message.topic())){
+            listenOnRoundCompleted(message);
+        }
+    }
+
+    public void listenOnRoundStart(ConsumerRecord<String, byte[]> message) {
+        RoundStartDto roundStartDto = messageCodecs.decode(message, RoundStartDto.class);
+
+        int[] values = new int[generators.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = generators.get(i).generateValue(roundStartDto.getSeed());
+        }
+        //Store the values to be shared with the PredictionEngine once the round is completed
+        lastRoundValues.put(roundStartDto.getSimulationId(), values);
+
+        RoundInputBatchDto roundInputBatchDto = toBatch(roundStartDto.getSimulationId(), roundStartDto.getSeasonNumber(), roundStartDto.getRoundNumber(), values);
+        messageBus.publish(GameController.ROUND_INPUT_BATCH_TOPIC, String.valueOf(roundStartDto.getSimulationId()),
+                messageCodecs.encode(GameController.ROUND_INPUT_BATCH_TOPIC, roundInputBatchDto), TraceHeaders.forward(message.headers(), "GeneratorPool"));
+    }
+
+    public void listenOnRoundCompleted(ConsumerRecord<String, byte[]> message) {
+        RoundResultDto roundResultDto = messageCodecs.decode(message, RoundResultDto.class);
+        int[] values = lastRoundValues.remove(roundResultDto.getSimulationId());
+        if(values == null){
+            return;
+        }
+
+        RoundInputBatchDto roundInputBatchDto = toBatch(roundResultDto.getSimulationId(), roundResultDto.getSeasonNumber(), roundResultDto.getRoundNumber(), values);
+        messageBus.publish(GameController.ROUND_INPUT_AFTER_THE_FACT_BATCH_TOPIC, String.valueOf(roundResultDto.getSimulationId()),
+                messageCodecs.encode(GameController.ROUND_INPUT_AFTER_THE_FACT_BATCH_TOPIC, roundInputBatchDto), TraceHeaders.forward(message.headers(), "GeneratorPool"));
+    }
+
+    private RoundInputBatchDto toBatch(int simulationId, int seasonNumber, int roundNumber, int[] values) {
+        RoundInputBatchDto roundInputBatchDto = new RoundInputBatchDto();
+        roundInputBatchDto.setSimulationId(simulationId);
+        for (int i = 0; i < values.length; i++) {
+            RoundInputDto roundInputDto = new RoundInputDto();
+            roundInputDto.setSimulationId(simulationId);
+            roundInputDto.setSeasonNumber(seasonNumber);
+            roundInputDto.setRoundNumber(roundNumber);
+            roundInputDto.setSource(SourceEnum.GENERATOR);
+            roundInputDto.setSourceName(generators.get(i).getName());
+            roundInputDto.setValue(values[i]);
+            roundInputBatchDto.getInputs().add(roundInputDto);
+        }
+        return roundInputBatchDto;
+    }
+}
@@ -0,0 +1,252 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.MessageListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MessageBus that delivers messages inside the JVM, no broker is needed.
+ *
+ * Every subscription owns one mailbox per unit of concurrency (see MessageBusProperties), a message
+ * goes to the mailbox picked by its key the same way a keyed Kafka record goes to a partition. Publishing to
+ * a mailbox holding queueCapacity messages blocks the publisher until the subscriber catches up, except on the
+ * bus worker threads: the participants publish while handling messages and the topology is cyclic (round.start,
+ * round.input, round.completed, round.start...), a blocked worker could wait for a mailbox only it would drain.
+ * Messages published by the workers are enqueued past queueCapacity, up to maxQueuedMessages: the RoundFlowControl
+ * bounds the rounds in flight, so maxQueuedMessages sized for the messages of maxRoundsInFlight rounds is only
+ * reached by a runaway cycle (or no flow control). Past it the publishing worker fails with an IllegalStateException
+ * instead of growing the mailbox until the JVM runs out of memory: the message is not delivered to the full mailbox,
+ * the other subscribers still get it. Mailboxes are drained by a shared pool
+ * of worker threads, a mailbox is never drained by two workers at the same time so messages with the same key
+ * are processed one at a time and in publish order. Batch subscriptions receive up to maxBatchSize messages of
+ * a mailbox per call.
+ *
+ * @author Khaled Mansour
+ */
+public class InMemoryMessageBus implements MessageBus, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(InMemoryMessageBus.class);
+
+    private static final int MAX_MESSAGES_PER_DRAIN = 64;
+
+    private final int queueCapacity;
+    private final int maxQueuedMessages;
+    private final ExecutorService workers;
+    private final MessageBusProperties properties;
+
+    private final Map<String, List<Mailbox[]>> subscriptionsByTopic = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong>    offsetsByTopic       = new ConcurrentHashMap<>();
+    //Set on the bus worker threads, they never block on a full mailbox
+    private final ThreadLocal<Boolean> workerThread = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * The bus workers publish past queueCapacity without limit
+     */
+    public InMemoryMessageBus(int queueCapacity, int numberOfWorkers, MessageBusProperties properties) {
+        this(queueCapacity, Integer.MAX_VALUE, numberOfWorkers, properties);
+    }
+
+    /**
+     * @param queueCapacity     pending messages of a mailbox before the publishers which are not bus workers wait
+     * @param maxQueuedMessages pending messages of a mailbox before the bus workers fail to publish, at least queueCapacity
+     */
+    public InMemoryMessageBus(int queueCapacity, int maxQueuedMessages, int numberOfWorkers, MessageBusProperties properties) {
+        if(queueCapacity < 1 || maxQueuedMessages < queueCapacity){
+            throw new IllegalArgumentException("queueCapacity must be positive and maxQueuedMessages at least queueCapacity");
+        }
+        this.queueCapacity     = queueCapacity;
+        this.maxQueuedMessages = maxQueuedMessages;
+        this.properties        = properties;
+
+        AtomicInteger threadSequence = new AtomicInteger(0);
+        this.workers = Executors.newFixedThreadPool(numberOfWorkers, runnable -> {
+            Thread thread = new Thread(() -> {
+                workerThread.set(true);
+                runnable.run();
+            }, "message-bus-" + threadSequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void publish(String topic, String key, byte[] message, Headers headers) {
+        List<Mailbox[]> subscriptions = subscriptionsByTopic.get(topic);
+        if(subscriptions == null){
+            log.trace("No subscribers on [{}], dropping message", topic);
+            return;
+        }
+
+        long offset = offsetsByTopic.computeIfAbsent(topic, t -> new AtomicLong()).getAndIncrement();
+        //Enqueue in every mailbox before draining any of them, so a message is always queued for all
+        //subscribers before the messages published in reaction to it (e.g. round.start before round.input)
+        //Headers are shared by all the subscribers, they are read-only once published
+        Headers recordHeaders = headers == null ? new RecordHeaders() : headers;
+        Mailbox[][] snapshot = subscriptions.toArray(new Mailbox[0][]);
+        Mailbox[] targets = new Mailbox[snapshot.length];
+        Mailbox overflowed = null;
+        for (int i = 0; i < snapshot.length; i++) {
+            Mailbox[] mailboxes = snapshot[i];
+            int partition = key == null ? 0 : (key.hashCode() & Integer.MAX_VALUE) % mailboxes.length;
+            ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(topic, partition, offset, ConsumerRecord.NO_TIMESTAMP, TimestampType.NO_TIMESTAMP_TYPE,
+                    (long) ConsumerRecord.NULL_CHECKSUM, ConsumerRecord.NULL_SIZE, ConsumerRecord.NULL_SIZE, key, message, recordHeaders);
+            if(workerThread.get() && mailboxes[partition].queue.size() >= maxQueuedMessages){
+                overflowed = mailboxes[partition];
+            } else if(mailboxes[partition].enqueue(record)){
+                targets[i] = mailboxes[partition];
+            }
+        }
+        for (Mailbox target : targets) {
+            if(target != null){
+                target.schedule();
+            }
+        }
+        if(overflowed != null){
+            throw new IllegalStateException("Mailbox of " + overflowed.groupId + " holds " + maxQueuedMessages
+                    + " messages, message on [" + topic + "] not delivered: the round cycle is publishing faster than it is drained");
+        }
+    }
+
+    @Override
+    public void subscribe(String groupId, MessageListener<String, byte[]> listener, String... topics) {
+        Mailbox[] mailboxes = new Mailbox[properties.getConcurrency(groupId)];
+        for (int i = 0; i < mailboxes.length; i++) {
+            mailboxes[i] = new Mailbox(groupId, listener, null);
+        }
+        subscribe(groupId, mailboxes, topics);
+    }
+
+    @Override
+    public void subscribeBatch(String groupId, BatchMessageListener<String, byte[]> listener, String... topics) {
+        Mailbox[] mailboxes = new Mailbox[properties.getConcurrency(groupId)];
+        for (int i = 0; i < mailboxes.length; i++) {
+            mailboxes[i] = new Mailbox(groupId, null, listener);
+        }
+        subscribe(groupId, mailboxes, topics);
+    }
+
+    private void subscribe(String groupId, Mailbox[] mailboxes, String... topics) {
+        for (String topic : topics) {
+            subscriptionsByTopic.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(mailboxes);
+        }
+        log.debug("{} subscribed to {} with concurrency {}", groupId, topics, mailboxes.length);
+    }
+
+    @Override
+    public void destroy() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Queue of pending messages for one subscription, bounded for the publishers which are not bus workers
+     */
+    private class Mailbox implements Runnable {
+        private final String groupId;
+        private final MessageListener<String, byte[]> listener;
+        private final BatchMessageListener<String, byte[]> batchListener;
+        private final BlockingQueue<ConsumerRecord<String, byte[]>> queue = new LinkedBlockingQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        //Publishers waiting for room in the queue
+        private final Object notFull = new Object();
+
+        //One of listener and batchListener is set
+        Mailbox(String groupId, MessageListener<String, byte[]> listener, BatchMessageListener<String, byte[]> batchListener) {
+            this.groupId       = groupId;
+            this.listener      = listener;
+            this.batchListener = batchListener;
+        }
+
+        boolean enqueue(ConsumerRecord<String, byte[]> record) {
+            if(!workerThread.get() && queue.size() >= queueCapacity){
+                try {
+                    synchronized (notFull) {
+                        while (queue.size() >= queueCapacity){
+                            notFull.wait();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Interrupted while delivering to {} on [{}]", groupId, record.topic());
+                    return false;
+                }
+            }
+            queue.add(record);
+            return true;
+        }
+
+        private void drained() {
+            synchronized (notFull) {
+                notFull.notifyAll();
+            }
+        }
+
+        void schedule() {
+            if(!queue.isEmpty() && scheduled.compareAndSet(false, true)){
+                try {
+                    workers.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    log.debug("Message bus is shut down, {} will not be drained", groupId);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            if(batchListener != null){
+                runBatch();
+                return;
+            }
+            try {
+                for (int i = 0; i < MAX_MESSAGES_PER_DRAIN; i++) {
+                    ConsumerRecord<String, byte[]> record = queue.poll();
+                    if(record == null){
+                        break;
+                    }
+                    try {
+                        listener.onMessage(record);
+                    } catch (Exception e) {
+                        log.error("{} failed to process message from [{}]", groupId, record.topic(), e);
+                    }
+                }
+            } finally {
+                drained();
+                scheduled.set(false);
+                //Give other mailboxes a chance before draining the rest of this one
+                schedule();
+            }
+        }
+
+        private void runBatch() {
+            try {
+                int maxBatchSize = Math.max(1, properties.getMaxBatchSize());
+                List<ConsumerRecord<String, byte[]>> records = new ArrayList<>(Math.min(queue.size(), maxBatchSize));
+                queue.drainTo(records, maxBatchSize);
+                drained();
+                if(!records.isEmpty()){
+                    try {
+                        batchListener.onMessage(records);
+                    } catch (Exception e) {
+                        log.error("{} failed to process a batch of {} messages", groupId, records.size(), e);
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.khaled.rbcassignment;
+
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes messages as UTF-8 JSON. Works for any message type and is used for every topic
+ * that is not configured to use the binary codec.
+ *
+ * Gson is thread safe, a single instance is shared instead of creating one per message.
+ *
+ * @author Khaled Mansour
+ */
+public class JsonMessageCodec implements MessageCodec {
+
+    private static final Gson GSON = new Gson();
+
+    @Override
+    public byte[] encode(Object message) {
+        return GSON.toJson(message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public <T> T decode(byte[] payload, Class<T> type) {
+        return GSON.fromJson(new String(payload, StandardCharsets.UTF_8), type);
+    }
+}
@@ -0,0 +1,357 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.listener.config.ContainerProperties;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MessageBus backed by Kafka.
+ *
+ * Messages are sent through the KafkaTemplate and every subscription gets its own
+ * listener container (one consumer group per groupId). Records are keyed by simulationId so
+ * all the messages of a simulation land on the same partition and are consumed by the same thread.
+ *
+ * At most messageBus.maxInFlight messages are sent and not acknowledged by the broker yet: past it, publish
+ * waits for an acknowledgement, so a slow or unreachable broker slows the publishers down instead of growing
+ * the producer buffer. Sent, failed (by topic) and in flight messages are reported in the actuator metrics (messageBus.*).
+ *
+ * Subscriptions with a PartitionListener are told about the partitions assigned to them before their messages are
+ * delivered and are moved back to the offsets, or the first messages of the time, it asks for to rebuild the state of the partitions.
+ *
+ * @author Khaled Mansour
+ */
+public class KafkaMessageBus implements MessageBus, PublicMetrics, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(KafkaMessageBus.class);
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final String kafkaServerUrl;
+    private final MessageBusProperties properties;
+
+    private final List<ConcurrentMessageListenerContainer<String, byte[]>> containers = new CopyOnWriteArrayList<>();
+    private final Map<String, List<String>> topicsByGroup = new ConcurrentHashMap<>();
+
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final AtomicLong sent       = new AtomicLong();
+    private final AtomicLong windowFull = new AtomicLong();
+    private final Map<String, AtomicLong> failedByTopic = new ConcurrentHashMap<>();
+
+    public KafkaMessageBus(KafkaTemplate<String, byte[]> kafkaTemplate, String kafkaServerUrl, MessageBusProperties properties) {
+        this.kafkaTemplate  = kafkaTemplate;
+        this.kafkaServerUrl = kafkaServerUrl;
+        this.properties     = properties;
+        this.maxInFlight    = Math.max(1, properties.getMaxInFlight());
+        this.inFlight       = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Waits while maxInFlight messages are not acknowledged, the acknowledgement itself is asynchronous
+     */
+    @Override
+    public void publish(String topic, String key, byte[] message, Headers headers) {
+        if(!inFlight.tryAcquire()){
+            windowFull.incrementAndGet();
+            inFlight.acquireUninterruptibly();
+        }
+        ListenableFuture<SendResult<String, byte[]>> future;
+        try {
+            future = kafkaTemplate.send(new ProducerRecord<>(topic, null, key, message, headers));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            failed(topic, e);
+            throw e;
+        }
+        future.addCallback(result -> {
+            inFlight.release();
+            sent.incrementAndGet();
+        }, e -> {
+            inFlight.release();
+            failed(topic, e);
+        });
+    }
+
+    private void failed(String topic, Throwable e) {
+        failedByTopic.computeIfAbsent(topic, t -> new AtomicLong()).incrementAndGet();
+        log.warn("Failed to send a message to {}: {}", topic, e.toString());
+    }
+
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public long getFailed() {
+        long failed = 0;
+        for (AtomicLong topicFailed : failedByTopic.values()) {
+            failed += topicFailed.get();
+        }
+        return failed;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("messageBus.inFlight", getInFlight()));
+        metrics.add(new Metric<>("messageBus.sent", sent.get()));
+        metrics.add(new Metric<>("messageBus.windowFull", windowFull.get()));
+        metrics.add(new Metric<>("messageBus.failed", getFailed()));
+        failedByTopic.forEach((topic, failed) -> metrics.add(new Metric<>("messageBus.failed." + topic, failed.get())));
+        return metrics;
+    }
+
+    @Override
+    public void subscribe(String groupId, MessageListener<String, byte[]> listener, String... topics) {
+        start(groupId, constructKafkaConsumer(groupId, listener, topics), topics);
+    }
+
+    /**
+     * The listener receives every poll of a consumer as one batch
+     */
+    @Override
+    public void subscribeBatch(String groupId, BatchMessageListener<String, byte[]> listener, String... topics) {
+        start(groupId, constructKafkaConsumer(groupId, listener, topics), topics);
+    }
+
+    @Override
+    public void subscribe(String groupId, MessageListener<String, byte[]> listener, PartitionListener partitionListener, String... topics) {
+        SeekingMessageListener seekingListener = new SeekingMessageListener(listener, partitionListener);
+        ConcurrentMessageListenerContainer<String, byte[]> container = constructKafkaConsumer(groupId, seekingListener, topics);
+        container.getContainerProperties().setConsumerRebalanceListener(seekingListener.revokeListener());
+        start(groupId, container, topics);
+    }
+
+    @Override
+    public void subscribeBatch(String groupId, BatchMessageListener<String, byte[]> listener, PartitionListener partitionListener, String... topics) {
+        SeekingBatchMessageListener seekingListener = new SeekingBatchMessageListener(listener, partitionListener);
+        ConcurrentMessageListenerContainer<String, byte[]> container = constructKafkaConsumer(groupId, seekingListener, topics);
+        container.getContainerProperties().setConsumerRebalanceListener(seekingListener.revokeListener());
+        start(groupId, container, topics);
+    }
+
+    private void start(String groupId, ConcurrentMessageListenerContainer<String, byte[]> container, String... topics) {
+        container.setConcurrency(properties.getConcurrency(groupId));
+        container.start();
+        containers.add(container);
+        topicsByGroup.computeIfAbsent(groupId, g -> new CopyOnWriteArrayList<>()).addAll(Arrays.asList(topics));
+        log.debug("{} subscribed to {} with concurrency {}", groupId, topics, container.getConcurrency());
+    }
+
+    public ConcurrentMessageListenerContainer<String, byte[]> constructKafkaConsumer(String groupId, Object listener, String... topics) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG,kafkaServerUrl);
+        if(listener instanceof BatchMessageListener){
+            props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, Math.max(1, properties.getMaxBatchSize()));
+        }
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,ByteArrayDeserializer.class);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG,"latest");
+
+        DefaultKafkaConsumerFactory<String, byte[]> kafkaConsumerFactory = new DefaultKafkaConsumerFactory<>(props);
+
+        ContainerProperties containerProperties = new ContainerProperties(topics);
+        containerProperties.setMessageListener(listener);
+
+        return new ConcurrentMessageListenerContainer<>(kafkaConsumerFactory,containerProperties);
+    }
+
+    /**
+     * @return the topics read by every consumer group
+     */
+    public Map<String, List<String>> getTopicsByGroup() {
+        return Collections.unmodifiableMap(topicsByGroup);
+    }
+
+    /**
+     * Consumers start from the latest offset, messages published before they are assigned their partitions are not received
+     * @return true once every subscription has been assigned partitions (by one of its consumers at least)
+     */
+    public boolean isAssigned() {
+        for (ConcurrentMessageListenerContainer<String, byte[]> container : containers) {
+            if(!isAssigned(container)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Partitions are assigned to the child containers, one per consumer
+    private static boolean isAssigned(ConcurrentMessageListenerContainer<String, byte[]> container) {
+        for (KafkaMessageListenerContainer<String, byte[]> consumer : container.getContainers()) {
+            Collection<TopicPartition> assignedPartitions = consumer.getAssignedPartitions();
+            if(assignedPartitions != null && !assignedPartitions.isEmpty()){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Offsets of the first messages at or after the given time
+     * @param timestamps epoch millis by partition
+     * @return offset by partition, partitions without any message since then are left out
+     */
+    Map<TopicPartition, Long> offsetsForTimes(Map<TopicPartition, Long> timestamps) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaServerUrl);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(props)) {
+            consumer.offsetsForTimes(timestamps).forEach((topicPartition, offset) -> {
+                if(offset != null){
+                    offsets.put(topicPartition, offset.offset());
+                }
+            });
+        }
+        return offsets;
+    }
+
+    /**
+     * Tells the PartitionListener about the partitions of the consumer and seeks back the partitions it rebuilds
+     */
+    private abstract class PartitionSeeker implements ConsumerSeekAware {
+        private final PartitionListener partitionListener;
+
+        PartitionSeeker(PartitionListener partitionListener) {
+            this.partitionListener = partitionListener;
+        }
+
+        @Override
+        public void registerSeekCallback(ConsumerSeekCallback callback) {
+        }
+
+        @Override
+        public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+            Map<Integer, Map<String, Long>> positions = new TreeMap<>();
+            assignments.forEach((topicPartition, position) ->
+                    positions.computeIfAbsent(topicPartition.partition(), p -> new HashMap<>()).put(topicPartition.topic(), position));
+
+            Map<TopicPartition, Long> timestamps = new HashMap<>();
+            Map<TopicPartition, Long> offsets = new HashMap<>();
+            partitionListener.onPartitionsAssigned(positions, new PartitionListener.Replay() {
+                @Override
+                public void fromTime(int partition, long epochMillis) {
+                    for (TopicPartition topicPartition : assignments.keySet()) {
+                        if(topicPartition.partition() == partition){
+                            timestamps.put(topicPartition, epochMillis);
+                        }
+                    }
+                }
+
+                @Override
+                public void fromOffsets(int partition, Map<String, Long> topicOffsets) {
+                    topicOffsets.forEach((topic, offset) -> {
+                        TopicPartition topicPartition = new TopicPartition(topic, partition);
+                        if(assignments.containsKey(topicPartition)){
+                            offsets.put(topicPartition, offset);
+                        }
+                    });
+                }
+            });
+            if(!timestamps.isEmpty()){
+                offsets.putAll(offsetsForTimes(timestamps));
+            }
+
+            offsets.forEach((topicPartition, offset) -> {
+                if(offset < assignments.get(topicPartition)){
+                    callback.seek(topicPartition.topic(), topicPartition.partition(), offset);
+                    log.info("Replaying {} from offset {} to {}", topicPartition, offset, assignments.get(topicPartition));
+                }
+            });
+        }
+
+        @Override
+        public void onIdleContainer(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        }
+
+        ConsumerRebalanceListener revokeListener() {
+            return new ConsumerRebalanceListener() {
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    Set<Integer> revoked = new TreeSet<>();
+                    partitions.forEach(topicPartition -> revoked.add(topicPartition.partition()));
+                    if(!revoked.isEmpty()){
+                        partitionListener.onPartitionsRevoked(revoked);
+                    }
+                }
+
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                    //Handled by onPartitionsAssigned(assignments, callback), with the positions
+                }
+            };
+        }
+    }
+
+    private class SeekingMessageListener extends PartitionSeeker implements MessageListener<String, byte[]> {
+        private final MessageListener<String, byte[]> listener;
+
+        SeekingMessageListener(MessageListener<String, byte[]> listener, PartitionListener partitionListener) {
+            super(partitionListener);
+            this.listener = listener;
+        }
+
+        @Override
+        public void onMessage(ConsumerRecord<String, byte[]> message) {
+            listener.onMessage(message);
+        }
+    }
+
+    private class SeekingBatchMessageListener extends PartitionSeeker implements BatchMessageListener<String, byte[]> {
+        private final BatchMessageListener<String, byte[]> listener;
+
+        SeekingBatchMessageListener(BatchMessageListener<String, byte[]> listener, PartitionListener partitionListener) {
+            super(partitionListener);
+            this.listener = listener;
+        }
+
+        @Override
+        public void onMessage(List<ConsumerRecord<String, byte[]>> messages) {
+            listener.onMessage(messages);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (ConcurrentMessageListenerContainer<String, byte[]> container : containers) {
+            container.stop();
+        }
+        containers.clear();
+    }
+}
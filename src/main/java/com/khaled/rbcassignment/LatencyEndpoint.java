@@ -0,0 +1,25 @@
+package com.khaled.rbcassignment;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint /latency: percentiles of the round stages latencies by participant (see LatencyMetrics)
+ *
+ * @author Khaled Mansour
+ */
+public class LatencyEndpoint extends AbstractEndpoint<Map<String, Map<String, Map<String, Object>>>> {
+
+    private final LatencyMetrics latencyMetrics;
+
+    public LatencyEndpoint(LatencyMetrics latencyMetrics) {
+        super("latency", false);
+        this.latencyMetrics = latencyMetrics;
+    }
+
+    @Override
+    public Map<String, Map<String, Map<String, Object>>> invoke() {
+        return latencyMetrics.getPercentiles();
+    }
+}
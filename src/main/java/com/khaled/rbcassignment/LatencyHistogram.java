@@ -0,0 +1,99 @@
+package com.khaled.rbcassignment;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets: values below 16 have their own bucket, above that
+ * every power of 2 is split in 16 buckets, so a percentile is off by at most 1/16 (~6%) of its value.
+ *
+ * Recording a value is one atomic increment, histograms of the same layout are merged by adding their buckets.
+ *
+ * @author Khaled Mansour
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS  = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    //Values are clamped to 2^40 (~12 days in microseconds)
+    private static final int  MAX_EXPONENT = 40;
+    private static final long MAX_VALUE    = (1L << MAX_EXPONENT) - 1;
+    private static final int  BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max   = new AtomicLong();
+
+    /**
+     * @param value a latency, negative values (clock skew between hosts) are recorded as 0
+     */
+    public void record(long value) {
+        value = Math.min(Math.max(value, 0), MAX_VALUE);
+        buckets.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        if(value > max.get()){
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Add the values recorded by the other histogram to this one
+     * @param other
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long bucketCount = other.buckets.get(i);
+            if(bucketCount != 0){
+                buckets.addAndGet(i, bucketCount);
+            }
+        }
+        count.addAndGet(other.count.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile in [0, 100]
+     * @return highest value of the bucket holding the percentile, 0 when nothing is recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.get();
+        if(total == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if(seen >= rank){
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int bucketOf(long value) {
+        if(value < SUB_BUCKET_COUNT){
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long highestValueOf(int bucket) {
+        if(bucket < SUB_BUCKET_COUNT){
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        long lowest = (long) (SUB_BUCKET_COUNT + bucket % SUB_BUCKET_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,114 @@
+package com.khaled.rbcassignment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency of the round stages, measured from the publication of the round start (RoundStartDto.startedAtMicros,
+ * carried to the ScoreKeeper by RoundResultDto.roundStartedAtMicros):
+ *  roundInput     : input of each participant received by the ResultAnalyzer
+ *  roundCompleted : round scored by the ResultAnalyzer
+ *  scoreKeeper    : round result stored by the ScoreKeeper
+ *
+ * One LatencyHistogram is kept per stage and participant, at most maxParticipants participants have their own
+ * histogram, the other ones share the "others" histogram. The histogram of all participants of a stage is
+ * merged when the latencies are read.
+ *
+ * Timestamps are epoch microseconds, precise within one JVM and as precise as the hosts clocks across JVMs.
+ *
+ * @author Khaled Mansour
+ */
+public class LatencyMetrics {
+
+    public static final String ROUND_INPUT     = "roundInput";
+    public static final String ROUND_COMPLETED = "roundCompleted";
+    public static final String SCORE_KEEPER    = "scoreKeeper";
+
+    public static final String ALL_PARTICIPANTS   = "all";
+    public static final String OTHER_PARTICIPANTS = "others";
+
+    public static final int DEFAULT_MAX_PARTICIPANTS = 1000;
+
+    private static final long EPOCH_OFFSET_NANOS = System.currentTimeMillis() * 1_000_000 - System.nanoTime();
+
+    private final int maxParticipants;
+    private final Map<String, Map<String, LatencyHistogram>> histogramsByStage = new ConcurrentHashMap<>();
+
+    public LatencyMetrics() {
+        this(DEFAULT_MAX_PARTICIPANTS);
+    }
+
+    public LatencyMetrics(int maxParticipants) {
+        this.maxParticipants = maxParticipants;
+    }
+
+    public static long nowMicros() {
+        return (EPOCH_OFFSET_NANOS + System.nanoTime()) / 1000;
+    }
+
+    /**
+     * @param stage
+     * @param roundStartedAtMicros 0 when the round start time is not known, nothing is recorded
+     */
+    public void record(String stage, long roundStartedAtMicros) {
+        record(stage, ALL_PARTICIPANTS, roundStartedAtMicros);
+    }
+
+    public void record(String stage, String participant, long roundStartedAtMicros) {
+        if(roundStartedAtMicros == 0){
+            return;
+        }
+        histogramOf(stage, participant).record(nowMicros() - roundStartedAtMicros);
+    }
+
+    private LatencyHistogram histogramOf(String stage, String participant) {
+        Map<String, LatencyHistogram> histograms = histogramsByStage.computeIfAbsent(stage, s -> new ConcurrentHashMap<>());
+        LatencyHistogram histogram = histograms.get(participant);
+        if(histogram == null){
+            String key = histograms.size() < maxParticipants ? participant : OTHER_PARTICIPANTS;
+            histogram = histograms.computeIfAbsent(key, k -> new LatencyHistogram());
+        }
+        return histogram;
+    }
+
+    /**
+     * @param stage
+     * @return histograms of the stage by participant, including the merged histogram of all participants
+     */
+    public Map<String, LatencyHistogram> getHistograms(String stage) {
+        Map<String, LatencyHistogram> histograms = new TreeMap<>(histogramsByStage.getOrDefault(stage, new ConcurrentHashMap<>()));
+        if(!histograms.containsKey(ALL_PARTICIPANTS)){
+            LatencyHistogram all = new LatencyHistogram();
+            histograms.values().forEach(all::merge);
+            histograms.put(ALL_PARTICIPANTS, all);
+        }
+        return histograms;
+    }
+
+    /**
+     * @return count, p50, p99, p999 and max in milliseconds, by stage and participant
+     */
+    public Map<String, Map<String, Map<String, Object>>> getPercentiles() {
+        Map<String, Map<String, Map<String, Object>>> percentiles = new TreeMap<>();
+        for (String stage : histogramsByStage.keySet()) {
+            Map<String, Map<String, Object>> stagePercentiles = new TreeMap<>();
+            getHistograms(stage).forEach((participant, histogram) -> {
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("count", histogram.getCount());
+                values.put("p50",  toMillis(histogram.getValueAtPercentile(50)));
+                values.put("p99",  toMillis(histogram.getValueAtPercentile(99)));
+                values.put("p999", toMillis(histogram.getValueAtPercentile(99.9)));
+                values.put("max",  toMillis(histogram.getMax()));
+                stagePercentiles.put(participant, values);
+            });
+            percentiles.put(stage, stagePercentiles);
+        }
+        return percentiles;
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+}
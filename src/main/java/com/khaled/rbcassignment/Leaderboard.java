@@ -0,0 +1,178 @@
+package com.khaled.rbcassignment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Standings of the players of one simulation, kept sorted while the scores change.
+ *
+ * Players are held in a treap ordered by score (highest first) then by name, every node knows the size of its
+ * subtree, so a score change, a rank lookup and reaching the first entry of the top K all cost O(log n).
+ * Players with the same score share the same rank (1, 2, 2, 4).
+ *
+ * @author Khaled Mansour
+ */
+public class Leaderboard {
+
+    private final Map<String, Node> nodesByPlayer = new HashMap<>();
+    private Node root;
+
+    /**
+     * Set the score of a player, the player is added if it's not on the board yet
+     * @param playerName
+     * @param score
+     */
+    public synchronized void update(String playerName, int score) {
+        Node node = nodesByPlayer.get(playerName);
+        if(node != null){
+            if(node.score == score){
+                return;
+            }
+            root = remove(root, node);
+        }
+        node = new Node(playerName, score, ThreadLocalRandom.current().nextInt());
+        nodesByPlayer.put(playerName, node);
+        root = insert(root, node);
+    }
+
+    /**
+     * @param n
+     * @return the first n players, best score first
+     */
+    public synchronized List<LeaderboardEntryDto> top(int n) {
+        List<LeaderboardEntryDto> entries = new ArrayList<>(Math.min(n, size(root)));
+        collect(root, n, entries);
+        return entries;
+    }
+
+    /**
+     * @param playerName
+     * @return rank and score of the player, null if the player is not on the board
+     */
+    public synchronized LeaderboardEntryDto rank(String playerName) {
+        Node node = nodesByPlayer.get(playerName);
+        return node == null ? null : new LeaderboardEntryDto(countHigherScores(root, node.score) + 1, node.playerName, node.score);
+    }
+
+    public synchronized int size() {
+        return size(root);
+    }
+
+    private void collect(Node node, int n, List<LeaderboardEntryDto> entries) {
+        if(node == null || entries.size() >= n){
+            return;
+        }
+        collect(node.left, n, entries);
+        if(entries.size() < n){
+            LeaderboardEntryDto previous = entries.isEmpty() ? null : entries.get(entries.size() - 1);
+            int rank = previous != null && previous.getScore() == node.score ? previous.getRank() : entries.size() + 1;
+            entries.add(new LeaderboardEntryDto(rank, node.playerName, node.score));
+            collect(node.right, n, entries);
+        }
+    }
+
+    private static int countHigherScores(Node node, int score) {
+        int count = 0;
+        while (node != null){
+            if(node.score > score){
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    private static Node insert(Node node, Node inserted) {
+        if(node == null){
+            return inserted;
+        }
+        if(inserted.priority > node.priority){
+            Node[] parts = split(node, inserted);
+            inserted.left  = parts[0];
+            inserted.right = parts[1];
+            return update(inserted);
+        }
+        if(compare(inserted, node) < 0){
+            node.left = insert(node.left, inserted);
+        } else {
+            node.right = insert(node.right, inserted);
+        }
+        return update(node);
+    }
+
+    private static Node remove(Node node, Node removed) {
+        if(node == removed){
+            return merge(node.left, node.right);
+        }
+        if(compare(removed, node) < 0){
+            node.left = remove(node.left, removed);
+        } else {
+            node.right = remove(node.right, removed);
+        }
+        return update(node);
+    }
+
+    /**
+     * @return the nodes ordered before the pivot and the nodes ordered after it
+     */
+    private static Node[] split(Node node, Node pivot) {
+        if(node == null){
+            return new Node[2];
+        }
+        if(compare(node, pivot) < 0){
+            Node[] parts = split(node.right, pivot);
+            node.right = parts[0];
+            parts[0] = update(node);
+            return parts;
+        }
+        Node[] parts = split(node.left, pivot);
+        node.left = parts[1];
+        parts[1] = update(node);
+        return parts;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if(left == null || right == null){
+            return left == null ? right : left;
+        }
+        if(left.priority > right.priority){
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private static int compare(Node node1, Node node2) {
+        return node1.score != node2.score ? Integer.compare(node2.score, node1.score) : node1.playerName.compareTo(node2.playerName);
+    }
+
+    private static Node update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+        return node;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static class Node {
+        private final String playerName;
+        private final int score;
+        private final int priority;
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        Node(String playerName, int score, int priority) {
+            this.playerName = playerName;
+            this.score      = score;
+            this.priority   = priority;
+        }
+    }
+}
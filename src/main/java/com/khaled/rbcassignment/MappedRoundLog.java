@@ -0,0 +1,340 @@
+package com.khaled.rbcassignment;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * RoundHistoryStore persisted in an append-only, memory-mapped log, so the history survives a restart.
+ *
+ * Rounds are appended in the compact binary encoding to segment files (rounds-N.log), every record is
+ * [length][payload]. Every append also writes an entry in the index file (rounds.idx):
+ * [simulationId][segment][offset], 12 bytes per round. Reading a simulation only touches its own records.
+ *
+ * On startup only the index is mapped and scanned to rebuild the per-simulation positions, the segments are
+ * mapped as they are but never read until a simulation is requested. The index is written after the record it
+ * points to, an entry with a zero simulationId marks the end of the index.
+ *
+ * The GameController continues the simulation ids after the highest one of the log (getSimulationIds) and the
+ * ScoreKeeper rebuilds the scores of the logged simulations on startup. A first round (season 1, round 1) arriving
+ * for an id the log already has still replaces whatever the log had for that id.
+ *
+ * @author Khaled Mansour
+ */
+public class MappedRoundLog implements RoundHistoryStore, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(MappedRoundLog.class);
+
+    private static final String SEGMENT_FILE_PREFIX = "rounds-";
+    private static final String SEGMENT_FILE_SUFFIX = ".log";
+    private static final String INDEX_FILE_NAME     = "rounds.idx";
+
+    private static final int INDEX_ENTRY_BYTES       = 12;
+    private static final int INDEX_ENTRIES_PER_CHUNK = 1 << 20;
+    private static final int RECORD_HEADER_BYTES     = 4;
+
+    //Simulation ids start from 1, 0 is never a valid id
+    private static final int END_OF_INDEX = 0;
+    //Marks the first round of a new simulation that reuses an id found in the log
+    private static final int RESET_OFFSET = -1;
+
+    private final MessageCodec codec = MessageCodecs.BINARY;
+
+    private final File directory;
+    private final int segmentSizeBytes;
+
+    private final List<MappedByteBuffer> segments     = new ArrayList<>();
+    private final List<MappedByteBuffer> indexChunks  = new ArrayList<>();
+    private final Map<Integer, Positions> positionsBySimulation = new HashMap<>();
+
+    private int  writeSegment;
+    private int  writeOffset;
+    @Getter private long numberOfIndexEntries;
+
+    public MappedRoundLog(File directory, int segmentSizeBytes) {
+        this.directory        = directory;
+        this.segmentSizeBytes = segmentSizeBytes;
+
+        if(!directory.isDirectory() && !directory.mkdirs()){
+            throw new IllegalStateException("Can't create round log directory " + directory);
+        }
+        try {
+            openSegments();
+            openIndex();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open round log in " + directory, e);
+        }
+        log.info("Round log opened in {}: {} simulations, {} rounds, {} segments",
+                directory, positionsBySimulation.size(), numberOfIndexEntries, segments.size());
+    }
+
+    @Override
+    public void append(RoundResultDto roundResultDto) {
+        byte[] round = codec.encode(roundResultDto);
+        synchronized (this) {
+            write(roundResultDto, round);
+        }
+    }
+
+    /**
+     * Rounds are encoded before taking the lock, which is taken once for all of them
+     */
+    @Override
+    public void appendAll(List<RoundResultDto> roundResults) {
+        byte[][] rounds = new byte[roundResults.size()][];
+        for (int i = 0; i < rounds.length; i++) {
+            rounds[i] = codec.encode(roundResults.get(i));
+        }
+        synchronized (this) {
+            for (int i = 0; i < rounds.length; i++) {
+                write(roundResults.get(i), rounds[i]);
+            }
+        }
+    }
+
+    //Called with the lock held
+    private void write(RoundResultDto roundResultDto, byte[] round) {
+        int simulationId = roundResultDto.getSimulationId();
+        boolean firstRound = roundResultDto.getSeasonNumber() == 1 && roundResultDto.getRoundNumber() == 1;
+
+        try {
+            if(firstRound && positionsBySimulation.containsKey(simulationId)){
+                writeIndexEntry(simulationId, 0, RESET_OFFSET);
+                positionsBySimulation.remove(simulationId);
+            }
+
+            int recordBytes = RECORD_HEADER_BYTES + round.length;
+            if(segments.isEmpty() || writeOffset + recordBytes > segments.get(writeSegment).capacity()){
+                rollSegment(recordBytes);
+            }
+
+            ByteBuffer segment = segments.get(writeSegment);
+            segment.putInt(writeOffset, round.length);
+            for (int i = 0; i < round.length; i++) {
+                segment.put(writeOffset + RECORD_HEADER_BYTES + i, round[i]);
+            }
+
+            writeIndexEntry(simulationId, writeSegment, writeOffset);
+            positionsBySimulation.computeIfAbsent(simulationId, id -> new Positions()).add(writeSegment, writeOffset);
+            writeOffset += recordBytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't append round of simulation " + simulationId, e);
+        }
+    }
+
+    @Override
+    public List<RoundResultDto> getRounds(int simulationId) {
+        long[] positions;
+        ByteBuffer[] segmentsSnapshot;
+        synchronized (this) {
+            Positions simulationPositions = positionsBySimulation.get(simulationId);
+            if(simulationPositions == null){
+                return Collections.emptyList();
+            }
+            positions = Arrays.copyOf(simulationPositions.values, simulationPositions.size);
+            segmentsSnapshot = segments.toArray(new ByteBuffer[0]);
+        }
+
+        List<RoundResultDto> roundResults = new ArrayList<>(positions.length);
+        for (long position : positions) {
+            roundResults.add(codec.decode(read(segmentsSnapshot[(int) (position >>> 32)], position), RoundResultDto.class));
+        }
+        return roundResults;
+    }
+
+    @Override
+    public synchronized int countRounds(int simulationId) {
+        Positions positions = positionsBySimulation.get(simulationId);
+        return positions == null ? 0 : positions.size;
+    }
+
+    @Override
+    public Iterator<RoundResultDto> iterateRounds(int simulationId, int fromIndex) {
+        long[] positions;
+        int numberOfRounds;
+        synchronized (this) {
+            Positions simulationPositions = positionsBySimulation.get(simulationId);
+            if(simulationPositions == null){
+                return Collections.emptyIterator();
+            }
+            //No copy, positions below size never change in this array (growing replaces the array)
+            positions      = simulationPositions.values;
+            numberOfRounds = simulationPositions.size;
+        }
+
+        return new Iterator<RoundResultDto>() {
+            private int index = Math.max(0, fromIndex);
+
+            @Override
+            public boolean hasNext() {
+                return index < numberOfRounds;
+            }
+
+            @Override
+            public RoundResultDto next() {
+                if(!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                long position = positions[index++];
+                return codec.decode(read(segment((int) (position >>> 32)), position), RoundResultDto.class);
+            }
+        };
+    }
+
+    @Override
+    public void simulationCompleted(int simulationId) {
+        //Nothing to do, every round is already in the log
+    }
+
+    @Override
+    public synchronized Collection<Integer> getSimulationIds() {
+        return new ArrayList<>(positionsBySimulation.keySet());
+    }
+
+    public synchronized int getNumberOfSimulations() {
+        return positionsBySimulation.size();
+    }
+
+    @Override
+    public synchronized void destroy() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        for (MappedByteBuffer indexChunk : indexChunks) {
+            indexChunk.force();
+        }
+    }
+
+    private synchronized ByteBuffer segment(int segment) {
+        return segments.get(segment);
+    }
+
+    private byte[] read(ByteBuffer mappedSegment, long position) {
+        //Absolute reads on a duplicate, the shared buffer position is never touched
+        ByteBuffer segment = mappedSegment.duplicate();
+        int offset = (int) position;
+        byte[] round = new byte[segment.getInt(offset)];
+        segment.position(offset + RECORD_HEADER_BYTES);
+        segment.get(round);
+        return round;
+    }
+
+    private void openSegments() throws IOException {
+        for (int segment = 0; ; segment++) {
+            File segmentFile = segmentFile(segment);
+            if(!segmentFile.isFile()){
+                break;
+            }
+            segments.add(map(segmentFile, segmentFile.length()));
+        }
+    }
+
+    private void openIndex() throws IOException {
+        File indexFile = new File(directory, INDEX_FILE_NAME);
+        long numberOfChunks = Math.max(1, (indexFile.length() + chunkBytes() - 1) / chunkBytes());
+        for (int chunk = 0; chunk < numberOfChunks; chunk++) {
+            indexChunks.add(mapIndexChunk(chunk));
+        }
+
+        for (long entry = 0; ; entry++) {
+            ByteBuffer indexChunk = indexChunkOf(entry);
+            if(indexChunk == null){
+                break;
+            }
+            int position = indexPositionOf(entry);
+            int simulationId = indexChunk.getInt(position);
+            if(simulationId == END_OF_INDEX){
+                break;
+            }
+            int segment = indexChunk.getInt(position + 4);
+            int offset  = indexChunk.getInt(position + 8);
+
+            numberOfIndexEntries++;
+            if(offset == RESET_OFFSET){
+                positionsBySimulation.remove(simulationId);
+                continue;
+            }
+            positionsBySimulation.computeIfAbsent(simulationId, id -> new Positions()).add(segment, offset);
+            if(segment > writeSegment || (segment == writeSegment && offset >= writeOffset)){
+                writeSegment = segment;
+                writeOffset  = offset + RECORD_HEADER_BYTES + segments.get(segment).getInt(offset);
+            }
+        }
+    }
+
+    private void writeIndexEntry(int simulationId, int segment, int offset) throws IOException {
+        ByteBuffer indexChunk = indexChunkOf(numberOfIndexEntries);
+        if(indexChunk == null){
+            indexChunk = mapIndexChunk(indexChunks.size());
+            indexChunks.add((MappedByteBuffer) indexChunk);
+        }
+        int position = indexPositionOf(numberOfIndexEntries);
+        indexChunk.putInt(position + 4, segment);
+        indexChunk.putInt(position + 8, offset);
+        //Written last, a torn entry still reads as the end of the index
+        indexChunk.putInt(position, simulationId);
+        numberOfIndexEntries++;
+    }
+
+    private void rollSegment(int recordBytes) throws IOException {
+        int segment = segments.size();
+        segments.add(map(segmentFile(segment), Math.max(segmentSizeBytes, recordBytes)));
+        writeSegment = segment;
+        writeOffset  = 0;
+        log.debug("Round log rolled to segment {}", segment);
+    }
+
+    private ByteBuffer indexChunkOf(long entry) {
+        int chunk = (int) (entry / INDEX_ENTRIES_PER_CHUNK);
+        return chunk < indexChunks.size() ? indexChunks.get(chunk) : null;
+    }
+
+    private int indexPositionOf(long entry) {
+        return (int) (entry % INDEX_ENTRIES_PER_CHUNK) * INDEX_ENTRY_BYTES;
+    }
+
+    private MappedByteBuffer mapIndexChunk(int chunk) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, INDEX_FILE_NAME), "rw")) {
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, chunk * chunkBytes(), chunkBytes());
+        }
+    }
+
+    private static long chunkBytes() {
+        return (long) INDEX_ENTRIES_PER_CHUNK * INDEX_ENTRY_BYTES;
+    }
+
+    private static MappedByteBuffer map(File file, long size) throws IOException {
+        //The mapping stays valid after the channel is closed
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private File segmentFile(int segment) {
+        return new File(directory, SEGMENT_FILE_PREFIX + segment + SEGMENT_FILE_SUFFIX);
+    }
+
+    /**
+     * Growable array of (segment, offset) pairs packed in longs
+     */
+    private static class Positions {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(int segment, int offset) {
+            if(size == values.length){
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = ((long) segment << 32) | (offset & 0xFFFFFFFFL);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.khaled.rbcassignment;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Learns, for each generator, how often each value follows its previous value, then plays the value
+ * with the highest expected number of matches given the last value of every generator.
+ *
+ * A transition row is allocated the first time a generator plays its previous value, a generator uses
+ * at most (maxValue - minValue)^2 counters. Values outside the range break the chain of the generator.
+ * Falls back to the frequency model until a generator has a known transition from its last value.
+ *
+ * @author Khaled Mansour
+ */
+public class MarkovPredictionStrategy implements PredictionStrategy {
+
+    private final int minValue;
+    private final int range;
+    private final Map<String, GeneratorChain> chains = new HashMap<>();
+    private final FrequencyPredictionStrategy fallback;
+
+    public MarkovPredictionStrategy(int minValue, int maxValue, int windowSize) {
+        this.minValue = minValue;
+        this.range    = (int) ((long) maxValue - minValue);
+        this.fallback = new FrequencyPredictionStrategy(minValue, maxValue, windowSize);
+    }
+
+    @Override
+    public synchronized int predict(RoundStartDto roundStartDto, Random random) {
+        double[] expectedMatches = null;
+        for (GeneratorChain chain : chains.values()) {
+            int[] row = chain.previous < 0 ? null : chain.transitions[chain.previous];
+            if(row == null){
+                continue;
+            }
+            if(expectedMatches == null){
+                expectedMatches = new double[range];
+            }
+            double rowTotal = chain.rowTotals[chain.previous];
+            for (int index = 0; index < range; index++) {
+                if(row[index] != 0){
+                    expectedMatches[index] += row[index] / rowTotal;
+                }
+            }
+        }
+        if(expectedMatches == null){
+            return fallback.predict(roundStartDto, random);
+        }
+
+        int best = 0;
+        for (int index = 1; index < range; index++) {
+            if(expectedMatches[index] > expectedMatches[best]){
+                best = index;
+            }
+        }
+        return best + minValue;
+    }
+
+    @Override
+    public synchronized void record(RoundInputDto roundInputDto) {
+        fallback.record(roundInputDto);
+
+        GeneratorChain chain = chains.computeIfAbsent(roundInputDto.getSourceName(), sourceName -> new GeneratorChain(range));
+        int index = roundInputDto.getValue() - minValue;
+        if(roundInputDto.getValue() < minValue || index >= range){
+            chain.previous = -1;
+            return;
+        }
+        if(chain.previous >= 0){
+            int[] row = chain.transitions[chain.previous];
+            if(row == null){
+                row = chain.transitions[chain.previous] = new int[range];
+            }
+            row[index]++;
+            chain.rowTotals[chain.previous]++;
+        }
+        chain.previous = index;
+    }
+
+    private static class GeneratorChain {
+        private final int[][] transitions;
+        private final int[] rowTotals;
+        private int previous = -1;
+
+        GeneratorChain(int range) {
+            this.transitions = new int[range][];
+            this.rowTotals   = new int[range];
+        }
+    }
+}
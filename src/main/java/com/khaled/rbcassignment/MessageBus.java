@@ -0,0 +1,97 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.common.header.Headers;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.MessageListener;
+
+import java.util.Collections;
+
+/**
+ * Transport used by all the simulation participants to publish and receive events.
+ *
+ * Two implementations are available (selected by "messageBus.type" in application.properties)
+ *      kafka     : KafkaMessageBus, every topic is a Kafka topic and every subscription a consumer group
+ *      inmemory  : InMemoryMessageBus, events are delivered inside the JVM without a broker
+ *
+ * Messages are opaque bytes (see MessageCodecs) and listeners always receive a ConsumerRecord
+ * so the participants don't need to know which transport is used. Record headers (see TraceHeaders) are
+ * delivered with the message by both transports.
+ *
+ * @author Khaled Mansour
+ */
+public interface MessageBus {
+
+    /**
+     * Publish a message to the given topic, delivery is asynchronous.
+     * Messages with the same key (simulationId) are delivered in publish order to the same listener thread
+     * @param topic
+     * @param key
+     * @param message
+     */
+    default void publish(String topic, String key, byte[] message) {
+        publish(topic, key, message, null);
+    }
+
+    /**
+     * Publish a message with record headers
+     * @param topic
+     * @param key
+     * @param message
+     * @param headers null for none
+     */
+    void publish(String topic, String key, byte[] message, Headers headers);
+
+    /**
+     * Publish a message without key, used for messages that don't belong to a simulation
+     * @param topic
+     * @param message
+     */
+    default void publish(String topic, byte[] message) {
+        publish(topic, null, message);
+    }
+
+    /**
+     * Subscribe a listener to the given topic(s). Each groupId receives its own copy of every message.
+     * The listener is called by up to "concurrency" threads (see MessageBusProperties), but messages
+     * with the same key are never processed concurrently.
+     * @param groupId
+     * @param listener
+     * @param topics
+     */
+    void subscribe(String groupId, MessageListener<String, byte[]> listener, String... topics);
+
+    /**
+     * Subscribe a listener receiving the messages several at a time, up to "maxBatchSize" (see MessageBusProperties).
+     * Messages with the same key are in publish order within a batch and batches with the same key are never
+     * processed concurrently. Transports that can't batch deliver batches of one message.
+     * @param groupId
+     * @param listener
+     * @param topics
+     */
+    default void subscribeBatch(String groupId, BatchMessageListener<String, byte[]> listener, String... topics) {
+        subscribe(groupId, message -> listener.onMessage(Collections.singletonList(message)), topics);
+    }
+
+    /**
+     * Subscribe a listener keeping state by partition, told about the partitions assigned to and revoked from it.
+     * Transports without partition reassignment ignore the partitionListener.
+     * @param groupId
+     * @param listener
+     * @param partitionListener
+     * @param topics co-partitioned topics
+     */
+    default void subscribe(String groupId, MessageListener<String, byte[]> listener, PartitionListener partitionListener, String... topics) {
+        subscribe(groupId, listener, topics);
+    }
+
+    /**
+     * Batch variant of {@link #subscribe(String, MessageListener, PartitionListener, String...)}
+     * @param groupId
+     * @param listener
+     * @param partitionListener
+     * @param topics co-partitioned topics
+     */
+    default void subscribeBatch(String groupId, BatchMessageListener<String, byte[]> listener, PartitionListener partitionListener, String... topics) {
+        subscribeBatch(groupId, listener, topics);
+    }
+}
@@ -0,0 +1,34 @@
+package com.khaled.rbcassignment;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MessageBus settings from application.properties
+ *
+ *      messageBus.concurrency                       : number of listener threads per subscription
+ *      messageBus.concurrencyByGroup.<groupId>      : overrides the concurrency of one subscription
+ *      messageBus.maxBatchSize                      : messages per batch of the batch subscriptions (Kafka max.poll.records)
+ *      messageBus.maxInFlight                       : messages sent to Kafka and not acknowledged yet, publishers wait past it
+ *
+ * Messages with the same key are always handled by the same listener thread, so the per simulation
+ * ordering is kept whatever the concurrency is. With Kafka, the topics consumed by one group must have
+ * the same number of partitions (and at least as many partitions as the concurrency).
+ *
+ * @author Khaled Mansour
+ */
+@Data
+@ConfigurationProperties(prefix = "messageBus")
+public class MessageBusProperties {
+    private int concurrency = 1;
+    private Map<String, Integer> concurrencyByGroup = new HashMap<>();
+    private int maxInFlight = 10000;
+    private int maxBatchSize = 500;
+
+    public int getConcurrency(String groupId) {
+        return Math.max(1, concurrencyByGroup.getOrDefault(groupId, concurrency));
+    }
+}
@@ -0,0 +1,13 @@
+package com.khaled.rbcassignment;
+
+/**
+ * Converts the messages exchanged between participants to/from the bytes carried by the MessageBus
+ *
+ * @author Khaled Mansour
+ */
+public interface MessageCodec {
+
+    byte[] encode(Object message);
+
+    <T> T decode(byte[] payload, Class<T> type);
+}
@@ -0,0 +1,68 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the codec used for each topic, topics without a configured codec use JSON.
+ *
+ * The codec is only chosen per topic when encoding, decoding detects the format from the payload itself
+ * so consumers keep working while producers are switched from one codec to the other.
+ *
+ * Only the round topics (BINARY_TOPICS) can use the binary codec, it doesn't support the other messages:
+ * configuring another topic fails on startup rather than on every publish.
+ *
+ * @author Khaled Mansour
+ */
+public class MessageCodecs {
+
+    public static final MessageCodec JSON   = new JsonMessageCodec();
+    public static final MessageCodec BINARY = new BinaryMessageCodec();
+
+    //Topics carrying the messages supported by BinaryMessageCodec
+    public static final Set<String> BINARY_TOPICS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            GameController.ROUND_START_TOPIC, GameController.ROUND_INPUT_TOPIC, GameController.ROUND_INPUT_BATCH_TOPIC,
+            GameController.ROUND_COMPLETED_TOPIC, GameController.ROUND_INPUT_AFTER_THE_FACT_TOPIC,
+            GameController.ROUND_INPUT_AFTER_THE_FACT_BATCH_TOPIC, GameController.ROUND_DEADLINE_TOPIC)));
+
+    private final Map<String, MessageCodec> codecsByTopic = new ConcurrentHashMap<>();
+
+    public MessageCodecs() {
+    }
+
+    public MessageCodecs(Collection<String> binaryTopics) {
+        for (String topic : binaryTopics) {
+            if(!BINARY_TOPICS.contains(topic)){
+                throw new IllegalArgumentException("Binary codec doesn't support the messages of [" + topic + "], binary topics are " + BINARY_TOPICS);
+            }
+            setCodec(topic, BINARY);
+        }
+    }
+
+    public void setCodec(String topic, MessageCodec codec) {
+        codecsByTopic.put(topic, codec);
+    }
+
+    public MessageCodec getCodec(String topic) {
+        return codecsByTopic.getOrDefault(topic, JSON);
+    }
+
+    public byte[] encode(String topic, Object message) {
+        return getCodec(topic).encode(message);
+    }
+
+    public <T> T decode(byte[] payload, Class<T> type) {
+        return BinaryMessageCodec.isBinary(payload) ? BINARY.decode(payload, type) : JSON.decode(payload, type);
+    }
+
+    public <T> T decode(ConsumerRecord<String, byte[]> message, Class<T> type) {
+        return decode(message.value(), type);
+    }
+}
@@ -0,0 +1,47 @@
+package com.khaled.rbcassignment;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Told which partitions of its topics a subscription owns, for participants keeping state by partition.
+ *
+ * The topics of one subscription are co-partitioned (same number of partitions, messages keyed by simulationId),
+ * so a partition number stands for the same share of the simulations on every topic of the subscription.
+ * Transports without partition reassignment (InMemoryMessageBus) never call it, every partition is owned for good.
+ *
+ * @author Khaled Mansour
+ */
+public interface PartitionListener {
+
+    /**
+     * Partitions are assigned to the subscription, before any of their messages is delivered
+     * @param positions offset of the next message to deliver, by partition then topic
+     * @param replay    moves partitions back, for the partitions whose state has to be rebuilt
+     */
+    void onPartitionsAssigned(Map<Integer, Map<String, Long>> positions, Replay replay);
+
+    /**
+     * Partitions are taken away from the subscription, they may be assigned to another node
+     * @param partitions
+     */
+    void onPartitionsRevoked(Collection<Integer> partitions);
+
+    /**
+     * Where the delivery of an assigned partition starts again, messages before the assigned positions are delivered again
+     */
+    interface Replay {
+
+        /**
+         * @param partition
+         * @param epochMillis the first messages of every topic published at or after this time are delivered next
+         */
+        void fromTime(int partition, long epochMillis);
+
+        /**
+         * @param partition
+         * @param offsets offset of the next message to deliver, by topic
+         */
+        void fromOffsets(int partition, Map<String, Long> offsets);
+    }
+}
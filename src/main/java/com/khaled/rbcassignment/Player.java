@@ -1,47 +1,85 @@
 package com.khaled.rbcassignment;
 
-import com.google.gson.Gson;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.listener.MessageListener;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 /**
  *
  * An object that represent a player who will always estimate
  * a random int in the range of 0 < x < 100
  *
+ * The estimate is a hash of the player name and the round (simulation, season, round and seed), so a player
+ * always plays the same value for the same round, whether it is played on the message bus or by the TurboEngine.
+ *
  * @author Khaled Mansour
  */
 
-public class Player implements MessageListener<String, String>{
+public class Player implements MessageListener<String, byte[]>{
     private static final Logger log = LoggerFactory.getLogger(Player.class);
 
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
     private String playerName;
-    private KafkaTemplate kafkaTemplate;
+    private MessageBus messageBus;
+    private MessageCodecs messageCodecs;
 
-    public Player(String playerName, KafkaTemplate kafkaTemplate ) {
-        this.playerName  = playerName;
-        this.kafkaTemplate = kafkaTemplate;
+    public Player(String playerName, MessageBus messageBus, MessageCodecs messageCodecs ) {
+        this.playerName    = playerName;
+        this.messageBus    = messageBus;
+        this.messageCodecs = messageCodecs;
     }
 
     @Override
-    public void onMessage(ConsumerRecord<String, String> message) {
+    public void onMessage(ConsumerRecord<String, byte[]> message) {
+        RoundStartDto roundStartDto = messageCodecs.decode(message, RoundStartDto.class);
         if(log.isTraceEnabled()){
-            log.trace("{} received seed: {}", playerName , message.value());
+            log.trace("{} received seed: {}", playerName , roundStartDto.getSeed());
         }
 
-        RoundStartDto roundStartDto = new Gson().fromJson(message.value(), RoundStartDto.class);
+        RoundInputDto roundInputDto = play(roundStartDto);
+
+        messageBus.publish(GameController.ROUND_INPUT_TOPIC,String.valueOf(roundInputDto.getSimulationId()),messageCodecs.encode(GameController.ROUND_INPUT_TOPIC, roundInputDto),
+                TraceHeaders.forward(message.headers(), playerName));
+    }
 
+    /**
+     * @param roundStartDto
+     * @return the input of this player for the round
+     */
+    public RoundInputDto play(RoundStartDto roundStartDto) {
         RoundInputDto roundInputDto = new RoundInputDto();
-        roundInputDto.setValue(ThreadLocalRandom.current().nextInt(1, 100));
+        roundInputDto.setValue(guess(playerName.hashCode(), roundStartDto.getSimulationId(), roundStartDto.getSeasonNumber(),
+                roundStartDto.getRoundNumber(), roundStartDto.getSeed()));
         roundInputDto.setSource(SourceEnum.PLAYER);
         roundInputDto.setSourceName(playerName);
         roundInputDto.setSimulationId(roundStartDto.getSimulationId());
+        roundInputDto.setSeasonNumber(roundStartDto.getSeasonNumber());
+        roundInputDto.setRoundNumber(roundStartDto.getRoundNumber());
+        return roundInputDto;
+    }
+
+    /**
+     * @param playerHash hash of the player name
+     * @return the estimate of the player for the round, in the range of 0 < x < 100
+     */
+    public static int guess(int playerHash, int simulationId, int seasonNumber, int roundNumber, int seed) {
+        long hash = mix(playerHash * GOLDEN_GAMMA + simulationId);
+        hash = mix(hash * GOLDEN_GAMMA + seasonNumber);
+        hash = mix(hash * GOLDEN_GAMMA + roundNumber);
+        hash = mix(hash * GOLDEN_GAMMA + seed);
+        return 1 + (int) ((hash >>> 1) % 99);
+    }
+
+    //MurmurHash3 finalizer
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
 
-        kafkaTemplate.send(GameController.ROUND_INPUT_TOPIC,new Gson().toJson(roundInputDto));
+    public String getPlayerName() {
+        return playerName;
     }
 }
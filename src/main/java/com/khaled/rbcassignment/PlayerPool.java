@@ -0,0 +1,148 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts any number of players behind a single subscription.
+ *
+ * The round start is decoded once, the players are split in batches of batchSize players and every batch
+ * is played by a bounded pool of worker threads then sent as one RoundInputBatchDto. When all the workers
+ * are busy and queueCapacity batches are waiting, the listener thread plays the next batch itself so
+ * round starts are not consumed faster than the players can play them.
+ *
+ * Batches refused by the workers (queue full or pool shut down) are played by the listener thread, a batch it
+ * waits for is always played.
+ *
+ * The listener thread waits for every batch of the round and publishes them itself, in the batch order:
+ * a round start is only done (its offset committed) once all its inputs are published, and the publishing
+ * thread is a listener thread, which the InMemoryMessageBus never blocks.
+ *
+ * A hosted player costs its Player object, no consumer or connection.
+ *
+ * This object listens to the below event(s)
+ *  ROUND_START_TOPIC
+ *
+ * @author Khaled Mansour
+ */
+public class PlayerPool implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(PlayerPool.class);
+
+    public static final int DEFAULT_BATCH_SIZE     = 1_000;
+    public static final int DEFAULT_WORKERS        = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final Player[] players;
+    private final int batchSize;
+    private final ThreadPoolExecutor workers;
+
+    private final MessageBus messageBus;
+    private final MessageCodecs messageCodecs;
+
+    public PlayerPool(MessageBus messageBus, MessageCodecs messageCodecs, Collection<Player> players) {
+        this(messageBus, messageCodecs, players, DEFAULT_BATCH_SIZE, DEFAULT_WORKERS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public PlayerPool(MessageBus messageBus, MessageCodecs messageCodecs, Collection<Player> players, int batchSize, int numberOfWorkers, int queueCapacity) {
+        if(batchSize < 1 || numberOfWorkers < 1 || queueCapacity < 1){
+            throw new IllegalArgumentException("batchSize, numberOfWorkers and queueCapacity must be positive");
+        }
+        this.messageBus    = messageBus;
+        this.messageCodecs = messageCodecs;
+        this.players       = players.toArray(new Player[0]);
+        this.batchSize     = batchSize;
+
+        AtomicInteger threadSequence = new AtomicInteger(0);
+        //Unlike CallerRunsPolicy, refused batches are also played once the pool is shut down
+        this.workers = new ThreadPoolExecutor(numberOfWorkers, numberOfWorkers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "player-pool-" + threadSequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, (batch, executor) -> batch.run());
+    }
+
+    public int size() {
+        return players.length;
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        messageBus.subscribe("PlayerPool", this::onMessage, GameController.ROUND_START_TOPIC);
+    }
+
+    public void onMessage(ConsumerRecord<String, byte[]> message) {
+        RoundStartDto roundStartDto = messageCodecs.decode(message, RoundStartDto.class);
+        if(log.isTraceEnabled()){
+            log.trace("{} players received seed: {}", players.length, roundStartDto.getSeed());
+        }
+
+        List<Future<byte[]>> batches = new ArrayList<>((players.length + batchSize - 1) / batchSize);
+        for (int from = 0; from < players.length; from += batchSize) {
+            int to = Math.min(players.length, from + batchSize);
+            int batchFrom = from;
+            batches.add(workers.submit(() -> play(roundStartDto, batchFrom, to)));
+        }
+
+        Headers roundInputHeaders = TraceHeaders.forward(message.headers(), "PlayerPool");
+        for (Future<byte[]> batch : batches) {
+            try {
+                messageBus.publish(GameController.ROUND_INPUT_BATCH_TOPIC, String.valueOf(roundStartDto.getSimulationId()),
+                        batch.get(), roundInputHeaders);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while playing Simulation {} > Season {} > Round {}", roundStartDto.getSimulationId(),
+                        roundStartDto.getSeasonNumber(), roundStartDto.getRoundNumber());
+                return;
+            } catch (ExecutionException e) {
+                log.error("Players failed to play Simulation {} > Season {} > Round {}", roundStartDto.getSimulationId(),
+                        roundStartDto.getSeasonNumber(), roundStartDto.getRoundNumber(), e.getCause());
+            }
+        }
+    }
+
+    private byte[] play(RoundStartDto roundStartDto, int from, int to) {
+        RoundInputBatchDto roundInputBatchDto = new RoundInputBatchDto();
+        roundInputBatchDto.setSimulationId(roundStartDto.getSimulationId());
+        List<RoundInputDto> inputs = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            inputs.add(players[i].play(roundStartDto));
+        }
+        roundInputBatchDto.setInputs(inputs);
+
+        return messageCodecs.encode(GameController.ROUND_INPUT_BATCH_TOPIC, roundInputBatchDto);
+    }
+
+    /**
+     * Batches already submitted are played, for the listener threads waiting for them
+     */
+    @Override
+    public void destroy() {
+        workers.shutdown();
+        try {
+            if(!workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)){
+                log.warn("Player pool workers still busy after {} seconds, interrupting them", SHUTDOWN_TIMEOUT_SECONDS);
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+    }
+}
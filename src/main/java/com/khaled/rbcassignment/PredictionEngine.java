@@ -1,18 +1,16 @@
 package com.khaled.rbcassignment;
 
-import com.google.gson.Gson;
+import lombok.Getter;
+import lombok.Setter;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Random;
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -20,9 +18,14 @@ import java.util.concurrent.ThreadLocalRandom;
  * An object that represent a prediction engine that will use
  * historical data to provide an estimate
  *
+ * The history is kept per simulation by the PredictionStrategy picked by the simulation, created on the
+ * simulation first round start and dropped once the simulation is completed
+ *
  * This object listens to the below event(s)
  *  ROUND_START_TOPIC
  *  ROUND_INPUT_AFTER_THE_FACT_TOPIC
+ *  ROUND_INPUT_AFTER_THE_FACT_BATCH_TOPIC
+ *  SIMULATION_COMPLETED_TOPIC
  *
  * @author Khaled Mansour
  */
@@ -31,52 +34,92 @@ import java.util.concurrent.ThreadLocalRandom;
 public class PredictionEngine {
     private static final Logger log = LoggerFactory.getLogger(PredictionEngine.class);
 
-    List<Integer> historicalData = Collections.synchronizedList(new ArrayList<Integer>());
+    Map<Integer, PredictionStrategy> historicalData = new ConcurrentHashMap<>();
+
+    @Autowired
+    @Getter @Setter private MessageBus messageBus;
+
+    @Autowired
+    @Getter @Setter private MessageCodecs messageCodecs = new MessageCodecs();
 
     @Autowired
-    private KafkaTemplate kafkaTemplate;
+    @Getter @Setter private PredictionStrategies predictionStrategies = new PredictionStrategies();
 
-    @KafkaListener(topics = {GameController.ROUND_START_TOPIC,GameController.ROUND_INPUT_AFTER_THE_FACT_TOPIC})
-    public void onMessage(ConsumerRecord<String, String> message) {
+    @PostConstruct
+    public void subscribe() {
+        messageBus.subscribe("PredictionEngine", this::onMessage, GameController.ROUND_START_TOPIC, GameController.ROUND_INPUT_AFTER_THE_FACT_TOPIC,
+                GameController.ROUND_INPUT_AFTER_THE_FACT_BATCH_TOPIC, GameController.SIMULATION_COMPLETED_TOPIC);
+    }
+
+    public void onMessage(ConsumerRecord<String, byte[]> message) {
         if(log.isTraceEnabled()){
-            log.trace("PredictionEngine received seed: {}", message.value());
+            log.trace("PredictionEngine received message on [{}]", message.topic());
         }
 
         if(GameController.ROUND_START_TOPIC.equals(message.topic())){
             listenOnRoundStart(message);
         } else if(GameController.ROUND_INPUT_AFTER_THE_FACT_TOPIC.equals(message.topic())){
             listenOnResultAfterTheFact(message);
+        } else if(GameController.ROUND_INPUT_AFTER_THE_FACT_BATCH_TOPIC.equals(message.topic())){
+            listenOnResultsAfterTheFact(message);
+        } else if(GameController.SIMULATION_COMPLETED_TOPIC.equals(message.topic())){
+            listenOnSimulationCompleted(message);
         }
     }
 
-    public void listenOnRoundStart(ConsumerRecord<String, String> message) {
-        RoundStartDto roundStartDto = new Gson().fromJson(message.value(), RoundStartDto.class);
+    public void listenOnRoundStart(ConsumerRecord<String, byte[]> message) {
+        RoundStartDto roundStartDto = messageCodecs.decode(message, RoundStartDto.class);
 
         RoundInputDto roundInputDto = new RoundInputDto();
+        PredictionStrategy predictionStrategy = historicalData.computeIfAbsent(roundStartDto.getSimulationId(),
+                simulationId -> createStrategy(roundStartDto.getPredictionStrategy()));
 
-        //If no historical data, pick random number
-        if(historicalData.isEmpty()){
-            log.debug("No History: picking random number");
-            roundInputDto.setValue(ThreadLocalRandom.current().nextInt(1, 100));
-        } else {
-            //If there are historical data, pick random element from history
-            Random rand = new Random();
-            int randomElement = historicalData.get(rand.nextInt(historicalData.size()));
-            log.debug("Picked: {} from Historical Data ",randomElement);
-            roundInputDto.setValue(randomElement);
-        }
+        int value = predictionStrategy.predict(roundStartDto, ThreadLocalRandom.current());
+        log.debug("Picked: {} from Historical Data ",value);
+        roundInputDto.setValue(value);
 
         roundInputDto.setSource(SourceEnum.PREDICTION_ENGINE);
         roundInputDto.setSourceName("PredictionEngine");
         roundInputDto.setSimulationId(roundStartDto.getSimulationId());
+        roundInputDto.setSeasonNumber(roundStartDto.getSeasonNumber());
+        roundInputDto.setRoundNumber(roundStartDto.getRoundNumber());
+
+        messageBus.publish(GameController.ROUND_INPUT_TOPIC,String.valueOf(roundInputDto.getSimulationId()),messageCodecs.encode(GameController.ROUND_INPUT_TOPIC, roundInputDto),
+                TraceHeaders.forward(message.headers(), roundInputDto.getSourceName()));
+    }
 
-        kafkaTemplate.send(GameController.ROUND_INPUT_TOPIC,new Gson().toJson(roundInputDto));
+    public void listenOnResultAfterTheFact(ConsumerRecord<String, byte[]> message) {
+        RoundInputDto roundInputDto = messageCodecs.decode(message, RoundInputDto.class);
+        recordAfterTheFact(roundInputDto);
     }
 
-    public void listenOnResultAfterTheFact(ConsumerRecord<String, String> message) {
-        RoundInputDto roundInputDto = new Gson().fromJson(message.value(),RoundInputDto.class);
+    public void listenOnResultsAfterTheFact(ConsumerRecord<String, byte[]> message) {
+        RoundInputBatchDto roundInputBatchDto = messageCodecs.decode(message, RoundInputBatchDto.class);
+        for (RoundInputDto roundInputDto : roundInputBatchDto.getInputs()) {
+            recordAfterTheFact(roundInputDto);
+        }
+    }
+
+    private void recordAfterTheFact(RoundInputDto roundInputDto) {
         log.debug("Received After The Fact from Source: {}  Value: {}", roundInputDto.getSourceName(), roundInputDto.getValue());
-        historicalData.add(roundInputDto.getValue());
+        //Values arriving after the simulation is completed are dropped
+        PredictionStrategy predictionStrategy = historicalData.get(roundInputDto.getSimulationId());
+        if(predictionStrategy != null){
+            predictionStrategy.record(roundInputDto);
+        }
+    }
+
+    public void listenOnSimulationCompleted(ConsumerRecord<String, byte[]> message) {
+        SimulationDto simulationDto = messageCodecs.decode(message, SimulationDto.class);
+        historicalData.remove(simulationDto.getSimulationId());
+    }
+
+    private PredictionStrategy createStrategy(String name) {
+        if(!predictionStrategies.isKnown(name)){
+            log.warn("Unknown prediction strategy {}, using {}", name, predictionStrategies.getDefaultStrategy());
+            name = null;
+        }
+        return predictionStrategies.create(name);
     }
 
 
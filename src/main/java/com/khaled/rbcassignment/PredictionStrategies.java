@@ -0,0 +1,80 @@
+package com.khaled.rbcassignment;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Holds the PredictionStrategy factories by name, a simulation picks its strategy by name
+ * (SimulationDto.predictionStrategy) and gets the default strategy when it doesn't.
+ *
+ * Built-in strategies:
+ *  frequency : a value of the history, picked as often as it was seen
+ *  markov    : the most likely value given the last value of each generator
+ *  seed      : the values played by the generators the last time the round seed came up
+ *
+ * @author Khaled Mansour
+ */
+public class PredictionStrategies {
+
+    public static final String FREQUENCY = "frequency";
+    public static final String MARKOV    = "markov";
+    public static final String SEED      = "seed";
+
+    public static final int DEFAULT_MAX_SEEDS = 4096;
+
+    private final Map<String, Supplier<PredictionStrategy>> factoriesByName = new ConcurrentHashMap<>();
+    private final String defaultStrategy;
+
+    public PredictionStrategies() {
+        this(FREQUENCY, 0, 100, 0);
+    }
+
+    /**
+     * @param defaultStrategy name of the strategy used when the simulation doesn't pick one
+     * @param minValue        range of the values learnt by the built-in strategies [minValue, maxValue)
+     * @param maxValue
+     * @param windowSize      number of most recent values the frequency model samples from, 0 to keep every value
+     */
+    public PredictionStrategies(String defaultStrategy, int minValue, int maxValue, int windowSize) {
+        register(FREQUENCY, () -> new FrequencyPredictionStrategy(minValue, maxValue, windowSize));
+        register(MARKOV,    () -> new MarkovPredictionStrategy(minValue, maxValue, windowSize));
+        register(SEED,      () -> new SeedAwarePredictionStrategy(minValue, maxValue, windowSize, DEFAULT_MAX_SEEDS));
+
+        if(!factoriesByName.containsKey(defaultStrategy)){
+            throw new IllegalArgumentException("Unknown prediction strategy " + defaultStrategy);
+        }
+        this.defaultStrategy = defaultStrategy;
+    }
+
+    public void register(String name, Supplier<PredictionStrategy> factory) {
+        factoriesByName.put(name, factory);
+    }
+
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(new TreeSet<>(factoriesByName.keySet()));
+    }
+
+    public String getDefaultStrategy() {
+        return defaultStrategy;
+    }
+
+    public boolean isKnown(String name) {
+        return name == null || factoriesByName.containsKey(name);
+    }
+
+    /**
+     * @param name name of the strategy, null for the default strategy
+     * @return a new instance of the strategy
+     */
+    public PredictionStrategy create(String name) {
+        Supplier<PredictionStrategy> factory = factoriesByName.get(name == null ? defaultStrategy : name);
+        if(factory == null){
+            throw new IllegalArgumentException("Unknown prediction strategy " + name);
+        }
+        return factory.get();
+    }
+}
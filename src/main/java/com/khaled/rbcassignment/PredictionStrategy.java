@@ -0,0 +1,29 @@
+package com.khaled.rbcassignment;
+
+import java.util.Random;
+
+/**
+ * A model used by the PredictionEngine to pick its value, one instance is created for each simulation.
+ *
+ * Messages of a simulation are handled by one listener thread at a time, but not always the same one (pooled bus
+ * workers, reassigned partitions) and the strategy keeps changing after the PredictionEngine published it:
+ * implementations are thread-safe so every thread sees the state left by the previous one.
+ *
+ * @author Khaled Mansour
+ */
+public interface PredictionStrategy {
+
+    /**
+     * @param roundStartDto the round about to be played
+     * @param random
+     * @return the value played by the PredictionEngine for this round
+     */
+    int predict(RoundStartDto roundStartDto, Random random);
+
+    /**
+     * A generator value of a completed round, generators values are received in the order the rounds are played
+     * but may be received after the next round is started
+     * @param roundInputDto
+     */
+    void record(RoundInputDto roundInputDto);
+}
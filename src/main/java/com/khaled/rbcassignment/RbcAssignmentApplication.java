@@ -1,27 +1,24 @@
 package com.khaled.rbcassignment;
 
-import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.kafka.annotation.EnableKafka;
-import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
-import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
-import org.springframework.kafka.listener.config.ContainerProperties;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @SpringBootApplication
-@EnableKafka
 @Configuration
 public class RbcAssignmentApplication {
 
@@ -36,7 +33,7 @@ public class RbcAssignmentApplication {
 	private int numberOfPlayers;
 
 	@Bean
-	public ProducerFactory<Integer, String> producerFactory() {
+	public ProducerFactory<String, byte[]> producerFactory() {
 		return new DefaultKafkaProducerFactory<>(producerConfigs());
 	}
 
@@ -45,62 +42,133 @@ public class RbcAssignmentApplication {
 		Map<String, Object> props = new HashMap<>();
 		props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaServerUrl);
 		props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-		props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+		props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
 		// See https://kafka.apache.org/documentation/#producerconfigs for more properties
 		return props;
 	}
 
 	@Bean
-	public KafkaTemplate<Integer, String> kafkaTemplate() {
+	public KafkaTemplate<String, byte[]> kafkaTemplate() {
 		return new KafkaTemplate<>(producerFactory());
 	}
 
+	@Bean
+	public MessageCodecs messageCodecs(@Value("${messageCodec.binaryTopics:}") String[] binaryTopics) {
+		return new MessageCodecs(Arrays.asList(binaryTopics));
+	}
 
+	@Bean
+	public ScoringEngine scoringEngine(@Value("${scoring.minValue:0}") int minValue,
+									   @Value("${scoring.maxValue:100}") int maxValue,
+									   @Value("${scoring.maxFlatRange:1048576}") int maxFlatRange) {
+		return new ScoringEngine(minValue, maxValue, maxFlatRange);
+	}
 
 	@Bean
-	public ConsumerFactory<String, String> consumerFactory() {
-		Map<String, Object> props = new HashMap<>();
-		props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG,kafkaServerUrl);
-		props.put(ConsumerConfig.GROUP_ID_CONFIG,"rbcassignment");
-		props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,StringDeserializer.class);
-		props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,StringDeserializer.class);
-		return new DefaultKafkaConsumerFactory<>(props);
+	public PredictionStrategies predictionStrategies(@Value("${prediction.strategy:frequency}") String defaultStrategy,
+													 @Value("${prediction.minValue:0}") int minValue,
+													 @Value("${prediction.maxValue:100}") int maxValue,
+													 @Value("${prediction.windowSize:0}") int windowSize) {
+		return new PredictionStrategies(defaultStrategy, minValue, maxValue, windowSize);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "roundHistory.store", havingValue = "tiered", matchIfMissing = true)
+	public RoundHistoryStore tieredRoundHistoryStore(@Value("${roundHistory.memoryBudgetMb:256}") long memoryBudgetMb,
+											   @Value("${roundHistory.spillDirectory:${java.io.tmpdir}/rbcassignment/round-history}") String spillDirectory) {
+		return new TieredRoundHistoryStore(memoryBudgetMb * 1024 * 1024, new File(spillDirectory));
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "roundHistory.store", havingValue = "mapped")
+	public RoundHistoryStore mappedRoundLog(@Value("${roundHistory.logDirectory:${java.io.tmpdir}/rbcassignment/round-log}") String logDirectory,
+											@Value("${roundHistory.segmentSizeMb:64}") int segmentSizeMb) {
+		return new MappedRoundLog(new File(logDirectory), segmentSizeMb * 1024 * 1024);
+	}
+
+	@Bean
+	public MessageBusProperties messageBusProperties() {
+		return new MessageBusProperties();
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "messageBus.type", havingValue = "kafka", matchIfMissing = true)
+	public MessageBus kafkaMessageBus() {
+		return new KafkaMessageBus(kafkaTemplate(), kafkaServerUrl, messageBusProperties());
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "messageBus.type", havingValue = "inmemory")
+	public MessageBus inMemoryMessageBus(@Value("${inMemoryBus.queueCapacity:10000}") int queueCapacity,
+										 @Value("${inMemoryBus.maxQueuedMessages:1000000}") int maxQueuedMessages,
+										 @Value("${inMemoryBus.workers:4}") int numberOfWorkers) {
+		return new InMemoryMessageBus(queueCapacity, maxQueuedMessages, numberOfWorkers, messageBusProperties());
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "messageBus.type", havingValue = "kafka", matchIfMissing = true)
+	public RoundStateSnapshots roundStateSnapshots(@Value("${resultAnalyzer.snapshotDirectory:${java.io.tmpdir}/rbcassignment/round-state}") String snapshotDirectory) {
+		return new RoundStateSnapshots(new File(snapshotDirectory));
+	}
+
+	@Bean
+	public RoundTimer roundTimer(MessageBus messageBus,
+								 @Value("${roundTimer.tickMillis:10}") long tickMillis,
+								 @Value("${roundTimer.ticksPerWheel:512}") int ticksPerWheel) {
+		return new RoundTimer(messageBus, tickMillis, ticksPerWheel);
+	}
+
+	@Bean
+	public RoundFlowControl roundFlowControl(@Value("${flowControl.maxRoundsInFlight:10000}") int maxRoundsInFlight,
+											 @Value("${flowControl.resumeRoundsInFlight:7500}") int resumeRoundsInFlight) {
+		return new RoundFlowControl(maxRoundsInFlight, resumeRoundsInFlight);
+	}
+
+	@Bean
+	public LatencyMetrics latencyMetrics(@Value("${latency.maxParticipants:1000}") int maxParticipants) {
+		return new LatencyMetrics(maxParticipants);
+	}
+
+	@Bean
+	public RoundTraceStore roundTraceStore(@Value("${tracing.maxTraces:1000}") int maxTraces) {
+		return new RoundTraceStore(maxTraces);
+	}
+
+	@Bean
+	public LatencyEndpoint latencyEndpoint(LatencyMetrics latencyMetrics) {
+		return new LatencyEndpoint(latencyMetrics);
 	}
 
 	@Bean
-	public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
-		ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
-		factory.setConsumerFactory(consumerFactory());
-		return factory;
+	@ConditionalOnProperty(name = "generators.mode", havingValue = "pool", matchIfMissing = true)
+	public GeneratorPool generatorPool(MessageBus messageBus, MessageCodecs messageCodecs,
+									   @Value("${generatorPool.generators:Generator1,Generator2,Generator3,Generator4,Generator5,Generator6}") String[] generatorNames,
+									   @Value("${generators.minSeed:0}") int minSeed,
+									   @Value("${generators.maxSeed:100}") int maxSeed) {
+		return new GeneratorPool(messageBus, messageCodecs, Arrays.asList(generatorNames), minSeed, maxSeed);
 	}
 
 	@Bean
-	public List<Player> players() {
+	public List<Player> players(MessageBus messageBus, MessageCodecs messageCodecs, @Value("${players.mode:pool}") String playersMode) {
 		List<Player> players = new ArrayList<>();
 		for (int playerNumber = 1; playerNumber <= numberOfPlayers; playerNumber++) {
 			String playerName = "Player"+playerNumber;
-			Player player = new Player(playerName,kafkaTemplate());
-			ConcurrentMessageListenerContainer container = constructKafkaConsumer(playerName, player, GameController.ROUND_START_TOPIC);
-			container.start();
+			Player player = new Player(playerName,messageBus,messageCodecs);
+			//In pool mode the PlayerPool is the only subscriber
+			if("consumers".equals(playersMode)){
+				messageBus.subscribe(playerName, player, GameController.ROUND_START_TOPIC);
+			}
 			players.add(player);
 		}
 		return players;
 	}
 
-
-	public ConcurrentMessageListenerContainer constructKafkaConsumer(String participantName, Object listener, String... topics) {
-		Map<String, Object> props = new HashMap<>();
-		props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG,kafkaServerUrl);
-		props.put(ConsumerConfig.GROUP_ID_CONFIG, participantName);
-		props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG,StringDeserializer.class);
-		props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG,StringDeserializer.class);
-		props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG,"latest");
-
-		DefaultKafkaConsumerFactory<String, String> kafkaConsumerFactory = new DefaultKafkaConsumerFactory<>(props);
-
-		ContainerProperties containerProperties = new ContainerProperties(topics);
-		containerProperties.setMessageListener(listener);
-
-		return new ConcurrentMessageListenerContainer<>(kafkaConsumerFactory,containerProperties);
+	@Bean
+	@ConditionalOnProperty(name = "players.mode", havingValue = "pool", matchIfMissing = true)
+	public PlayerPool playerPool(MessageBus messageBus, MessageCodecs messageCodecs, List<Player> players,
+								 @Value("${playerPool.batchSize:1000}") int batchSize,
+								 @Value("${playerPool.workers:4}") int numberOfWorkers,
+								 @Value("${playerPool.queueCapacity:64}") int queueCapacity) {
+		return new PlayerPool(messageBus, messageCodecs, players, batchSize, numberOfWorkers, queueCapacity);
 	}
 }
@@ -1,48 +1,291 @@
 package com.khaled.rbcassignment;
 
-import com.google.gson.Gson;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An object to receives inputs from Generators/Players/PredictionEngine
  * then calculate match points for each round
  *
+ * When roundDeadlineMillis is set, a round that didn't receive all its inputs within the deadline is scored
+ * with the inputs received so far, so a slow or dead participant doesn't stall its simulation. The deadline
+ * is kept by the RoundTimer of this node: only when the round is still open once it expires, it becomes a message
+ * to this object keyed by the simulation, handled in order with the inputs of the simulation.
+ * Inputs received once their round is closed are counted and discarded, as well as the participants that
+ * missed the deadline (actuator metrics resultAnalyzer.*).
+ *
+ * The latency of every input and of the scoring of every round, since the round start, is recorded in the
+ * LatencyMetrics (actuator endpoint /latency). For traced rounds the hops of the round start and of every input
+ * are added to the TraceHeaders of the round result.
+ *
+ * In the batch listeners mode (listeners.mode=batch) a whole poll is handled at once: its messages are grouped by
+ * simulation, the messages of each simulation are applied together and in order, and the rounds completed by the
+ * batch are published back to back once the batch is handled, so they share the producer batches.
+ *
+ * The rounds state is kept by input partition so the ResultAnalyzer scales out across nodes (one consumer group,
+ * the partitions are shared by the nodes): all the messages of a simulation are on the same partition of every topic.
+ * When a partition is assigned to this node and its state here is not current (another node consumed it since, or
+ * it was never owned here), the messages of its last replayMillis are replayed to rebuild its rounds in flight.
+ * Replayed messages the previous owner already handled only rebuild the state: their rounds are not declared
+ * completed again and their latencies and late inputs are not counted again. replayMillis has to cover the round
+ * deadline plus the time to detect a dead node, rounds started earlier are not rebuilt.
+ *
+ * With RoundStateSnapshots the rounds in flight of every partition are saved to local disk every snapshotIntervalMillis,
+ * with the input offsets they are the state of. A partition assigned after a restart is restored from its snapshot and
+ * only the input messages after it are replayed; snapshots older than replayMillis, or ahead of the committed offsets
+ * (the node died before committing), are not used and the partition is rebuilt from replayMillis.
+ *
  * This object listens to the below event(s)
  *  ROUND_START_TOPIC
  *  ROUND_INPUT_TOPIC
+ *  ROUND_INPUT_BATCH_TOPIC
+ *  ROUND_DEADLINE_TOPIC
  *
  * @author Khaled Mansour
  */
 
 @Component
-public class ResultAnalyzer {
+public class ResultAnalyzer implements PublicMetrics, PartitionListener {
     private static final Logger log = LoggerFactory.getLogger(ResultAnalyzer.class);
 
-    @Getter @Setter private Map<Integer, RoundResultDto> roundsResultsMap = new ConcurrentHashMap<>();
+    //Rounds in flight by input partition, the messages of a partition are handled by one thread at a time
+    private final Map<Integer, PartitionState> partitionStates = new ConcurrentHashMap<>();
+
+    //Participants seen in any round, the ones missing when a round deadline expires are counted as timed out
+    private final Set<String> knownParticipants = ConcurrentHashMap.newKeySet();
+    @Getter private final Map<String, AtomicLong> timeoutsByParticipant   = new ConcurrentHashMap<>();
+    @Getter private final Map<String, AtomicLong> lateInputsByParticipant = new ConcurrentHashMap<>();
+    private final AtomicLong roundsTimedOut = new AtomicLong();
+    private final AtomicLong replayedMessages = new AtomicLong();
+    private final AtomicLong restoredPartitions = new AtomicLong();
+    //Round (season << 32 | round) of every simulation waiting for its deadline, read by the RoundTimer thread
+    private final Map<Integer, Long> roundsAwaitingDeadline = new ConcurrentHashMap<>();
+
+    @Autowired
+    @Getter @Setter private MessageBus messageBus;
+
+    @Autowired
+    @Getter @Setter private MessageCodecs messageCodecs = new MessageCodecs();
 
     @Autowired
-    @Getter @Setter private KafkaTemplate kafkaTemplate;
+    @Getter @Setter private ScoringEngine scoringEngine = new ScoringEngine();
+
+    @Autowired(required = false)
+    @Getter @Setter private RoundTimer roundTimer;
+
+    @Autowired
+    @Getter @Setter private LatencyMetrics latencyMetrics = new LatencyMetrics();
+
+    @Autowired(required = false)
+    @Getter @Setter private RoundStateSnapshots roundStateSnapshots;
+
+    //0 to wait for every input
+    @Value("${resultAnalyzer.roundDeadlineMillis:0}")
+    @Getter @Setter private long roundDeadlineMillis;
+
+    //Messages replayed to rebuild the rounds in flight of a partition assigned to this node, 0 to start it empty
+    @Value("${resultAnalyzer.replayMillis:60000}")
+    @Getter @Setter private long replayMillis = 60000;
+
+    //Rounds in flight of a partition saved to the RoundStateSnapshots at most this often, 0 to take no snapshot
+    @Value("${resultAnalyzer.snapshotIntervalMillis:5000}")
+    @Getter @Setter private long snapshotIntervalMillis = 5000;
+
+    //record | batch
+    @Value("${listeners.mode:record}")
+    @Getter @Setter private String listenersMode = "record";
 
+    @PostConstruct
+    public void subscribe() {
+        String[] topics = {GameController.ROUND_START_TOPIC, GameController.ROUND_INPUT_TOPIC, GameController.ROUND_INPUT_BATCH_TOPIC, GameController.ROUND_DEADLINE_TOPIC};
+        if("batch".equals(listenersMode)){
+            messageBus.subscribeBatch("ResultAnalyzer", this::onMessages, this, topics);
+        } else {
+            messageBus.subscribe("ResultAnalyzer", this::onMessage, this, topics);
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<Integer, Map<String, Long>> positions, Replay replay) {
+        Set<Integer> rebuilt = new TreeSet<>();
+        long replayFromMillis = System.currentTimeMillis() - replayMillis;
+        positions.forEach((partition, topicPositions) -> {
+            PartitionState state = partitionStates.get(partition);
+            if(state != null && state.isAt(topicPositions)){
+                //No message of the partition was handled elsewhere since this node owned it
+                return;
+            }
+            state = new PartitionState(partition, topicPositions);
+            partitionStates.put(partition, state);
+
+            RoundStateSnapshotDto snapshot = restorableSnapshot(partition, topicPositions, replayFromMillis);
+            if(snapshot != null){
+                restore(state, snapshot);
+                replay.fromOffsets(partition, snapshot.getPositions());
+                rebuilt.add(partition);
+            } else if(replayMillis > 0){
+                replay.fromTime(partition, replayFromMillis);
+                rebuilt.add(partition);
+            }
+        });
+        log.info("Partitions {} assigned, rebuilding the rounds in flight of {}", positions.keySet(), rebuilt);
+    }
+
+    /**
+     * @return the snapshot of the partition when the input messages after it can still be replayed
+     */
+    private RoundStateSnapshotDto restorableSnapshot(int partition, Map<String, Long> topicPositions, long replayFromMillis) {
+        if(roundStateSnapshots == null){
+            return null;
+        }
+        RoundStateSnapshotDto snapshot = roundStateSnapshots.load(partition);
+        if(snapshot == null || snapshot.getTakenAtMillis() < replayFromMillis){
+            return null;
+        }
+        for (Map.Entry<String, Long> topicPosition : topicPositions.entrySet()) {
+            Long snapshotPosition = snapshot.getPositions().get(topicPosition.getKey());
+            if(snapshotPosition == null || snapshotPosition > topicPosition.getValue()){
+                return null;
+            }
+        }
+        return snapshot;
+    }
+
+    private void restore(PartitionState state, RoundStateSnapshotDto snapshot) {
+        state.positions.putAll(snapshot.getPositions());
+        state.closedRounds.addAll(snapshot.getClosedRounds());
+        for (RoundResultDto roundResultDto : snapshot.getRounds()) {
+            state.roundsResults.put(roundResultDto.getSimulationId(), roundResultDto);
+            if(roundDeadlineMillis > 0 && roundTimer != null && !state.closedRounds.contains(roundResultDto.getSimulationId())){
+                //The deadline of the round was scheduled by the node which took the snapshot
+                RoundStartDto roundStartDto = new RoundStartDto();
+                roundStartDto.setSimulationId(roundResultDto.getSimulationId());
+                roundStartDto.setSeasonNumber(roundResultDto.getSeasonNumber());
+                roundStartDto.setRoundNumber(roundResultDto.getRoundNumber());
+                roundStartDto.setNumberOfPartictipants(roundResultDto.getNumberOfParticipatns());
+                roundStartDto.setStartedAtMicros(roundResultDto.getRoundStartedAtMicros());
+                scheduleDeadline(roundStartDto, remainingDeadlineMillis(roundStartDto));
+            }
+        }
+        restoredPartitions.incrementAndGet();
+        log.info("Partition {} restored with {} rounds from its snapshot at {}", snapshot.getPartition(), snapshot.getRounds().size(), snapshot.getPositions());
+    }
+
+    /**
+     * Save the rounds in flight of the partition when its last snapshot is older than snapshotIntervalMillis
+     */
+    private void snapshotIfDue(PartitionState state) {
+        if(roundStateSnapshots == null || snapshotIntervalMillis <= 0){
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if(now - state.snapshotAtMillis < snapshotIntervalMillis){
+            return;
+        }
+        RoundStateSnapshotDto snapshot = new RoundStateSnapshotDto();
+        snapshot.setPartition(state.partition);
+        snapshot.setTakenAtMillis(now);
+        snapshot.getPositions().putAll(state.positions);
+        snapshot.getRounds().addAll(state.roundsResults.values());
+        snapshot.getClosedRounds().addAll(state.closedRounds);
+        roundStateSnapshots.save(snapshot);
+        state.snapshotAtMillis = now;
+    }
+
+    /**
+     * The state of the partitions is kept, it is still current if they are assigned back to this node
+     */
+    @Override
+    public void onPartitionsRevoked(Collection<Integer> partitions) {
+        log.info("Partitions {} revoked", partitions);
+    }
+
+    /**
+     * @param partition
+     * @return the rounds in flight of the simulations of the partition, by simulationId
+     */
+    public Map<Integer, RoundResultDto> getRoundsResultsMap(int partition) {
+        return stateOf(partition).roundsResults;
+    }
+
+    private PartitionState stateOf(int partition) {
+        return partitionStates.computeIfAbsent(partition, p -> new PartitionState(p, Collections.emptyMap()));
+    }
+
+    public void onMessage(ConsumerRecord<String, byte[]> message) {
+        List<CompletedRound> completedRounds = new ArrayList<>(1);
+        handle(message, completedRounds);
+        publish(completedRounds);
+    }
+
+    /**
+     * Handle a batch of messages, the messages of every simulation are handled together in their original order
+     * @param messages
+     */
+    public void onMessages(List<ConsumerRecord<String, byte[]>> messages) {
+        Map<String, List<ConsumerRecord<String, byte[]>>> messagesBySimulation = new LinkedHashMap<>();
+        for (ConsumerRecord<String, byte[]> message : messages) {
+            messagesBySimulation.computeIfAbsent(message.key(), key -> new ArrayList<>()).add(message);
+        }
+
+        List<CompletedRound> completedRounds = new ArrayList<>();
+        for (List<ConsumerRecord<String, byte[]>> simulationMessages : messagesBySimulation.values()) {
+            for (ConsumerRecord<String, byte[]> message : simulationMessages) {
+                handle(message, completedRounds);
+            }
+        }
+        publish(completedRounds);
+    }
+
+    private void handle(ConsumerRecord<String, byte[]> message, List<CompletedRound> completedRounds) {
+        PartitionState state = stateOf(message.partition());
+        state.replaying = state.isReplayed(message);
+        if(state.replaying){
+            replayedMessages.incrementAndGet();
+        }
 
-    @KafkaListener(topics = {GameController.ROUND_START_TOPIC, GameController.ROUND_INPUT_TOPIC}, groupId = "ResultAnalyzer")
-    public void onMessage(ConsumerRecord<String, String> message) {
         if(GameController.ROUND_START_TOPIC.equals(message.topic())){
-            listenOnRoundStart(message);
+            listenOnRoundStart(message, state);
         } else if(GameController.ROUND_INPUT_TOPIC.equals(message.topic())){
-            listenOnRoundInput(message);
+            listenOnRoundInput(message, state, completedRounds);
+        } else if(GameController.ROUND_INPUT_BATCH_TOPIC.equals(message.topic())){
+            listenOnRoundInputBatch(message, state, completedRounds);
+        } else if(GameController.ROUND_DEADLINE_TOPIC.equals(message.topic())){
+            listenOnRoundDeadline(message, state, completedRounds);
+        }
+        state.positions.put(message.topic(), message.offset() + 1);
+        snapshotIfDue(state);
+    }
+
+    /**
+     * Declare the rounds completed
+     */
+    private void publish(List<CompletedRound> completedRounds) {
+        for (CompletedRound completedRound : completedRounds) {
+            messageBus.publish(GameController.ROUND_COMPLETED_TOPIC, completedRound.key, completedRound.roundResult, completedRound.headers);
         }
     }
 
@@ -50,33 +293,139 @@ public class ResultAnalyzer {
      * Listen to Round Start event and prepare the data structure to
      * store simulation results
      * @param message
+     * @param state    state of the partition of the message
      */
-    public void listenOnRoundStart(ConsumerRecord<String, String> message) {
-        RoundStartDto roundStartDto = new Gson().fromJson(message.value(), RoundStartDto.class);
-        RoundResultDto roundResultDto = roundsResultsMap.get(roundStartDto.getSimulationId());
+    private void listenOnRoundStart(ConsumerRecord<String, byte[]> message, PartitionState state) {
+        RoundStartDto roundStartDto = messageCodecs.decode(message, RoundStartDto.class);
+        RoundResultDto roundResultDto = state.roundsResults.get(roundStartDto.getSimulationId());
         if(roundResultDto == null){
             roundResultDto = new RoundResultDto();
             roundResultDto.setSimulationId(roundStartDto.getSimulationId());
             roundResultDto.setNumberOfParticipatns(roundStartDto.getNumberOfPartictipants());
-            roundsResultsMap.put(roundStartDto.getSimulationId(), roundResultDto);
+            state.roundsResults.put(roundStartDto.getSimulationId(), roundResultDto);
         }
 
         //Set current round number and current season number
         roundResultDto.setRoundNumber(roundStartDto.getRoundNumber());
         roundResultDto.setSeasonNumber(roundStartDto.getSeasonNumber());
+        roundResultDto.setRoundStartedAtMicros(roundStartDto.getStartedAtMicros());
+        state.closedRounds.remove(roundStartDto.getSimulationId());
+        if(TraceHeaders.isTraced(message.headers())){
+            state.roundTraces.put(roundStartDto.getSimulationId(), TraceHeaders.collect(message.headers(), LatencyMetrics.nowMicros()));
+        } else {
+            state.roundTraces.remove(roundStartDto.getSimulationId());
+        }
+
+        if(roundDeadlineMillis > 0 && roundTimer != null){
+            //The previous owner of the partition may be gone before the deadline, only the time left is waited
+            long delayMillis = state.replaying ? remainingDeadlineMillis(roundStartDto) : roundDeadlineMillis;
+            scheduleDeadline(roundStartDto, delayMillis);
+        }
+    }
+
+    /**
+     * The deadline is only published if the round is still waiting for it when it expires
+     */
+    private void scheduleDeadline(RoundStartDto roundStartDto, long delayMillis) {
+        int simulationId = roundStartDto.getSimulationId();
+        Long round = roundOf(roundStartDto.getSeasonNumber(), roundStartDto.getRoundNumber());
+        roundsAwaitingDeadline.put(simulationId, round);
+        roundTimer.schedule(GameController.ROUND_DEADLINE_TOPIC, String.valueOf(simulationId),
+                messageCodecs.encode(GameController.ROUND_DEADLINE_TOPIC, roundStartDto), null, delayMillis,
+                () -> round.equals(roundsAwaitingDeadline.get(simulationId)));
+    }
+
+    private static long roundOf(int seasonNumber, int roundNumber) {
+        return ((long) seasonNumber << 32) | roundNumber;
+    }
+
+    private long remainingDeadlineMillis(RoundStartDto roundStartDto) {
+        return Math.max(0, roundDeadlineMillis - (LatencyMetrics.nowMicros() - roundStartDto.getStartedAtMicros()) / 1000);
+    }
+
+    /**
+     * Listen to the deadline of a round, score the round with the inputs received so far if it is still running
+     * @param message
+     * @param state           state of the partition of the message
+     * @param completedRounds the round is added once scored
+     */
+    private void listenOnRoundDeadline(ConsumerRecord<String, byte[]> message, PartitionState state, List<CompletedRound> completedRounds) {
+        RoundStartDto roundStartDto = messageCodecs.decode(message, RoundStartDto.class);
+        RoundResultDto roundResultDto = state.roundsResults.get(roundStartDto.getSimulationId());
+        if(roundResultDto == null || state.closedRounds.contains(roundStartDto.getSimulationId())
+                || roundResultDto.getSeasonNumber() != roundStartDto.getSeasonNumber()
+                || roundResultDto.getRoundNumber() != roundStartDto.getRoundNumber()){
+            //Round already completed
+            return;
+        }
+
+        Set<String> received = new HashSet<>();
+        for (RoundInputDto roundInputDto : roundResultDto.getGeneratorsInputsForCurrentRound()) {
+            received.add(roundInputDto.getSourceName());
+        }
+        for (RoundInputDto roundInputDto : roundResultDto.getPlayersInputsForCurrentRound()) {
+            received.add(roundInputDto.getSourceName());
+        }
+        if(!state.replaying){
+            for (String participant : knownParticipants) {
+                if(!received.contains(participant)){
+                    timeoutsByParticipant.computeIfAbsent(participant, p -> new AtomicLong()).incrementAndGet();
+                }
+            }
+            roundsTimedOut.incrementAndGet();
+            log.warn("Simulation {} > Season {} > Round {} timed out with {} of {} inputs", roundResultDto.getSimulationId(), roundResultDto.getSeasonNumber(),
+                    roundResultDto.getRoundNumber(), roundResultDto.getNumberOfInputsReceivedForCurrentRound().get(), roundResultDto.getNumberOfParticipatns());
+        }
+
+        completeRound(roundResultDto, state, completedRounds);
     }
 
     /**
      * Listen to Round Inputs from Generators, Players and Prediction Engine
      * then calculate the match points for the round once all inputs are received
      * @param message
+     * @param state           state of the partition of the message
+     * @param completedRounds the round is added once scored
      */
-    public void listenOnRoundInput(ConsumerRecord<String, String> message) {
+    private void listenOnRoundInput(ConsumerRecord<String, byte[]> message, PartitionState state, List<CompletedRound> completedRounds) {
         //Receive current round inputs from Generators, Players and Prediction Engine
-        RoundInputDto roundInputDto = new Gson().fromJson(message.value(), RoundInputDto.class);
+        RoundInputDto roundInputDto = messageCodecs.decode(message, RoundInputDto.class);
+        addRoundInput(roundInputDto, message.headers(), state, completedRounds);
+    }
+
+    /**
+     * Listen to the inputs of several participants of the same round (GeneratorPool, PlayerPool),
+     * each input counts as the input of one participant
+     * @param message
+     * @param state           state of the partition of the message
+     * @param completedRounds the round is added once scored
+     */
+    private void listenOnRoundInputBatch(ConsumerRecord<String, byte[]> message, PartitionState state, List<CompletedRound> completedRounds) {
+        RoundInputBatchDto roundInputBatchDto = messageCodecs.decode(message, RoundInputBatchDto.class);
+        for (RoundInputDto roundInputDto : roundInputBatchDto.getInputs()) {
+            addRoundInput(roundInputDto, message.headers(), state, completedRounds);
+        }
+    }
+
+    private void addRoundInput(RoundInputDto roundInputDto, Headers headers, PartitionState state, List<CompletedRound> completedRounds) {
         log.debug("Received: Simulation {}, Source: {}, Value: {}" , roundInputDto.getSimulationId(), roundInputDto.getSourceName() , roundInputDto.getValue());
 
-        RoundResultDto roundResultDto = roundsResultsMap.get(roundInputDto.getSimulationId());
+        RoundResultDto roundResultDto = state.roundsResults.get(roundInputDto.getSimulationId());
+        if(isLate(roundInputDto, roundResultDto, state)){
+            log.debug("Discarding late input of {} for Simulation {}", roundInputDto.getSourceName(), roundInputDto.getSimulationId());
+            if(!state.replaying){
+                lateInputsByParticipant.computeIfAbsent(roundInputDto.getSourceName(), p -> new AtomicLong()).incrementAndGet();
+            }
+            return;
+        }
+        knownParticipants.add(roundInputDto.getSourceName());
+        if(!state.replaying){
+            latencyMetrics.record(LatencyMetrics.ROUND_INPUT, roundInputDto.getSourceName(), roundResultDto.getRoundStartedAtMicros());
+        }
+        Headers roundTrace = state.roundTraces.get(roundInputDto.getSimulationId());
+        if(roundTrace != null && TraceHeaders.isTraced(headers)){
+            TraceHeaders.addHop(roundTrace, roundInputDto.getSourceName(), headers, LatencyMetrics.nowMicros());
+        }
 
         if(roundInputDto.getSource().equals(SourceEnum.GENERATOR)){
             roundResultDto.getGeneratorsInputsForCurrentRound().add(roundInputDto);
@@ -88,25 +437,67 @@ public class ResultAnalyzer {
         int numberOfInputsExpected = roundResultDto.getNumberOfParticipatns() ;
         if(roundResultDto.getNumberOfInputsReceivedForCurrentRound().incrementAndGet() == numberOfInputsExpected){
             log.debug("All round inputs received.");
-            Map playersResults = calculateMatchPoints(roundResultDto.getGeneratorsInputsForCurrentRound(), roundResultDto.getPlayersInputsForCurrentRound());
+            completeRound(roundResultDto, state, completedRounds);
+        }
+    }
 
-            if(log.isDebugEnabled()){
-                log.debug("Players Results: {}", new Gson().toJson(playersResults));
-            }
+    /**
+     * An input is late when its round is already scored, inputs that don't tell their round belong to the current round
+     */
+    private boolean isLate(RoundInputDto roundInputDto, RoundResultDto roundResultDto, PartitionState state) {
+        if(roundResultDto == null || state.closedRounds.contains(roundInputDto.getSimulationId())){
+            return true;
+        }
+        return roundInputDto.getRoundNumber() != 0
+                && (roundInputDto.getRoundNumber() != roundResultDto.getRoundNumber() || roundInputDto.getSeasonNumber() != roundResultDto.getSeasonNumber());
+    }
+
+    private void completeRound(RoundResultDto roundResultDto, PartitionState state, List<CompletedRound> completedRounds) {
+        Map playersResults = calculateMatchPoints(roundResultDto.getGeneratorsInputsForCurrentRound(), roundResultDto.getPlayersInputsForCurrentRound());
 
-            roundResultDto.setResultForCurrentRound(playersResults);
+        if(log.isDebugEnabled()){
+            log.debug("Players Results: {}", playersResults);
+        }
+
+        roundResultDto.setResultForCurrentRound(playersResults);
+        //Rebuilt round, the previous owner of the partition already declared it completed
+        boolean declared = state.replaying;
+        byte[] roundResult = declared ? null : messageCodecs.encode(GameController.ROUND_COMPLETED_TOPIC, roundResultDto);
+        if(!declared){
+            latencyMetrics.record(LatencyMetrics.ROUND_COMPLETED, roundResultDto.getRoundStartedAtMicros());
+        }
 
+        //Clear simulation current round data
+        roundResultDto.getNumberOfInputsReceivedForCurrentRound().set(0);
+        roundResultDto.getGeneratorsInputsForCurrentRound().clear();
+        roundResultDto.getPlayersInputsForCurrentRound().clear();
 
-            String roundResultJson = new Gson().toJson(roundResultDto);
+        state.closedRounds.add(roundResultDto.getSimulationId());
+        roundsAwaitingDeadline.remove(roundResultDto.getSimulationId(), roundOf(roundResultDto.getSeasonNumber(), roundResultDto.getRoundNumber()));
 
-            //Clear simulation current round data
-            roundResultDto.getNumberOfInputsReceivedForCurrentRound().set(0);
-            roundResultDto.getGeneratorsInputsForCurrentRound().clear();
-            roundResultDto.getPlayersInputsForCurrentRound().clear();
+        Headers roundTrace = state.roundTraces.remove(roundResultDto.getSimulationId());
+        if(declared){
+            return;
+        }
+        //Declared completed once the message (or the batch) is handled
+        completedRounds.add(new CompletedRound(String.valueOf(roundResultDto.getSimulationId()), roundResult,
+                roundTrace == null ? null : TraceHeaders.send(roundTrace, "ResultAnalyzer")));
+    }
 
-            //Declare round completed
-            kafkaTemplate.send(GameController.ROUND_COMPLETED_TOPIC,roundResultJson);
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("resultAnalyzer.roundsTimedOut", roundsTimedOut.get()));
+        metrics.add(new Metric<>("resultAnalyzer.partitions", partitionStates.size()));
+        metrics.add(new Metric<>("resultAnalyzer.replayedMessages", replayedMessages.get()));
+        metrics.add(new Metric<>("resultAnalyzer.restoredPartitions", restoredPartitions.get()));
+        if(roundStateSnapshots != null){
+            metrics.add(new Metric<>("resultAnalyzer.snapshots", roundStateSnapshots.getNumberOfSaves()));
+            metrics.add(new Metric<>("resultAnalyzer.snapshotFailures", roundStateSnapshots.getNumberOfFailures()));
         }
+        timeoutsByParticipant.forEach((participant, timeouts) -> metrics.add(new Metric<>("resultAnalyzer.timeouts." + participant, timeouts.get())));
+        lateInputsByParticipant.forEach((participant, lateInputs) -> metrics.add(new Metric<>("resultAnalyzer.lateInputs." + participant, lateInputs.get())));
+        return metrics;
     }
 
     /**
@@ -116,10 +507,23 @@ public class ResultAnalyzer {
      * @return
      */
     public Map calculateMatchPoints(List<RoundInputDto> generatorsInput, List<RoundInputDto> playersInput) {
-        Map<String,Integer> playersResults = new HashMap<>();
-        for (RoundInputDto playerInput: playersInput) {
-            int nofMatches = countMatches(playerInput.getValue(),generatorsInput);
-            playersResults.put(playerInput.getSourceName(),nofMatches);
+        RoundInputDto[] generators = generatorsInput.toArray(new RoundInputDto[0]);
+        RoundInputDto[] players    = playersInput.toArray(new RoundInputDto[0]);
+
+        int[] generatorsValues = new int[generators.length];
+        for (int i = 0; i < generators.length; i++) {
+            generatorsValues[i] = generators[i].getValue();
+        }
+        int[] playersValues = new int[players.length];
+        for (int i = 0; i < players.length; i++) {
+            playersValues[i] = players[i].getValue();
+        }
+
+        int[] scores = scoringEngine.score(generatorsValues, playersValues);
+
+        Map<String,Integer> playersResults = new HashMap<>(players.length * 2);
+        for (int i = 0; i < players.length; i++) {
+            playersResults.put(players[i].getSourceName(), scores[i]);
         }
         return playersResults;
     }
@@ -140,5 +544,55 @@ public class ResultAnalyzer {
         return counter;
     }
 
+    /**
+     * Rounds in flight of the simulations of one input partition
+     */
+    private static final class PartitionState {
+        private final int partition;
+        private final Map<Integer, RoundResultDto> roundsResults = new ConcurrentHashMap<>();
+        //Simulations whose current round is scored and the next one not started yet
+        private final Set<Integer> closedRounds = ConcurrentHashMap.newKeySet();
+        //Trace headers collected for the current round of the traced simulations
+        private final Map<Integer, Headers> roundTraces = new ConcurrentHashMap<>();
+        //Offset of the next message to handle, by topic
+        private final Map<String, Long> positions = new ConcurrentHashMap<>();
+        //Messages under these offsets, by topic, were handled by the previous owner of the partition
+        private final Map<String, Long> replayUntil;
+        //The message being handled is replayed
+        private boolean replaying;
+        //Time of the last snapshot, the first message handled is followed by one
+        private long snapshotAtMillis;
+
+        PartitionState(int partition, Map<String, Long> assignedPositions) {
+            this.partition   = partition;
+            this.replayUntil = new HashMap<>(assignedPositions);
+            this.positions.putAll(assignedPositions);
+        }
+
+        boolean isReplayed(ConsumerRecord<String, byte[]> message) {
+            Long until = replayUntil.get(message.topic());
+            return until != null && message.offset() < until;
+        }
+
+        boolean isAt(Map<String, Long> assignedPositions) {
+            return positions.equals(assignedPositions);
+        }
+    }
+
+    /**
+     * Round result waiting to be published
+     */
+    public static final class CompletedRound {
+        private final String key;
+        private final byte[] roundResult;
+        private final Headers headers;
+
+        CompletedRound(String key, byte[] roundResult, Headers headers) {
+            this.key         = key;
+            this.roundResult = roundResult;
+            this.headers     = headers;
+        }
+    }
+
 
 }
@@ -0,0 +1,153 @@
+package com.khaled.rbcassignment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Backpressure of the ScoreKeeper on the GameController.
+ *
+ * A round is in flight from its start (GameController) until its result is stored (ScoreKeeper). The
+ * GameController starts the next round of a simulation as soon as its round is completed, whatever the ScoreKeeper
+ * lag is, so the rounds in flight are the rounds being played plus the completed rounds waiting for the ScoreKeeper.
+ * Delayed round starts (interval between rounds) are in flight while they wait in the RoundTimer.
+ * Once maxRoundsInFlight rounds are in flight, the round starts are deferred (in their start order) until
+ * the ScoreKeeper brings the rounds in flight back under resumeRoundsInFlight: round starts are paused,
+ * then go at the pace of the ScoreKeeper.
+ *
+ * The GameController and the ScoreKeeper run on the same node (coordinator.enabled), every round started here is
+ * stored here once (rounds completed twice are dropped by the ScoreKeeper). Rounds stored after a restart which were
+ * started before it have no slot, the rounds in flight never go under 0.
+ *
+ * Deferred round starts are run by the ScoreKeeper thread storing the round which frees their slot.
+ * Rounds in flight, deferred round starts and pauses are reported in the actuator metrics (roundFlowControl.*).
+ *
+ * @author Khaled Mansour
+ */
+public class RoundFlowControl implements PublicMetrics {
+    private static final Logger log = LoggerFactory.getLogger(RoundFlowControl.class);
+
+    private final int maxRoundsInFlight;
+    private final int resumeRoundsInFlight;
+
+    private final AtomicLong roundsInFlight = new AtomicLong();
+    private final Queue<Runnable> deferred  = new ConcurrentLinkedQueue<>();
+    private final AtomicLong deferredCount  = new AtomicLong();
+    private final AtomicLong deferredTotal  = new AtomicLong();
+    private final AtomicLong pauses         = new AtomicLong();
+
+    /**
+     * Round starts are never deferred
+     */
+    public RoundFlowControl() {
+        this(0, 0);
+    }
+
+    /**
+     * @param maxRoundsInFlight    round starts are deferred past this number of rounds in flight, 0 for no limit
+     * @param resumeRoundsInFlight deferred round starts resume under this number of rounds in flight, in [1, maxRoundsInFlight]
+     */
+    public RoundFlowControl(int maxRoundsInFlight, int resumeRoundsInFlight) {
+        if(maxRoundsInFlight < 0 || (maxRoundsInFlight > 0 && (resumeRoundsInFlight < 1 || resumeRoundsInFlight > maxRoundsInFlight))){
+            throw new IllegalArgumentException("maxRoundsInFlight must be >= 0 and resumeRoundsInFlight in [1, maxRoundsInFlight]");
+        }
+        this.maxRoundsInFlight    = maxRoundsInFlight;
+        this.resumeRoundsInFlight = resumeRoundsInFlight;
+    }
+
+    /**
+     * Start a round now, or once the ScoreKeeper has caught up
+     * @param roundStart publishes the round start
+     */
+    public void start(Runnable roundStart) {
+        if(maxRoundsInFlight == 0){
+            roundStart.run();
+            return;
+        }
+        //Round starts already deferred go first
+        if(deferredCount.get() == 0 && tryAcquire()){
+            roundStart.run();
+            return;
+        }
+        if(deferredCount.getAndIncrement() == 0){
+            pauses.incrementAndGet();
+            log.debug("{} rounds in flight, round starts are paused", roundsInFlight.get());
+        }
+        deferred.add(roundStart);
+        deferredTotal.incrementAndGet();
+        //The rounds in flight may all have been stored meanwhile
+        resume();
+    }
+
+    /**
+     * A round result is stored, its slot is freed
+     */
+    public void roundStored() {
+        if(maxRoundsInFlight == 0){
+            return;
+        }
+        roundsInFlight.updateAndGet(inFlight -> Math.max(0, inFlight - 1));
+        resume();
+    }
+
+    private void resume() {
+        if(roundsInFlight.get() >= resumeRoundsInFlight){
+            return;
+        }
+        while (!deferred.isEmpty() && tryAcquire()) {
+            Runnable roundStart = deferred.poll();
+            if(roundStart == null){
+                //Taken by a concurrent resume
+                roundsInFlight.decrementAndGet();
+                return;
+            }
+            deferredCount.decrementAndGet();
+            roundStart.run();
+        }
+    }
+
+    /**
+     * Take a slot, concurrent callers never go past maxRoundsInFlight
+     * @return false when maxRoundsInFlight rounds are in flight
+     */
+    private boolean tryAcquire() {
+        long inFlight;
+        do {
+            inFlight = roundsInFlight.get();
+            if(inFlight >= maxRoundsInFlight){
+                return false;
+            }
+        } while (!roundsInFlight.compareAndSet(inFlight, inFlight + 1));
+        return true;
+    }
+
+    public long getRoundsInFlight() {
+        return roundsInFlight.get();
+    }
+
+    public long getDeferred() {
+        return deferredCount.get();
+    }
+
+    public boolean isPaused() {
+        return deferredCount.get() > 0;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("roundFlowControl.roundsInFlight", roundsInFlight.get()));
+        metrics.add(new Metric<>("roundFlowControl.deferred", deferredCount.get()));
+        metrics.add(new Metric<>("roundFlowControl.deferredTotal", deferredTotal.get()));
+        metrics.add(new Metric<>("roundFlowControl.pauses", pauses.get()));
+        return metrics;
+    }
+}
@@ -0,0 +1,60 @@
+package com.khaled.rbcassignment;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Stores the detailed results of every round of every simulation for the ScoreKeeper
+ *
+ * @author Khaled Mansour
+ */
+public interface RoundHistoryStore {
+
+    /**
+     * Store a completed round, rounds of a simulation are appended in the order they are completed
+     * @param roundResultDto
+     */
+    void append(RoundResultDto roundResultDto);
+
+    /**
+     * Store several completed rounds, in the list order
+     * @param roundResults
+     */
+    default void appendAll(List<RoundResultDto> roundResults) {
+        for (RoundResultDto roundResultDto : roundResults) {
+            append(roundResultDto);
+        }
+    }
+
+    /**
+     * @param simulationId
+     * @return all the rounds of the simulation, empty if the simulation is unknown
+     */
+    List<RoundResultDto> getRounds(int simulationId);
+
+    /**
+     * @param simulationId
+     * @return number of rounds stored for the simulation, 0 if the simulation is unknown
+     */
+    int countRounds(int simulationId);
+
+    /**
+     * Rounds are decoded one at a time while iterating, the iterator sees the rounds stored when it was created
+     * @param simulationId
+     * @param fromIndex    index of the first round, in the order the rounds were appended
+     * @return the rounds of the simulation starting at fromIndex, empty if the simulation is unknown
+     */
+    Iterator<RoundResultDto> iterateRounds(int simulationId, int fromIndex);
+
+    /**
+     * @return ids of the simulations with stored rounds, including the ones stored before a restart by a persistent store
+     */
+    Collection<Integer> getSimulationIds();
+
+    /**
+     * No more rounds will be appended for this simulation
+     * @param simulationId
+     */
+    void simulationCompleted(int simulationId);
+}
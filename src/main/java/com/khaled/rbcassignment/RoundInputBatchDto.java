@@ -0,0 +1,15 @@
+package com.khaled.rbcassignment;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inputs of several participants of the same simulation round, sent as one message
+ */
+@Data
+public class RoundInputBatchDto {
+    private int simulationId;
+    private List<RoundInputDto> inputs = new ArrayList<>();
+}
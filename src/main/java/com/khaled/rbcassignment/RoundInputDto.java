@@ -10,4 +10,7 @@ public class RoundInputDto implements Serializable{
     private SourceEnum source;
     private String sourceName;
     private int value;
+    //Round the input is played for, 0 when not known by the participant
+    private int seasonNumber;
+    private int roundNumber;
 }
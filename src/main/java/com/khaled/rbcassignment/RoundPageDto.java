@@ -0,0 +1,16 @@
+package com.khaled.rbcassignment;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of the rounds of a simulation, nextCursor is null on the last page
+ */
+@Data
+public class RoundPageDto {
+    private int simulationId;
+    private List<RoundResultViewDto> rounds = new ArrayList<>();
+    private Integer nextCursor;
+}
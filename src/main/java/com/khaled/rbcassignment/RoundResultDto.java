@@ -20,4 +20,5 @@ public class RoundResultDto {
     private Map<String,Integer> resultForCurrentRound = new ConcurrentHashMap<>();
     private AtomicInteger numberOfInputsReceivedForCurrentRound = new AtomicInteger(0);
     private int numberOfParticipatns;
+    private long roundStartedAtMicros;
 }
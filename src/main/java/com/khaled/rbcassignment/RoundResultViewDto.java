@@ -0,0 +1,31 @@
+package com.khaled.rbcassignment;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Round result as returned by the API, without the bookkeeping the ResultAnalyzer needs while the round is running
+ */
+@Data
+@NoArgsConstructor
+public class RoundResultViewDto {
+    private int simulationId;
+    private int seasonNumber;
+    private int roundNumber;
+
+    private List<RoundInputDto> generatorsInputsForCurrentRound;
+    private List<RoundInputDto> playersInputsForCurrentRound;
+    private Map<String,Integer> resultForCurrentRound;
+
+    public RoundResultViewDto(RoundResultDto roundResultDto) {
+        this.simulationId                    = roundResultDto.getSimulationId();
+        this.seasonNumber                    = roundResultDto.getSeasonNumber();
+        this.roundNumber                     = roundResultDto.getRoundNumber();
+        this.generatorsInputsForCurrentRound = roundResultDto.getGeneratorsInputsForCurrentRound();
+        this.playersInputsForCurrentRound    = roundResultDto.getPlayersInputsForCurrentRound();
+        this.resultForCurrentRound           = roundResultDto.getResultForCurrentRound();
+    }
+}
@@ -10,4 +10,8 @@ public class RoundStartDto {
 
     private int roundNumber;
     private int seasonNumber;
+
+    private String predictionStrategy;
+    //When the round start is published (epoch microseconds), origin of the round stages latencies
+    private long startedAtMicros;
 }
@@ -0,0 +1,18 @@
+package com.khaled.rbcassignment;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class RoundStateSnapshotDto {
+    private int partition;
+    private long takenAtMillis;
+    //Offset of the next message of every input topic, the rounds are the state after the messages before them
+    private Map<String, Long> positions = new HashMap<>();
+    private List<RoundResultDto> rounds = new ArrayList<>();
+    private List<Integer> closedRounds = new ArrayList<>();
+}
@@ -0,0 +1,83 @@
+package com.khaled.rbcassignment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local snapshots of the ResultAnalyzer rounds in flight, one file per input partition.
+ *
+ * A snapshot is written to a temporary file then moved over the previous one, so a crash while writing leaves
+ * the previous snapshot in place. Snapshots record the input offsets they are the state of: a restarted node
+ * restores the latest snapshot of a partition and only replays the input messages after it.
+ *
+ * @author Khaled Mansour
+ */
+public class RoundStateSnapshots {
+    private static final Logger log = LoggerFactory.getLogger(RoundStateSnapshots.class);
+
+    private static final String SNAPSHOT_FILE_PREFIX = "partition-";
+    private static final String SNAPSHOT_FILE_SUFFIX = ".json";
+
+    private final File directory;
+
+    private final AtomicLong numberOfSaves    = new AtomicLong();
+    private final AtomicLong numberOfFailures = new AtomicLong();
+
+    public RoundStateSnapshots(File directory) {
+        this.directory = directory;
+        if(!directory.isDirectory() && !directory.mkdirs()){
+            throw new IllegalStateException("Can't create round state snapshot directory " + directory);
+        }
+    }
+
+    /**
+     * Called by the thread handling the partition, snapshots of different partitions are saved concurrently
+     * @param snapshot
+     */
+    public void save(RoundStateSnapshotDto snapshot) {
+        File snapshotFile = snapshotFile(snapshot.getPartition());
+        File temporaryFile = new File(directory, snapshotFile.getName() + ".tmp");
+        try {
+            Files.write(temporaryFile.toPath(), MessageCodecs.JSON.encode(snapshot));
+            Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            numberOfSaves.incrementAndGet();
+        } catch (IOException e) {
+            numberOfFailures.incrementAndGet();
+            log.error("Failed to save the round state snapshot of partition {}", snapshot.getPartition(), e);
+        }
+    }
+
+    /**
+     * @param partition
+     * @return the latest snapshot of the partition, null when there is none or it can't be read
+     */
+    public RoundStateSnapshotDto load(int partition) {
+        try {
+            return MessageCodecs.JSON.decode(Files.readAllBytes(snapshotFile(partition).toPath()), RoundStateSnapshotDto.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to load the round state snapshot of partition {}", partition, e);
+            return null;
+        }
+    }
+
+    public long getNumberOfSaves() {
+        return numberOfSaves.get();
+    }
+
+    public long getNumberOfFailures() {
+        return numberOfFailures.get();
+    }
+
+    private File snapshotFile(int partition) {
+        return new File(directory, SNAPSHOT_FILE_PREFIX + partition + SNAPSHOT_FILE_SUFFIX);
+    }
+}
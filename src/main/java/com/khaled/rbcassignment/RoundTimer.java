@@ -0,0 +1,265 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.common.header.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Publishes messages after a delay (the start of the next round/season), on a hashed wheel timer.
+ *
+ * Scheduling only appends the message to a lock-free queue. A single thread advances the wheel every tick:
+ * it moves the scheduled messages to the bucket of their deadline (deadline / tick modulo the wheel size,
+ * plus the number of turns of the wheel left) and publishes every message due in the current bucket as one
+ * batch. A message is never published before its deadline and at most about one tick after it, messages
+ * without delay are published as soon as the timer thread picks them up.
+ *
+ * A message can be scheduled with a condition, checked by the timer thread when the message is due: the message
+ * is dropped when the condition doesn't hold anymore (e.g. a round deadline once the round is completed).
+ *
+ * The lag between the deadline of a message and its publication is reported in the actuator metrics
+ * (roundTimer.*).
+ *
+ * @author Khaled Mansour
+ */
+public class RoundTimer implements PublicMetrics, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(RoundTimer.class);
+
+    public static final long DEFAULT_TICK_MILLIS     = 10;
+    public static final int  DEFAULT_TICKS_PER_WHEEL = 512;
+
+    private final MessageBus messageBus;
+    private final long tickNanos;
+    private final Entry[] wheel;
+    private final int mask;
+    private final long startNanos;
+    private final Queue<Entry> scheduled = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    //Ticks processed so far, only used by the timer thread
+    private long tick;
+
+    private final AtomicLong pending        = new AtomicLong();
+    private final AtomicLong fired          = new AtomicLong();
+    private final AtomicLong dropped        = new AtomicLong();
+    private final AtomicLong totalLagNanos  = new AtomicLong();
+    private volatile long maxLagNanos;
+    private volatile long lastBatchLagNanos;
+    private volatile int  lastBatchSize;
+
+    public RoundTimer(MessageBus messageBus) {
+        this(messageBus, DEFAULT_TICK_MILLIS, DEFAULT_TICKS_PER_WHEEL);
+    }
+
+    /**
+     * @param messageBus
+     * @param tickMillis    resolution of the timer
+     * @param ticksPerWheel number of buckets, rounded up to a power of 2
+     */
+    public RoundTimer(MessageBus messageBus, long tickMillis, int ticksPerWheel) {
+        if(tickMillis <= 0 || ticksPerWheel <= 0 || ticksPerWheel > 1 << 30){
+            throw new IllegalArgumentException("tickMillis must be positive and ticksPerWheel in [1, 2^30]");
+        }
+        this.messageBus = messageBus;
+        this.tickNanos  = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(ticksPerWheel);
+        this.wheel      = new Entry[size < ticksPerWheel ? size << 1 : size];
+        this.mask       = wheel.length - 1;
+        this.startNanos = System.nanoTime();
+
+        this.worker = new Thread(this::run, "round-timer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Publish the message once the delay is elapsed
+     * @param topic
+     * @param key
+     * @param message
+     * @param delayMillis
+     */
+    public void schedule(String topic, String key, byte[] message, long delayMillis) {
+        schedule(topic, key, message, null, delayMillis);
+    }
+
+    /**
+     * Publish the message with its record headers once the delay is elapsed
+     * @param topic
+     * @param key
+     * @param message
+     * @param headers null for none
+     * @param delayMillis
+     */
+    public void schedule(String topic, String key, byte[] message, Headers headers, long delayMillis) {
+        schedule(topic, key, message, headers, delayMillis, null);
+    }
+
+    /**
+     * Publish the message with its record headers once the delay is elapsed, if the condition still holds then
+     * @param topic
+     * @param key
+     * @param message
+     * @param headers     null for none
+     * @param delayMillis
+     * @param condition   checked on the timer thread, null to always publish
+     */
+    public void schedule(String topic, String key, byte[] message, Headers headers, long delayMillis, BooleanSupplier condition) {
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        scheduled.add(new Entry(topic, key, message, headers, condition, System.nanoTime() - startNanos + delayNanos));
+        pending.incrementAndGet();
+        if(delayNanos < tickNanos){
+            //Don't wait for the end of the tick
+            LockSupport.unpark(worker);
+        }
+    }
+
+    public long getPending() {
+        return pending.get();
+    }
+
+    private void run() {
+        List<Entry> due = new ArrayList<>();
+        while (running) {
+            long now = System.nanoTime() - startNanos;
+            long nextTickNanos = (tick + 1) * tickNanos;
+            if(now < nextTickNanos && scheduled.isEmpty()){
+                LockSupport.parkNanos(this, nextTickNanos - now);
+                continue;
+            }
+
+            transferScheduled(now, due);
+            //Expire every tick elapsed, more than one when the timer thread falls behind
+            while ((tick + 1) * tickNanos <= now) {
+                expire((int) (tick & mask), due);
+                tick++;
+            }
+            publish(due);
+            due.clear();
+        }
+    }
+
+    private void transferScheduled(long now, List<Entry> due) {
+        Entry entry;
+        while ((entry = scheduled.poll()) != null) {
+            if(entry.deadlineNanos <= now){
+                due.add(entry);
+                continue;
+            }
+            long deadlineTick = Math.max(entry.deadlineNanos / tickNanos, tick);
+            entry.remainingTurns = (deadlineTick - tick) / wheel.length;
+            int bucket = (int) (deadlineTick & mask);
+            entry.next = wheel[bucket];
+            wheel[bucket] = entry;
+        }
+    }
+
+    private void expire(int bucket, List<Entry> due) {
+        Entry previous = null;
+        Entry entry = wheel[bucket];
+        while (entry != null) {
+            Entry next = entry.next;
+            if(entry.remainingTurns <= 0){
+                if(previous == null){
+                    wheel[bucket] = next;
+                } else {
+                    previous.next = next;
+                }
+                entry.next = null;
+                due.add(entry);
+            } else {
+                entry.remainingTurns--;
+                previous = entry;
+            }
+            entry = next;
+        }
+    }
+
+    private void publish(List<Entry> due) {
+        if(due.isEmpty()){
+            return;
+        }
+        long now = System.nanoTime() - startNanos;
+        long batchLagNanos = 0;
+        int published = 0;
+        for (Entry entry : due) {
+            if(entry.condition != null && !entry.condition.getAsBoolean()){
+                continue;
+            }
+            published++;
+            try {
+                messageBus.publish(entry.topic, entry.key, entry.message, entry.headers);
+            } catch (RuntimeException e) {
+                log.error("Failed to publish delayed message on [{}] with key {}", entry.topic, entry.key, e);
+            }
+            batchLagNanos = Math.max(batchLagNanos, now - entry.deadlineNanos);
+            totalLagNanos.addAndGet(Math.max(0, now - entry.deadlineNanos));
+        }
+        pending.addAndGet(-due.size());
+        fired.addAndGet(published);
+        dropped.addAndGet(due.size() - published);
+        if(published == 0){
+            return;
+        }
+        lastBatchSize     = published;
+        lastBatchLagNanos = Math.max(0, batchLagNanos);
+        maxLagNanos       = Math.max(maxLagNanos, lastBatchLagNanos);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long firedCount = fired.get();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("roundTimer.pending", pending.get()));
+        metrics.add(new Metric<>("roundTimer.fired", firedCount));
+        metrics.add(new Metric<>("roundTimer.dropped", dropped.get()));
+        metrics.add(new Metric<>("roundTimer.lastBatch.size", lastBatchSize));
+        metrics.add(new Metric<>("roundTimer.lastBatch.lagMillis", toMillis(lastBatchLagNanos)));
+        metrics.add(new Metric<>("roundTimer.lag.meanMillis", firedCount == 0 ? 0 : toMillis(totalLagNanos.get() / (double) firedCount)));
+        metrics.add(new Metric<>("roundTimer.lag.maxMillis", toMillis(maxLagNanos)));
+        return metrics;
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    private static final class Entry {
+        private final String topic;
+        private final String key;
+        private final byte[] message;
+        private final Headers headers;
+        private final BooleanSupplier condition;
+        private final long deadlineNanos;
+        private long remainingTurns;
+        private Entry next;
+
+        Entry(String topic, String key, byte[] message, Headers headers, BooleanSupplier condition, long deadlineNanos) {
+            this.topic         = topic;
+            this.key           = key;
+            this.message       = message;
+            this.headers       = headers;
+            this.condition     = condition;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
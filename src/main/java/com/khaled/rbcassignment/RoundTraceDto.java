@@ -0,0 +1,26 @@
+package com.khaled.rbcassignment;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Path of a sampled round from the GameController to the ScoreKeeper (see TraceHeaders).
+ *
+ * hops         : every message of the round received by the ResultAnalyzer and the ScoreKeeper, in reception order
+ * criticalPath : the input of the last participant to arrive, then the round result reaching the ScoreKeeper
+ */
+@Data
+public class RoundTraceDto {
+    private int simulationId;
+    private int seasonNumber;
+    private int roundNumber;
+    //When the round start was published (epoch microseconds)
+    private long originMicros;
+    private double durationMillis;
+    private String lastParticipant;
+
+    private List<RoundTraceHopDto> hops = new ArrayList<>();
+    private List<RoundTraceHopDto> criticalPath = new ArrayList<>();
+}
@@ -0,0 +1,18 @@
+package com.khaled.rbcassignment;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One message of a traced round, times are milliseconds since the round start was published
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoundTraceHopDto {
+    private String from;
+    private String to;
+    private double sentAfterMillis;
+    private double receivedAfterMillis;
+}
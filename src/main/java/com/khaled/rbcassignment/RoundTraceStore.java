@@ -0,0 +1,59 @@
+package com.khaled.rbcassignment;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Traces of the sampled rounds (see TraceHeaders), the oldest traces are dropped past maxTraces
+ *
+ * @author Khaled Mansour
+ */
+public class RoundTraceStore {
+
+    public static final int DEFAULT_MAX_TRACES = 1000;
+
+    private final Map<String, RoundTraceDto> traces;
+
+    public RoundTraceStore() {
+        this(DEFAULT_MAX_TRACES);
+    }
+
+    public RoundTraceStore(int maxTraces) {
+        this.traces = new LinkedHashMap<String, RoundTraceDto>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RoundTraceDto> eldest) {
+                return size() > maxTraces;
+            }
+        };
+    }
+
+    public synchronized void add(RoundTraceDto roundTraceDto) {
+        traces.put(keyOf(roundTraceDto.getSimulationId(), roundTraceDto.getSeasonNumber(), roundTraceDto.getRoundNumber()), roundTraceDto);
+    }
+
+    /**
+     * @return the trace of the round, null when the round is not sampled or its trace was dropped
+     */
+    public synchronized RoundTraceDto get(int simulationId, int seasonNumber, int roundNumber) {
+        return traces.get(keyOf(simulationId, seasonNumber, roundNumber));
+    }
+
+    /**
+     * @return the traces kept for the simulation, oldest first
+     */
+    public synchronized List<RoundTraceDto> getTraces(int simulationId) {
+        List<RoundTraceDto> simulationTraces = new ArrayList<>();
+        for (RoundTraceDto roundTraceDto : traces.values()) {
+            if(roundTraceDto.getSimulationId() == simulationId){
+                simulationTraces.add(roundTraceDto);
+            }
+        }
+        return simulationTraces;
+    }
+
+    private static String keyOf(int simulationId, int seasonNumber, int roundNumber) {
+        return simulationId + "/" + seasonNumber + "/" + roundNumber;
+    }
+}
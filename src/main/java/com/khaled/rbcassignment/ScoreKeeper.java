@@ -1,25 +1,39 @@
 package com.khaled.rbcassignment;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-import com.google.gson.Gson;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -29,33 +43,254 @@ import java.util.concurrent.atomic.AtomicInteger;
  * This object is responsible for responding to the below API calls
  * GET /simulations
  * GET /simulations/{simulationId}
+ * GET /simulations/{simulationId}/rounds
+ * GET /simulations/{simulationId}/leaderboard
+ * GET /simulations/{simulationId}/leaderboard/{playerName}
+ * GET /simulations/{simulationId}/traces
+ * GET /simulations/{simulationId}/traces/{seasonNumber}/{roundNumber}
  *
  * This object listens to the below event(s)
  *  ROUND_COMPLETED_TOPIC
  *  SIMULATION_COMPLETED_TOPIC
  *
+ * The round results of the traced rounds end their trace (see TraceHeaders), kept in the RoundTraceStore.
+ * Every stored round frees its slot in the RoundFlowControl, which paces the GameController round starts.
+ *
+ * In the batch listeners mode (listeners.mode=batch) the rounds of a whole poll are scored by simulation and
+ * stored in the RoundHistoryStore together (see onMessages).
+ *
+ * A round completed twice by the ResultAnalyzer (its partition reassigned to another node before the offsets of
+ * the inputs were committed) is scored and stored once: rounds not after the last stored one of their simulation are dropped.
+ * The last stored round is kept in memory while the simulation runs, a round received after its completion is compared
+ * with the last round of the RoundHistoryStore.
+ *
+ * On startup the scores and leaderboards of the simulations already in the RoundHistoryStore (a persistent store
+ * after a restart) are rebuilt from their rounds. They are marked COMPLETE: the GameController doesn't resume the
+ * simulations interrupted by a restart.
+ *
+ * The leaderboards of the running simulations and of the last maxCompletedLeaderboards completed ones are kept,
+ * older leaderboards are dropped (GET /simulations still has their scores).
+ *
+ * The scores are kept in memory and every round of a simulation has to be stored here, so the ScoreKeeper runs on
+ * a single node with the GameController (coordinator.enabled).
  *
  * @author Khaled Mansour
  */
 @RestController
+@ConditionalOnProperty(name = "coordinator.enabled", havingValue = "true", matchIfMissing = true)
 public class ScoreKeeper {
     private static final Logger log = LoggerFactory.getLogger(ScoreKeeper.class);
 
-    @Getter @Setter private Map<Integer,SimulationScoreDto> allSimulationsScores     = new HashMap<>();
-    @Getter @Setter private Multimap<Integer, RoundResultDto > allSimulationsDetailedResults = ArrayListMultimap.create();
+    public static final int MAX_PAGE_SIZE         = 1000;
+    private static final int STREAM_FLUSH_INTERVAL = 100;
+
+    @Getter @Setter private Map<Integer,SimulationScoreDto> allSimulationsScores     = new ConcurrentHashMap<>();
+    @Getter @Setter private Map<Integer,Leaderboard>        leaderboards             = new ConcurrentHashMap<>();
+    //Last stored (season << 32 | round) of every running simulation
+    @Getter private final Map<Integer, Long> lastStoredRounds = new ConcurrentHashMap<>();
+    //Completed simulations whose leaderboard is kept, oldest completed first
+    private final Deque<Integer> completedLeaderboards = new ArrayDeque<>();
+
+    @Autowired
+    @Getter @Setter private MessageBus messageBus;
+
+    @Autowired
+    @Getter @Setter private MessageCodecs messageCodecs = new MessageCodecs();
+
+    @Autowired
+    @Getter @Setter private RoundHistoryStore roundHistoryStore;
+
+    @Autowired
+    @Getter @Setter private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    @Getter @Setter private LatencyMetrics latencyMetrics = new LatencyMetrics();
+
+    @Autowired
+    @Getter @Setter private RoundTraceStore roundTraceStore = new RoundTraceStore();
+
+    @Autowired
+    @Getter @Setter private RoundFlowControl roundFlowControl = new RoundFlowControl();
+
+    //Leaderboards kept for the last completed simulations, the running ones are always kept
+    @Value("${leaderboard.maxCompleted:1000}")
+    @Getter @Setter private int maxCompletedLeaderboards = 1000;
+
+    //record | batch
+    @Value("${listeners.mode:record}")
+    @Getter @Setter private String listenersMode = "record";
+
+    @PostConstruct
+    public void subscribe() {
+        restoreScores();
+        if("batch".equals(listenersMode)){
+            messageBus.subscribeBatch("ScoreKeeper", this::onMessages, GameController.ROUND_COMPLETED_TOPIC, GameController.SIMULATION_COMPLETED_TOPIC);
+        } else {
+            messageBus.subscribe("ScoreKeeper", this::onMessage, GameController.ROUND_COMPLETED_TOPIC, GameController.SIMULATION_COMPLETED_TOPIC);
+        }
+    }
+
+    /**
+     * Rebuild the scores and the leaderboards of the simulations found in the RoundHistoryStore
+     */
+    public void restoreScores() {
+        Collection<Integer> simulationIds = roundHistoryStore.getSimulationIds();
+        for (Integer simulationId : simulationIds) {
+            Iterator<RoundResultDto> rounds = roundHistoryStore.iterateRounds(simulationId, 0);
+            while (rounds.hasNext()){
+                RoundResultDto roundResultDto = rounds.next();
+                isNewRound(roundResultDto);
+                updateScores(Collections.singletonList(roundResultDto));
+            }
+            SimulationScoreDto simulationScoreDto = allSimulationsScores.get(simulationId);
+            if(simulationScoreDto != null){
+                simulationScoreDto.setStatus(StatusEnum.COMPLETE);
+                leaderboardCompleted(simulationId);
+            }
+            lastStoredRounds.remove(simulationId);
+            roundHistoryStore.simulationCompleted(simulationId);
+        }
+        if(!simulationIds.isEmpty()){
+            log.info("Restored the scores of {} simulations from the round history", simulationIds.size());
+        }
+    }
 
     @RequestMapping(value = "/simulations", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<Collection> getAllsimulations() {
         return new ResponseEntity<>(allSimulationsScores.values(),HttpStatus.OK);
     }
 
+    /**
+     * All the rounds of the simulation, streamed to the response while they are read from the RoundHistoryStore
+     */
     @RequestMapping(value = "/simulations/{simulationId}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<Collection<RoundResultDto>> getSimulationById(@PathVariable("simulationId") int simulationId) {
-        return new ResponseEntity<>(allSimulationsDetailedResults.get(simulationId),HttpStatus.OK);
+    public ResponseEntity<StreamingResponseBody> getSimulationById(@PathVariable("simulationId") int simulationId) {
+        Iterator<RoundResultDto> rounds = roundHistoryStore.iterateRounds(simulationId, 0);
+
+        //Flushed every STREAM_FLUSH_INTERVAL rounds rather than after every round
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.writeStartArray();
+            for (int count = 1; rounds.hasNext(); count++) {
+                writer.writeValue(generator, new RoundResultViewDto(rounds.next()));
+                if(count % STREAM_FLUSH_INTERVAL == 0){
+                    generator.flush();
+                }
+            }
+            generator.writeEndArray();
+            generator.flush();
+        };
+        return new ResponseEntity<>(body,HttpStatus.OK);
+    }
+
+    /**
+     * One page of the rounds of the simulation.
+     * The first page starts at (fromSeason, fromRound), next pages start at the nextCursor of the previous page.
+     * Rounds after (toSeason, toRound) are not returned.
+     */
+    @RequestMapping(value = "/simulations/{simulationId}/rounds", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<RoundPageDto> getSimulationRounds(@PathVariable("simulationId") int simulationId,
+                                                            @RequestParam(value = "cursor", required = false) Integer cursor,
+                                                            @RequestParam(value = "pageSize", defaultValue = "100") int pageSize,
+                                                            @RequestParam(value = "fromSeason", defaultValue = "1") int fromSeason,
+                                                            @RequestParam(value = "fromRound", defaultValue = "1") int fromRound,
+                                                            @RequestParam(value = "toSeason", defaultValue = "" + Integer.MAX_VALUE) int toSeason,
+                                                            @RequestParam(value = "toRound", defaultValue = "" + Integer.MAX_VALUE) int toRound) {
+        if(pageSize < 1 || pageSize > MAX_PAGE_SIZE || (cursor != null && cursor < 0)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        int index = cursor != null ? cursor : firstRoundFrom(simulationId, fromSeason, fromRound);
+        Iterator<RoundResultDto> rounds = roundHistoryStore.iterateRounds(simulationId, index);
+
+        RoundPageDto roundPageDto = new RoundPageDto();
+        roundPageDto.setSimulationId(simulationId);
+        while (rounds.hasNext()){
+            RoundResultDto roundResultDto = rounds.next();
+            if(compareRounds(roundResultDto.getSeasonNumber(), roundResultDto.getRoundNumber(), toSeason, toRound) > 0){
+                break;
+            }
+            if(roundPageDto.getRounds().size() == pageSize){
+                //A round of the range is left for the next page
+                roundPageDto.setNextCursor(index);
+                break;
+            }
+            roundPageDto.getRounds().add(new RoundResultViewDto(roundResultDto));
+            index++;
+        }
+        return new ResponseEntity<>(roundPageDto,HttpStatus.OK);
+    }
+
+    /**
+     * The best players of the simulation, best score first
+     */
+    @RequestMapping(value = "/simulations/{simulationId}/leaderboard", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<LeaderboardEntryDto>> getLeaderboard(@PathVariable("simulationId") int simulationId,
+                                                                    @RequestParam(value = "top", defaultValue = "10") int top) {
+        Leaderboard leaderboard = leaderboards.get(simulationId);
+        if(leaderboard == null){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if(top < 1){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(leaderboard.top(top),HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/simulations/{simulationId}/leaderboard/{playerName}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<LeaderboardEntryDto> getPlayerRank(@PathVariable("simulationId") int simulationId,
+                                                             @PathVariable("playerName") String playerName) {
+        Leaderboard leaderboard = leaderboards.get(simulationId);
+        LeaderboardEntryDto leaderboardEntryDto = leaderboard == null ? null : leaderboard.rank(playerName);
+        if(leaderboardEntryDto == null){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(leaderboardEntryDto,HttpStatus.OK);
+    }
+
+    /**
+     * Traces of the sampled rounds of the simulation, oldest first
+     */
+    @RequestMapping(value = "/simulations/{simulationId}/traces", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<RoundTraceDto>> getTraces(@PathVariable("simulationId") int simulationId) {
+        return new ResponseEntity<>(roundTraceStore.getTraces(simulationId),HttpStatus.OK);
     }
 
-    @KafkaListener(topics = {GameController.ROUND_COMPLETED_TOPIC,GameController.SIMULATION_COMPLETED_TOPIC},groupId = "ScoreKeeper")
-    public void onMessage(ConsumerRecord<String, String> message) {
+    @RequestMapping(value = "/simulations/{simulationId}/traces/{seasonNumber}/{roundNumber}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<RoundTraceDto> getTrace(@PathVariable("simulationId") int simulationId,
+                                                  @PathVariable("seasonNumber") int seasonNumber,
+                                                  @PathVariable("roundNumber") int roundNumber) {
+        RoundTraceDto roundTraceDto = roundTraceStore.get(simulationId, seasonNumber, roundNumber);
+        if(roundTraceDto == null){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(roundTraceDto,HttpStatus.OK);
+    }
+
+    /**
+     * Rounds are stored in the order they are played, binary search the index of the first round at or after (season, round)
+     */
+    private int firstRoundFrom(int simulationId, int seasonNumber, int roundNumber) {
+        int low  = 0;
+        int high = roundHistoryStore.countRounds(simulationId);
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            RoundResultDto roundResultDto = roundHistoryStore.iterateRounds(simulationId, middle).next();
+            if(compareRounds(roundResultDto.getSeasonNumber(), roundResultDto.getRoundNumber(), seasonNumber, roundNumber) < 0){
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int compareRounds(int season1, int round1, int season2, int round2) {
+        return season1 != season2 ? Integer.compare(season1, season2) : Integer.compare(round1, round2);
+    }
+
+    public void onMessage(ConsumerRecord<String, byte[]> message) {
 
         if(GameController.ROUND_COMPLETED_TOPIC.equals(message.topic())){
             listenOnRoundCompleted(message);
@@ -64,51 +299,169 @@ public class ScoreKeeper {
         }
     }
 
-    public void listenOnSimulationCompleted(ConsumerRecord<String, String> message) {
-        SimulationDto simulationDto = new Gson().fromJson(message.value(), SimulationDto.class);
-        allSimulationsScores.get(simulationDto.getSimulationId()).setStatus(StatusEnum.COMPLETE);
+    public void listenOnSimulationCompleted(ConsumerRecord<String, byte[]> message) {
+        SimulationDto simulationDto = messageCodecs.decode(message, SimulationDto.class);
+        SimulationScoreDto simulationScoreDto = allSimulationsScores.get(simulationDto.getSimulationId());
+        if(simulationScoreDto.getStatus() != StatusEnum.COMPLETE){
+            simulationScoreDto.setStatus(StatusEnum.COMPLETE);
+            leaderboardCompleted(simulationDto.getSimulationId());
+        }
+        lastStoredRounds.remove(simulationDto.getSimulationId());
+        roundHistoryStore.simulationCompleted(simulationDto.getSimulationId());
     }
 
-    public void listenOnRoundCompleted(ConsumerRecord<String, String> message) {
-        RoundResultDto roundResultDto = new Gson().fromJson(message.value(), RoundResultDto.class);
-
-        if(log.isDebugEnabled()){
-            log.debug("Received Simulation {} > Season {} > Round {} : {}",roundResultDto.getSimulationId(),
-                    roundResultDto.getSeasonNumber(),
-                    roundResultDto.getRoundNumber(),
-                    new Gson().toJson(roundResultDto.getResultForCurrentRound()) );
+    /**
+     * Drop the leaderboards of the oldest completed simulations past maxCompletedLeaderboards, their scores are kept
+     */
+    private synchronized void leaderboardCompleted(int simulationId) {
+        completedLeaderboards.addLast(simulationId);
+        while (completedLeaderboards.size() > Math.max(0, maxCompletedLeaderboards)){
+            leaderboards.remove(completedLeaderboards.removeFirst());
         }
+    }
 
-        Map<String,AtomicInteger> playersScores;
-        //If this is simulation first round, prepare data structure to store the results
-        if(roundResultDto.getRoundNumber()==1 && roundResultDto.getSeasonNumber() == 1){
+    public void listenOnRoundCompleted(ConsumerRecord<String, byte[]> message) {
+        RoundResultDto roundResultDto = messageCodecs.decode(message, RoundResultDto.class);
+        if(!isNewRound(roundResultDto)){
+            return;
+        }
 
-            SimulationScoreDto simulationScoreDto = new SimulationScoreDto();
-            simulationScoreDto.setSimulationId(roundResultDto.getSimulationId());
-            simulationScoreDto.setStatus(StatusEnum.RUNNING);
-            playersScores = simulationScoreDto.getPlayersScore();
+        updateScores(Collections.singletonList(roundResultDto));
+        roundHistoryStore.append(roundResultDto);
+        roundStored(roundResultDto, message.headers());
+    }
 
-            for (String player : roundResultDto.getResultForCurrentRound().keySet()) {
-                //Init score "0" for each player
-                playersScores.put(player,new AtomicInteger(0));
+    /**
+     * Handle a batch of messages: the scores of every simulation are updated with all its rounds of the batch at once,
+     * the rounds are stored in the RoundHistoryStore together, then the simulations completed by the batch are closed
+     * @param messages
+     */
+    public void onMessages(List<ConsumerRecord<String, byte[]>> messages) {
+        List<RoundResultDto> roundResults = new ArrayList<>(messages.size());
+        List<Headers> roundHeaders = new ArrayList<>(messages.size());
+        Map<Integer, List<RoundResultDto>> roundResultsBySimulation = new LinkedHashMap<>();
+        List<ConsumerRecord<String, byte[]>> simulationsCompleted = new ArrayList<>();
+        for (ConsumerRecord<String, byte[]> message : messages) {
+            if(GameController.ROUND_COMPLETED_TOPIC.equals(message.topic())){
+                RoundResultDto roundResultDto = messageCodecs.decode(message, RoundResultDto.class);
+                if(!isNewRound(roundResultDto)){
+                    continue;
+                }
+                roundResults.add(roundResultDto);
+                roundHeaders.add(message.headers());
+                roundResultsBySimulation.computeIfAbsent(roundResultDto.getSimulationId(), id -> new ArrayList<>()).add(roundResultDto);
+            } else if(GameController.SIMULATION_COMPLETED_TOPIC.equals(message.topic())){
+                //A simulation is completed after its last round, which is in this batch or an earlier one
+                simulationsCompleted.add(message);
             }
-            allSimulationsScores.put(roundResultDto.getSimulationId(),simulationScoreDto);
+        }
 
-        } else { //Data structure is already created in first round, find it and store it in local var
-            playersScores = allSimulationsScores.get(roundResultDto.getSimulationId()).getPlayersScore();
+        for (List<RoundResultDto> simulationRoundResults : roundResultsBySimulation.values()) {
+            updateScores(simulationRoundResults);
         }
+        roundHistoryStore.appendAll(roundResults);
+        for (int i = 0; i < roundResults.size(); i++) {
+            roundStored(roundResults.get(i), roundHeaders.get(i));
+        }
+        for (ConsumerRecord<String, byte[]> message : simulationsCompleted) {
+            listenOnSimulationCompleted(message);
+        }
+    }
 
-        for (String player : roundResultDto.getResultForCurrentRound().keySet()) {
-            if(roundResultDto.getResultForCurrentRound().get(player) > 0){
-                int playerRoundScore = roundResultDto.getResultForCurrentRound().get(player);
-                playersScores.get(player).addAndGet(playerRoundScore);
-            }
+    /**
+     * Rounds of a simulation are received in the order they were played, by one thread at a time
+     * @return false when the round, or a later one, of the simulation is already stored
+     */
+    private boolean isNewRound(RoundResultDto roundResultDto) {
+        long round = roundOf(roundResultDto);
+        Long lastStored = lastStoredRounds.get(roundResultDto.getSimulationId());
+        SimulationScoreDto simulationScoreDto = allSimulationsScores.get(roundResultDto.getSimulationId());
+        boolean completed = simulationScoreDto != null && simulationScoreDto.getStatus() == StatusEnum.COMPLETE;
+        if(lastStored == null && completed){
+            //Forgotten when the simulation was completed
+            lastStored = lastRoundInHistory(roundResultDto.getSimulationId());
         }
+        if(lastStored != null && round <= lastStored){
+            log.debug("Simulation {} > Season {} > Round {} already stored, ignored", roundResultDto.getSimulationId(),
+                    roundResultDto.getSeasonNumber(), roundResultDto.getRoundNumber());
+            return false;
+        }
+        if(!completed){
+            lastStoredRounds.put(roundResultDto.getSimulationId(), round);
+        }
+        return true;
+    }
+
+    private Long lastRoundInHistory(int simulationId) {
+        int numberOfRounds = roundHistoryStore.countRounds(simulationId);
+        if(numberOfRounds == 0){
+            return null;
+        }
+        Iterator<RoundResultDto> rounds = roundHistoryStore.iterateRounds(simulationId, numberOfRounds - 1);
+        return rounds.hasNext() ? roundOf(rounds.next()) : null;
+    }
+
+    private static long roundOf(RoundResultDto roundResultDto) {
+        return ((long) roundResultDto.getSeasonNumber() << 32) | roundResultDto.getRoundNumber();
+    }
+
+    /**
+     * @param simulationRoundResults rounds of one simulation, in the order they were played
+     */
+    private void updateScores(List<RoundResultDto> simulationRoundResults) {
+        Map<String,AtomicInteger> playersScores = null;
+        Leaderboard leaderboard = null;
+        for (RoundResultDto roundResultDto : simulationRoundResults) {
+            if(log.isDebugEnabled()){
+                log.debug("Received Simulation {} > Season {} > Round {} : {}",roundResultDto.getSimulationId(),
+                        roundResultDto.getSeasonNumber(),
+                        roundResultDto.getRoundNumber(),
+                        roundResultDto.getResultForCurrentRound() );
+            }
+
+            //If this is simulation first round, prepare data structure to store the results
+            if(roundResultDto.getRoundNumber()==1 && roundResultDto.getSeasonNumber() == 1){
 
-        allSimulationsDetailedResults.put(roundResultDto.getSimulationId(),roundResultDto);
+                SimulationScoreDto simulationScoreDto = new SimulationScoreDto();
+                simulationScoreDto.setSimulationId(roundResultDto.getSimulationId());
+                simulationScoreDto.setStatus(StatusEnum.RUNNING);
+                playersScores = simulationScoreDto.getPlayersScore();
+                leaderboard = new Leaderboard();
+
+                for (String player : roundResultDto.getResultForCurrentRound().keySet()) {
+                    //Init score "0" for each player
+                    playersScores.put(player,new AtomicInteger(0));
+                    leaderboard.update(player,0);
+                }
+                allSimulationsScores.put(roundResultDto.getSimulationId(),simulationScoreDto);
+                leaderboards.put(roundResultDto.getSimulationId(),leaderboard);
+
+            } else if(playersScores == null){ //Data structure is already created in first round, find it and store it in local var
+                playersScores = allSimulationsScores.get(roundResultDto.getSimulationId()).getPlayersScore();
+                leaderboard = leaderboards.get(roundResultDto.getSimulationId());
+            }
+
+            for (String player : roundResultDto.getResultForCurrentRound().keySet()) {
+                if(roundResultDto.getResultForCurrentRound().get(player) > 0){
+                    int playerRoundScore = roundResultDto.getResultForCurrentRound().get(player);
+                    //A player missing from the first round (round closed at its deadline) joins the score when it plays
+                    AtomicInteger playerScore = playersScores.computeIfAbsent(player, p -> new AtomicInteger(0));
+                    leaderboard.update(player,playerScore.addAndGet(playerRoundScore));
+                }
+            }
+        }
 
         if(log.isDebugEnabled()){
-            log.debug("Current Score: {}", new Gson().toJson(playersScores));
+            log.debug("Current Score: {}", playersScores);
+        }
+    }
+
+    private void roundStored(RoundResultDto roundResultDto, Headers headers) {
+        latencyMetrics.record(LatencyMetrics.SCORE_KEEPER, roundResultDto.getRoundStartedAtMicros());
+        if(TraceHeaders.isTraced(headers)){
+            roundTraceStore.add(TraceHeaders.toTrace(headers, "ScoreKeeper", LatencyMetrics.nowMicros()));
         }
+        //Frees the slot of the round, deferred round starts may resume
+        roundFlowControl.roundStored();
     }
 }
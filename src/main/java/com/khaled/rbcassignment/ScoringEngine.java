@@ -0,0 +1,121 @@
+package com.khaled.rbcassignment;
+
+/**
+ * Calculates the match points of a round.
+ *
+ * A frequency table of the generators values is built once per round, then each player is scored
+ * with a single lookup, so a round costs O(generators + players) instead of O(generators x players).
+ *
+ * When the configured value range [minValue, maxValue) is small enough (maxFlatRange) the table is a
+ * flat array indexed by value (reused by the scoring thread), otherwise, or when a generator value
+ * falls outside the range, a sparsely loaded open addressing hash table of the generators values is used.
+ *
+ * @author Khaled Mansour
+ */
+public class ScoringEngine {
+
+    public static final int DEFAULT_MIN_VALUE      = 0;
+    public static final int DEFAULT_MAX_VALUE      = 100;
+    public static final int DEFAULT_MAX_FLAT_RANGE = 1 << 20;
+
+    private final int minValue;
+    private final int maxValue;
+    private final boolean flat;
+
+    private final ThreadLocal<int[]> flatTables;
+
+    public ScoringEngine() {
+        this(DEFAULT_MIN_VALUE, DEFAULT_MAX_VALUE, DEFAULT_MAX_FLAT_RANGE);
+    }
+
+    public ScoringEngine(int minValue, int maxValue, int maxFlatRange) {
+        if(maxValue <= minValue){
+            throw new IllegalArgumentException("maxValue must be greater than minValue");
+        }
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+
+        long range = (long) maxValue - minValue;
+        this.flat = range <= maxFlatRange;
+        this.flatTables = flat ? ThreadLocal.withInitial(() -> new int[(int) range]) : null;
+    }
+
+    /**
+     * Score every player, scores[i] is the number of generators values equal to playersValues[i]
+     * @param generatorsValues
+     * @param numberOfGenerators
+     * @param playersValues
+     * @param numberOfPlayers
+     * @param scores             array of at least numberOfPlayers elements
+     */
+    public void score(int[] generatorsValues, int numberOfGenerators, int[] playersValues, int numberOfPlayers, int[] scores) {
+        if(flat && inRange(generatorsValues, numberOfGenerators)){
+            scoreWithFlatTable(generatorsValues, numberOfGenerators, playersValues, numberOfPlayers, scores);
+        } else {
+            scoreWithHashTable(generatorsValues, numberOfGenerators, playersValues, numberOfPlayers, scores);
+        }
+    }
+
+    public int[] score(int[] generatorsValues, int[] playersValues) {
+        int[] scores = new int[playersValues.length];
+        score(generatorsValues, generatorsValues.length, playersValues, playersValues.length, scores);
+        return scores;
+    }
+
+    private boolean inRange(int[] values, int length) {
+        for (int i = 0; i < length; i++) {
+            if(values[i] < minValue || values[i] >= maxValue){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void scoreWithFlatTable(int[] generatorsValues, int numberOfGenerators, int[] playersValues, int numberOfPlayers, int[] scores) {
+        int[] frequencies = flatTables.get();
+        for (int i = 0; i < numberOfGenerators; i++) {
+            frequencies[generatorsValues[i] - minValue]++;
+        }
+
+        for (int i = 0; i < numberOfPlayers; i++) {
+            int value = playersValues[i];
+            scores[i] = value >= minValue && value < maxValue ? frequencies[value - minValue] : 0;
+        }
+
+        //Only the generators slots were touched, reset them for the next round
+        for (int i = 0; i < numberOfGenerators; i++) {
+            frequencies[generatorsValues[i] - minValue] = 0;
+        }
+    }
+
+    private void scoreWithHashTable(int[] generatorsValues, int numberOfGenerators, int[] playersValues, int numberOfPlayers, int[] scores) {
+        int capacity = Math.max(64, Integer.highestOneBit(Math.max(2, numberOfGenerators) * 8 - 1) << 1);
+        int mask = capacity - 1;
+        int[] keys = new int[capacity];
+        int[] frequencies = new int[capacity];   //0 marks an empty slot
+
+        for (int i = 0; i < numberOfGenerators; i++) {
+            int value = generatorsValues[i];
+            int slot = mix(value) & mask;
+            while (frequencies[slot] != 0 && keys[slot] != value){
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = value;
+            frequencies[slot]++;
+        }
+
+        for (int i = 0; i < numberOfPlayers; i++) {
+            int value = playersValues[i];
+            int slot = mix(value) & mask;
+            while (frequencies[slot] != 0 && keys[slot] != value){
+                slot = (slot + 1) & mask;
+            }
+            scores[i] = frequencies[slot];
+        }
+    }
+
+    private static int mix(int value) {
+        int hash = value * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,80 @@
+package com.khaled.rbcassignment;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generators derive their value from the seed of the round, this strategy learns which values were played
+ * for each seed and plays the value played by most generators the last time the seed came up.
+ *
+ * The k-th value received from a generator belongs to the k-th round started, the seeds of the last
+ * PENDING_ROUNDS rounds are kept to match late values with their round. At most maxSeeds seeds are learnt,
+ * unknown seeds fall back to the frequency model.
+ *
+ * @author Khaled Mansour
+ */
+public class SeedAwarePredictionStrategy implements PredictionStrategy {
+
+    private static final int PENDING_ROUNDS = 16;
+
+    private final int maxSeeds;
+    private final FrequencyPredictionStrategy fallback;
+
+    private final int[] roundsSeeds = new int[PENDING_ROUNDS];
+    private int roundsStarted;
+    private final Map<String, Integer> valuesReceivedByGenerator = new HashMap<>();
+    private final Map<Integer, Map<String, Integer>> valuesBySeed = new HashMap<>();
+
+    public SeedAwarePredictionStrategy(int minValue, int maxValue, int windowSize, int maxSeeds) {
+        this.maxSeeds = maxSeeds;
+        this.fallback = new FrequencyPredictionStrategy(minValue, maxValue, windowSize);
+    }
+
+    @Override
+    public synchronized int predict(RoundStartDto roundStartDto, Random random) {
+        roundsSeeds[roundsStarted++ % PENDING_ROUNDS] = roundStartDto.getSeed();
+
+        Map<String, Integer> values = valuesBySeed.get(roundStartDto.getSeed());
+        if(values == null){
+            return fallback.predict(roundStartDto, random);
+        }
+
+        //Few generators per seed, count the values in place
+        int best = 0;
+        int bestCount = 0;
+        for (int value : values.values()) {
+            int count = 0;
+            for (int other : values.values()) {
+                if(other == value){
+                    count++;
+                }
+            }
+            if(count > bestCount){
+                best = value;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public synchronized void record(RoundInputDto roundInputDto) {
+        fallback.record(roundInputDto);
+
+        int round = valuesReceivedByGenerator.merge(roundInputDto.getSourceName(), 1, Integer::sum) - 1;
+        if(round >= roundsStarted || roundsStarted - round > PENDING_ROUNDS){
+            return;
+        }
+        int seed = roundsSeeds[round % PENDING_ROUNDS];
+        Map<String, Integer> values = valuesBySeed.get(seed);
+        if(values == null){
+            if(valuesBySeed.size() >= maxSeeds){
+                return;
+            }
+            values = new HashMap<>();
+            valuesBySeed.put(seed, values);
+        }
+        values.put(roundInputDto.getSourceName(), roundInputDto.getValue());
+    }
+}
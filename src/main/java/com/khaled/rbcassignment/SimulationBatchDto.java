@@ -0,0 +1,14 @@
+package com.khaled.rbcassignment;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simulations started with one POST /simulations/batch call, sent as one message
+ */
+@Data
+public class SimulationBatchDto {
+    private List<SimulationDto> simulations = new ArrayList<>();
+}
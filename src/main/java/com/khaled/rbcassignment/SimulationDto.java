@@ -11,6 +11,9 @@ public class SimulationDto {
     private int intervalBetweenSeasons;
     private int numberOfRounds;
     private int intervalBetweenRounds;
+    private String predictionStrategy;
+    //Seed of the simulation rounds seeds, picked by the GameController when null (0 is a valid seed)
+    private Long seed;
 
     private AtomicInteger currentRoundNumber = new AtomicInteger(1);
     private AtomicInteger currentSeasonNumber = new AtomicInteger(1);
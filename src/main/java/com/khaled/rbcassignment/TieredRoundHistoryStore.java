@@ -0,0 +1,280 @@
+package com.khaled.rbcassignment;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * RoundHistoryStore with a memory tier and a disk tier.
+ *
+ * Rounds are kept in memory in the compact binary encoding and the memory tier is bounded by a budget.
+ * Once the budget is exceeded, the least recently accessed completed simulations are spilled to
+ * compressed files and dropped from memory. Simulations still running are never spilled.
+ * Reading a spilled simulation loads it back into the memory tier.
+ *
+ * Spill files don't outlive the application (the memory tier doesn't either and simulation ids restart from 1),
+ * leftovers are deleted on startup.
+ *
+ * @author Khaled Mansour
+ */
+public class TieredRoundHistoryStore implements RoundHistoryStore {
+    private static final Logger log = LoggerFactory.getLogger(TieredRoundHistoryStore.class);
+
+    private static final String SPILL_FILE_PREFIX = "simulation-";
+    private static final String SPILL_FILE_SUFFIX = ".gz";
+
+    //Approximate heap cost of one stored round besides its payload (array header and list slot)
+    private static final int ROUND_OVERHEAD_BYTES = 24;
+
+    private final MessageCodec codec = MessageCodecs.BINARY;
+
+    private final long memoryBudgetBytes;
+    private final File spillDirectory;
+
+    //Access ordered, iteration starts with the least recently used simulation
+    private final LinkedHashMap<Integer, SimulationHistory> memoryTier = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Integer> diskTier = new HashSet<>();
+
+    @Getter private long memoryTierBytes;
+    @Getter private long numberOfSpills;
+    @Getter private long numberOfReloads;
+
+    public TieredRoundHistoryStore(long memoryBudgetBytes, File spillDirectory) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.spillDirectory    = spillDirectory;
+
+        if(!spillDirectory.isDirectory() && !spillDirectory.mkdirs()){
+            throw new IllegalStateException("Can't create round history spill directory " + spillDirectory);
+        }
+        File[] leftovers = spillDirectory.listFiles((dir, name) -> name.startsWith(SPILL_FILE_PREFIX) && name.endsWith(SPILL_FILE_SUFFIX));
+        if(leftovers != null){
+            for (File leftover : leftovers) {
+                if(!leftover.delete()){
+                    log.warn("Can't delete spilled round history {}", leftover);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void append(RoundResultDto roundResultDto) {
+        byte[] round = codec.encode(roundResultDto);
+        synchronized (this) {
+            add(roundResultDto.getSimulationId(), round);
+        }
+    }
+
+    /**
+     * Rounds are encoded before taking the lock, which is taken once for all of them
+     */
+    @Override
+    public void appendAll(List<RoundResultDto> roundResults) {
+        byte[][] rounds = new byte[roundResults.size()][];
+        for (int i = 0; i < rounds.length; i++) {
+            rounds[i] = codec.encode(roundResults.get(i));
+        }
+        synchronized (this) {
+            for (int i = 0; i < rounds.length; i++) {
+                add(roundResults.get(i).getSimulationId(), rounds[i]);
+            }
+        }
+    }
+
+    //Called with the lock held
+    private void add(int simulationId, byte[] round) {
+        SimulationHistory simulationHistory = memoryTier.get(simulationId);
+        if(simulationHistory == null){
+            simulationHistory = diskTier.contains(simulationId) ? reload(simulationId) : null;
+            if(simulationHistory == null){
+                diskTier.remove(simulationId);
+                simulationHistory = new SimulationHistory();
+            }
+            memoryTier.put(simulationId, simulationHistory);
+        }
+        if(simulationHistory.onDisk){
+            //The spilled copy is stale now
+            spillFile(simulationId).delete();
+            simulationHistory.onDisk = false;
+        }
+        simulationHistory.rounds.add(round);
+        simulationHistory.bytes += round.length + ROUND_OVERHEAD_BYTES;
+        memoryTierBytes         += round.length + ROUND_OVERHEAD_BYTES;
+
+        evictIfNeeded(simulationId);
+    }
+
+    @Override
+    public List<RoundResultDto> getRounds(int simulationId) {
+        byte[][] rounds;
+        synchronized (this) {
+            SimulationHistory simulationHistory = memoryTier.get(simulationId);
+            if(simulationHistory == null && diskTier.contains(simulationId)){
+                simulationHistory = load(simulationId);
+            }
+            if(simulationHistory == null){
+                return Collections.emptyList();
+            }
+            rounds = simulationHistory.rounds.toArray(new byte[0][]);
+        }
+
+        List<RoundResultDto> roundResults = new ArrayList<>(rounds.length);
+        for (byte[] round : rounds) {
+            roundResults.add(codec.decode(round, RoundResultDto.class));
+        }
+        return roundResults;
+    }
+
+    @Override
+    public synchronized int countRounds(int simulationId) {
+        SimulationHistory simulationHistory = memoryTier.get(simulationId);
+        if(simulationHistory == null && diskTier.contains(simulationId)){
+            simulationHistory = load(simulationId);
+        }
+        return simulationHistory == null ? 0 : simulationHistory.rounds.size();
+    }
+
+    @Override
+    public Iterator<RoundResultDto> iterateRounds(int simulationId, int fromIndex) {
+        SimulationHistory simulationHistory;
+        int numberOfRounds;
+        synchronized (this) {
+            simulationHistory = memoryTier.get(simulationId);
+            if(simulationHistory == null && diskTier.contains(simulationId)){
+                simulationHistory = load(simulationId);
+            }
+            if(simulationHistory == null){
+                return Collections.emptyIterator();
+            }
+            numberOfRounds = simulationHistory.rounds.size();
+        }
+
+        //The iterator keeps a reference to the rounds, they stay readable even if the simulation is spilled meanwhile
+        SimulationHistory rounds = simulationHistory;
+        return new Iterator<RoundResultDto>() {
+            private int index = Math.max(0, fromIndex);
+
+            @Override
+            public boolean hasNext() {
+                return index < numberOfRounds;
+            }
+
+            @Override
+            public RoundResultDto next() {
+                if(!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                byte[] round;
+                synchronized (TieredRoundHistoryStore.this) {
+                    round = rounds.rounds.get(index++);
+                }
+                return codec.decode(round, RoundResultDto.class);
+            }
+        };
+    }
+
+    @Override
+    public synchronized Collection<Integer> getSimulationIds() {
+        List<Integer> simulationIds = new ArrayList<>(memoryTier.keySet());
+        simulationIds.addAll(diskTier);
+        return simulationIds;
+    }
+
+    @Override
+    public synchronized void simulationCompleted(int simulationId) {
+        SimulationHistory simulationHistory = memoryTier.get(simulationId);
+        if(simulationHistory != null){
+            simulationHistory.completed = true;
+            evictIfNeeded(-1);
+        }
+    }
+
+    /**
+     * Spill the least recently used completed simulations until the memory tier fits in the budget
+     * @param pinnedSimulationId simulation being accessed, it stays in memory
+     */
+    private void evictIfNeeded(int pinnedSimulationId) {
+        Iterator<Map.Entry<Integer, SimulationHistory>> iterator = memoryTier.entrySet().iterator();
+        while (memoryTierBytes > memoryBudgetBytes && iterator.hasNext()){
+            Map.Entry<Integer, SimulationHistory> entry = iterator.next();
+            SimulationHistory simulationHistory = entry.getValue();
+            if(!simulationHistory.completed || entry.getKey() == pinnedSimulationId){
+                continue;
+            }
+
+            if(!simulationHistory.onDisk){
+                try {
+                    spill(entry.getKey(), simulationHistory);
+                } catch (IOException e) {
+                    log.error("Failed to spill round history of simulation {}", entry.getKey(), e);
+                    continue;
+                }
+            }
+            iterator.remove();
+            diskTier.add(entry.getKey());
+            memoryTierBytes -= simulationHistory.bytes;
+        }
+    }
+
+    /**
+     * Bring a spilled simulation back to the memory tier
+     */
+    private SimulationHistory load(int simulationId) {
+        SimulationHistory simulationHistory = reload(simulationId);
+        if(simulationHistory != null){
+            memoryTier.put(simulationId, simulationHistory);
+            evictIfNeeded(simulationId);
+        }
+        return simulationHistory;
+    }
+
+    private void spill(int simulationId, SimulationHistory simulationHistory) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile(simulationId)))))) {
+            out.writeInt(simulationHistory.rounds.size());
+            for (byte[] round : simulationHistory.rounds) {
+                out.writeInt(round.length);
+                out.write(round);
+            }
+        }
+        numberOfSpills++;
+        log.debug("Spilled {} rounds of simulation {} to disk", simulationHistory.rounds.size(), simulationId);
+    }
+
+    private SimulationHistory reload(int simulationId) {
+        SimulationHistory simulationHistory = new SimulationHistory();
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(spillFile(simulationId)))))) {
+            int numberOfRounds = in.readInt();
+            for (int i = 0; i < numberOfRounds; i++) {
+                byte[] round = new byte[in.readInt()];
+                in.readFully(round);
+                simulationHistory.rounds.add(round);
+                simulationHistory.bytes += round.length + ROUND_OVERHEAD_BYTES;
+            }
+        } catch (IOException e) {
+            log.error("Failed to reload round history of simulation {}", simulationId, e);
+            return null;
+        }
+        simulationHistory.completed = true;
+        simulationHistory.onDisk    = true;
+        diskTier.remove(simulationId);
+        memoryTierBytes += simulationHistory.bytes;
+        numberOfReloads++;
+        log.debug("Reloaded {} rounds of simulation {} from disk", simulationHistory.rounds.size(), simulationId);
+        return simulationHistory;
+    }
+
+    private File spillFile(int simulationId) {
+        return new File(spillDirectory, SPILL_FILE_PREFIX + simulationId + SPILL_FILE_SUFFIX);
+    }
+
+    private static class SimulationHistory {
+        private final List<byte[]> rounds = new ArrayList<>();
+        private long bytes;
+        private boolean completed;
+        private boolean onDisk;
+    }
+}
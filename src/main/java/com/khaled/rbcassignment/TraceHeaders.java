@@ -0,0 +1,180 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+
+/**
+ * Record headers tracing a sampled round across the participants, untraced rounds carry no header.
+ *
+ * Every record published for a traced round carries
+ *  trace.round  : simulationId/seasonNumber/roundNumber
+ *  trace.origin : when the round start was published (epoch microseconds)
+ *  trace.sentBy : participant that published the record
+ *  trace.sentAt : when it was published
+ *
+ * The ResultAnalyzer adds to the round result a trace.start.{participant} header for the round start and a
+ * trace.hop.{participant} header for every input of the round: when it was sent and when the ResultAnalyzer
+ * received it. Inputs sent in a batch
+ * (GeneratorPool, PlayerPool) share the time the batch was sent. The ScoreKeeper turns the headers of the
+ * round result into a RoundTraceDto.
+ *
+ * @author Khaled Mansour
+ */
+public final class TraceHeaders {
+
+    public static final String ROUND      = "trace.round";
+    public static final String ORIGIN     = "trace.origin";
+    public static final String SENT_BY    = "trace.sentBy";
+    public static final String SENT_AT    = "trace.sentAt";
+    public static final String START_PREFIX = "trace.start.";
+    public static final String HOP_PREFIX   = "trace.hop.";
+
+    private TraceHeaders() {
+    }
+
+    /**
+     * Headers of a traced round start
+     * @param roundStartDto
+     * @param participant publisher of the round start
+     */
+    public static Headers start(RoundStartDto roundStartDto, String participant) {
+        Headers headers = new RecordHeaders();
+        headers.add(ROUND, toBytes(roundStartDto.getSimulationId() + "/" + roundStartDto.getSeasonNumber() + "/" + roundStartDto.getRoundNumber()));
+        headers.add(ORIGIN, toBytes(roundStartDto.getStartedAtMicros()));
+        headers.add(SENT_BY, toBytes(participant));
+        headers.add(SENT_AT, toBytes(roundStartDto.getStartedAtMicros()));
+        return headers;
+    }
+
+    /**
+     * Headers of a record published in reaction to the received one
+     * @param received headers of the received record
+     * @param participant publisher of the new record
+     * @return null when the round is not traced
+     */
+    public static Headers forward(Headers received, String participant) {
+        if(!isTraced(received)){
+            return null;
+        }
+        Headers headers = new RecordHeaders();
+        headers.add(received.lastHeader(ROUND));
+        headers.add(received.lastHeader(ORIGIN));
+        headers.add(SENT_BY, toBytes(participant));
+        headers.add(SENT_AT, toBytes(LatencyMetrics.nowMicros()));
+        return headers;
+    }
+
+    public static boolean isTraced(Headers headers) {
+        return headers != null && headers.lastHeader(ROUND) != null;
+    }
+
+    /**
+     * Headers collected by the ResultAnalyzer for a traced round, starting with the hop of the round start
+     * @param roundStart headers of the received round start
+     * @param receivedAtMicros
+     */
+    public static Headers collect(Headers roundStart, long receivedAtMicros) {
+        Headers collected = new RecordHeaders();
+        collected.add(roundStart.lastHeader(ROUND));
+        collected.add(roundStart.lastHeader(ORIGIN));
+        collected.add(START_PREFIX + getString(roundStart, SENT_BY), hop(roundStart, receivedAtMicros));
+        return collected;
+    }
+
+    /**
+     * Add the hop of a received input to the headers collected for the round
+     * @param collected
+     * @param participant
+     * @param received headers of the received record
+     * @param receivedAtMicros
+     */
+    public static void addHop(Headers collected, String participant, Headers received, long receivedAtMicros) {
+        collected.add(HOP_PREFIX + participant, hop(received, receivedAtMicros));
+    }
+
+    /**
+     * Headers collected for the round, as published by the participant
+     * @param collected
+     * @param participant
+     */
+    public static Headers send(Headers collected, String participant) {
+        collected.add(SENT_BY, toBytes(participant));
+        collected.add(SENT_AT, toBytes(LatencyMetrics.nowMicros()));
+        return collected;
+    }
+
+    /**
+     * @param headers headers of a traced round result
+     * @param receivedBy
+     * @param receivedAtMicros
+     * @return the trace of the round
+     */
+    public static RoundTraceDto toTrace(Headers headers, String receivedBy, long receivedAtMicros) {
+        RoundTraceDto roundTraceDto = new RoundTraceDto();
+        String[] roundId = getString(headers, ROUND).split("/");
+        roundTraceDto.setSimulationId(Integer.parseInt(roundId[0]));
+        roundTraceDto.setSeasonNumber(Integer.parseInt(roundId[1]));
+        roundTraceDto.setRoundNumber(Integer.parseInt(roundId[2]));
+
+        long origin = getLong(headers, ORIGIN);
+        roundTraceDto.setOriginMicros(origin);
+        roundTraceDto.setDurationMillis(toMillis(receivedAtMicros - origin));
+
+        String analyzer = getString(headers, SENT_BY);
+        RoundTraceHopDto last = null;
+        for (Header header : headers) {
+            boolean input = header.key().startsWith(HOP_PREFIX);
+            if(input || header.key().startsWith(START_PREFIX)){
+                String participant = header.key().substring(input ? HOP_PREFIX.length() : START_PREFIX.length());
+                ByteBuffer times = ByteBuffer.wrap(header.value());
+                RoundTraceHopDto hop = new RoundTraceHopDto(participant, analyzer, toMillis(times.getLong() - origin), toMillis(times.getLong() - origin));
+                roundTraceDto.getHops().add(hop);
+                //Inputs are collected in arrival order, the last one wins a tie
+                if(input && (last == null || hop.getReceivedAfterMillis() >= last.getReceivedAfterMillis())){
+                    last = hop;
+                }
+            }
+        }
+        roundTraceDto.getHops().sort(Comparator.comparingDouble(RoundTraceHopDto::getReceivedAfterMillis));
+
+        RoundTraceHopDto result = new RoundTraceHopDto(analyzer, receivedBy, toMillis(getLong(headers, SENT_AT) - origin), toMillis(receivedAtMicros - origin));
+        roundTraceDto.getHops().add(result);
+        if(last != null){
+            roundTraceDto.setLastParticipant(last.getFrom());
+            roundTraceDto.getCriticalPath().add(last);
+        }
+        roundTraceDto.getCriticalPath().add(result);
+        return roundTraceDto;
+    }
+
+    private static byte[] hop(Headers received, long receivedAtMicros) {
+        return ByteBuffer.allocate(16).putLong(getLong(received, SENT_AT)).putLong(receivedAtMicros).array();
+    }
+
+    private static long getLong(Headers headers, String key) {
+        Header header = headers.lastHeader(key);
+        return header == null ? 0 : ByteBuffer.wrap(header.value()).getLong();
+    }
+
+    private static String getString(Headers headers, String key) {
+        Header header = headers.lastHeader(key);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] toBytes(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    private static byte[] toBytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,215 @@
+package com.khaled.rbcassignment;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs whole simulations in memory, without any message: every round of every season is played in a loop
+ * by the same thread, for research runs that only need the scores.
+ *
+ * A simulation plays the same rounds as on the message bus: the rounds seeds are drawn from
+ * SplittableRandom(SimulationDto.seed) like the GameController does, generators values come from
+ * Generator.generateValue, players values from Player.guess and the rounds are scored by the ScoringEngine.
+ * The PredictionEngine value depends on the values it has seen, here it always sees the values of every
+ * previous round and draws from Random(SimulationDto.seed).
+ *
+ * Several simulations are spread over the cores of a ForkJoinPool, each simulation is played by one thread.
+ *
+ * @author Khaled Mansour
+ */
+public class TurboEngine {
+
+    public static final String PREDICTION_ENGINE = "PredictionEngine";
+
+    private final Generator[] generators;
+    private final String[] playersNames;
+    private final int[] playersHashes;
+    private final PredictionStrategies predictionStrategies;
+    private final ScoringEngine scoringEngine;
+    private final ForkJoinPool forkJoinPool;
+
+    public TurboEngine(List<Generator> generators, List<Player> players, PredictionStrategies predictionStrategies, ScoringEngine scoringEngine) {
+        this(generators, players, predictionStrategies, scoringEngine, ForkJoinPool.commonPool());
+    }
+
+    public TurboEngine(List<Generator> generators, List<Player> players, PredictionStrategies predictionStrategies,
+                       ScoringEngine scoringEngine, ForkJoinPool forkJoinPool) {
+        this.generators           = generators.toArray(new Generator[0]);
+        this.predictionStrategies = predictionStrategies;
+        this.scoringEngine        = scoringEngine;
+        this.forkJoinPool         = forkJoinPool;
+
+        this.playersNames  = new String[players.size()];
+        this.playersHashes = new int[players.size()];
+        for (int i = 0; i < playersNames.length; i++) {
+            playersNames[i]  = players.get(i).getPlayerName();
+            playersHashes[i] = playersNames[i].hashCode();
+        }
+    }
+
+    public SimulationScoreDto run(SimulationDto simulationDto) {
+        return run(simulationDto, null);
+    }
+
+    /**
+     * Play every round of the simulation on the calling thread
+     * @param simulationDto
+     * @param roundListener receives the result of every round in play order, null when only the score is needed
+     * @return the score of the completed simulation
+     */
+    public SimulationScoreDto run(SimulationDto simulationDto, Consumer<RoundResultDto> roundListener) {
+        if(!predictionStrategies.isKnown(simulationDto.getPredictionStrategy())){
+            throw new IllegalArgumentException("Unknown prediction strategy " + simulationDto.getPredictionStrategy());
+        }
+        if(simulationDto.getSeed() == null){
+            throw new IllegalArgumentException("Simulation seed is not set");
+        }
+        PredictionStrategy predictionStrategy = predictionStrategies.create(simulationDto.getPredictionStrategy());
+        SplittableRandom seeds = new SplittableRandom(simulationDto.getSeed());
+        Random random = new Random(simulationDto.getSeed());
+
+        int numberOfPlayers = playersNames.length;
+        int[] generatorsValues = new int[generators.length];
+        //Players then the PredictionEngine
+        int[] playersValues = new int[numberOfPlayers + 1];
+        int[] scores = new int[numberOfPlayers + 1];
+        int[] totals = new int[numberOfPlayers + 1];
+
+        RoundInputDto[] revealed = new RoundInputDto[generators.length];
+        for (int g = 0; g < generators.length; g++) {
+            revealed[g] = input(simulationDto.getSimulationId(), SourceEnum.GENERATOR, generators[g].getName(), 0);
+        }
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSimulationId(simulationDto.getSimulationId());
+        roundStartDto.setNumberOfPartictipants(numberOfPlayers + generators.length + 1);
+        roundStartDto.setPredictionStrategy(simulationDto.getPredictionStrategy());
+
+        for (int season = 1; season <= simulationDto.getNumberOfSeasons(); season++) {
+            for (int round = 1; round <= simulationDto.getNumberOfRounds(); round++) {
+                int seed = seeds.nextInt(100);
+                roundStartDto.setSeed(seed);
+                roundStartDto.setSeasonNumber(season);
+                roundStartDto.setRoundNumber(round);
+
+                for (int g = 0; g < generators.length; g++) {
+                    generatorsValues[g] = generators[g].generateValue(seed);
+                }
+                for (int p = 0; p < numberOfPlayers; p++) {
+                    playersValues[p] = Player.guess(playersHashes[p], simulationDto.getSimulationId(), season, round, seed);
+                }
+                playersValues[numberOfPlayers] = predictionStrategy.predict(roundStartDto, random);
+
+                scoringEngine.score(generatorsValues, generators.length, playersValues, numberOfPlayers + 1, scores);
+                for (int p = 0; p <= numberOfPlayers; p++) {
+                    totals[p] += scores[p];
+                }
+
+                //Generators values are revealed to the PredictionEngine once the round is completed
+                for (int g = 0; g < generators.length; g++) {
+                    revealed[g].setValue(generatorsValues[g]);
+                    predictionStrategy.record(revealed[g]);
+                }
+
+                if(roundListener != null){
+                    roundListener.accept(toRoundResult(simulationDto.getSimulationId(), season, round, generatorsValues, playersValues, scores));
+                }
+            }
+        }
+
+        SimulationScoreDto simulationScoreDto = new SimulationScoreDto();
+        simulationScoreDto.setSimulationId(simulationDto.getSimulationId());
+        simulationScoreDto.setStatus(StatusEnum.COMPLETE);
+        for (int p = 0; p < numberOfPlayers; p++) {
+            simulationScoreDto.getPlayersScore().put(playersNames[p], new AtomicInteger(totals[p]));
+        }
+        simulationScoreDto.getPlayersScore().put(PREDICTION_ENGINE, new AtomicInteger(totals[numberOfPlayers]));
+        return simulationScoreDto;
+    }
+
+    public List<SimulationScoreDto> runAll(List<SimulationDto> simulations) {
+        return runAll(simulations, null);
+    }
+
+    /**
+     * Play the simulations in parallel on the ForkJoinPool
+     * @param simulations
+     * @param roundListener receives the rounds of all simulations from several threads, must be thread safe
+     * @return the scores in the order of the simulations
+     */
+    public List<SimulationScoreDto> runAll(List<SimulationDto> simulations, Consumer<RoundResultDto> roundListener) {
+        SimulationScoreDto[] simulationsScores = new SimulationScoreDto[simulations.size()];
+        forkJoinPool.invoke(new SimulationsTask(simulations, 0, simulations.size(), roundListener, simulationsScores));
+        return Arrays.asList(simulationsScores);
+    }
+
+    private RoundResultDto toRoundResult(int simulationId, int season, int round, int[] generatorsValues, int[] playersValues, int[] scores) {
+        RoundResultDto roundResultDto = new RoundResultDto();
+        roundResultDto.setSimulationId(simulationId);
+        roundResultDto.setSeasonNumber(season);
+        roundResultDto.setRoundNumber(round);
+        roundResultDto.setNumberOfParticipatns(playersValues.length + generators.length);
+
+        for (int g = 0; g < generators.length; g++) {
+            roundResultDto.getGeneratorsInputsForCurrentRound().add(input(simulationId, SourceEnum.GENERATOR, generators[g].getName(), generatorsValues[g]));
+        }
+        Map<String, Integer> results = new HashMap<>(playersValues.length * 2);
+        for (int p = 0; p < playersNames.length; p++) {
+            roundResultDto.getPlayersInputsForCurrentRound().add(input(simulationId, SourceEnum.PLAYER, playersNames[p], playersValues[p]));
+            results.put(playersNames[p], scores[p]);
+        }
+        roundResultDto.getPlayersInputsForCurrentRound().add(input(simulationId, SourceEnum.PREDICTION_ENGINE, PREDICTION_ENGINE, playersValues[playersNames.length]));
+        results.put(PREDICTION_ENGINE, scores[playersNames.length]);
+        roundResultDto.setResultForCurrentRound(results);
+        return roundResultDto;
+    }
+
+    private static RoundInputDto input(int simulationId, SourceEnum source, String sourceName, int value) {
+        RoundInputDto roundInputDto = new RoundInputDto();
+        roundInputDto.setSimulationId(simulationId);
+        roundInputDto.setSource(source);
+        roundInputDto.setSourceName(sourceName);
+        roundInputDto.setValue(value);
+        return roundInputDto;
+    }
+
+    /**
+     * Splits the simulations in halves until one simulation is left
+     */
+    private class SimulationsTask extends RecursiveTask<Void> {
+        private final List<SimulationDto> simulations;
+        private final int from;
+        private final int to;
+        private final Consumer<RoundResultDto> roundListener;
+        private final SimulationScoreDto[] simulationsScores;
+
+        SimulationsTask(List<SimulationDto> simulations, int from, int to, Consumer<RoundResultDto> roundListener, SimulationScoreDto[] simulationsScores) {
+            this.simulations       = simulations;
+            this.from              = from;
+            this.to                = to;
+            this.roundListener     = roundListener;
+            this.simulationsScores = simulationsScores;
+        }
+
+        @Override
+        protected Void compute() {
+            if(to - from == 1){
+                simulationsScores[from] = run(simulations.get(from), roundListener);
+            } else if(to - from > 1){
+                int middle = (from + to) >>> 1;
+                SimulationsTask right = new SimulationsTask(simulations, middle, to, roundListener, simulationsScores);
+                right.fork();
+                new SimulationsTask(simulations, from, middle, roundListener, simulationsScores).compute();
+                right.join();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.khaled.rbcassignment;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BinaryMessageCodecTest {
+
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    @Test
+    public void roundStartIsDecodedAsEncoded(){
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSimulationId(42);
+        roundStartDto.setSeed(99);
+        roundStartDto.setNumberOfPartictipants(10);
+        roundStartDto.setRoundNumber(3);
+        roundStartDto.setSeasonNumber(2);
+        roundStartDto.setPredictionStrategy(PredictionStrategies.MARKOV);
+        roundStartDto.setStartedAtMicros(LatencyMetrics.nowMicros());
+
+        assertThat(codec.decode(codec.encode(roundStartDto), RoundStartDto.class)).isEqualTo(roundStartDto);
+    }
+
+    @Test
+    public void roundResultIsDecodedAsEncoded(){
+        RoundResultDto roundResultDto = roundResult(1000);
+
+        RoundResultDto decoded = codec.decode(codec.encode(roundResultDto), RoundResultDto.class);
+
+        assertThat(decoded.getSimulationId()).isEqualTo(roundResultDto.getSimulationId());
+        assertThat(decoded.getRoundNumber()).isEqualTo(roundResultDto.getRoundNumber());
+        assertThat(decoded.getSeasonNumber()).isEqualTo(roundResultDto.getSeasonNumber());
+        assertThat(decoded.getNumberOfParticipatns()).isEqualTo(roundResultDto.getNumberOfParticipatns());
+        assertThat(decoded.getRoundStartedAtMicros()).isEqualTo(roundResultDto.getRoundStartedAtMicros());
+        assertThat(decoded.getGeneratorsInputsForCurrentRound()).isEqualTo(roundResultDto.getGeneratorsInputsForCurrentRound());
+        assertThat(decoded.getPlayersInputsForCurrentRound()).isEqualTo(roundResultDto.getPlayersInputsForCurrentRound());
+        assertThat(decoded.getResultForCurrentRound()).isEqualTo(roundResultDto.getResultForCurrentRound());
+    }
+
+    @Test
+    public void roundInputBatchIsDecodedAsEncoded(){
+        RoundInputBatchDto roundInputBatchDto = new RoundInputBatchDto();
+        roundInputBatchDto.setSimulationId(12);
+        for (int i = 1; i <= 6; i++) {
+            roundInputBatchDto.getInputs().add(input(12, SourceEnum.GENERATOR, "Generator" + i, i * 15));
+        }
+
+        assertThat(codec.decode(codec.encode(roundInputBatchDto), RoundInputBatchDto.class)).isEqualTo(roundInputBatchDto);
+    }
+
+    @Test
+    public void binaryPayloadIsSeveralTimesSmallerThanJson(){
+        RoundResultDto roundResultDto = roundResult(3);
+
+        int binarySize = codec.encode(roundResultDto).length;
+        int jsonSize   = MessageCodecs.JSON.encode(roundResultDto).length;
+
+        assertThat(binarySize * 5).isLessThan(jsonSize);
+    }
+
+    @Test
+    public void codecsDetectThePayloadFormat(){
+        MessageCodecs messageCodecs = new MessageCodecs();
+        RoundInputDto roundInputDto = input(7, SourceEnum.PLAYER, "Player1", 50);
+        roundInputDto.setSeasonNumber(2);
+        roundInputDto.setRoundNumber(9);
+
+        assertThat(messageCodecs.decode(codec.encode(roundInputDto), RoundInputDto.class)).isEqualTo(roundInputDto);
+        assertThat(messageCodecs.decode(MessageCodecs.JSON.encode(roundInputDto), RoundInputDto.class)).isEqualTo(roundInputDto);
+        assertThat(messageCodecs.decode("5".getBytes(StandardCharsets.UTF_8), Integer.class)).isEqualTo(5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binaryCodecIsRefusedForTopicsItDoesNotSupport(){
+        new MessageCodecs(Arrays.asList(GameController.ROUND_START_TOPIC, GameController.SIMULATION_START_TOPIC));
+    }
+
+    @Test
+    public void binaryCodecIsUsedForTheRoundTopics(){
+        MessageCodecs messageCodecs = new MessageCodecs(MessageCodecs.BINARY_TOPICS);
+
+        for (String topic : MessageCodecs.BINARY_TOPICS) {
+            assertThat(messageCodecs.getCodec(topic)).isSameAs(MessageCodecs.BINARY);
+        }
+        assertThat(messageCodecs.getCodec(GameController.SIMULATION_START_TOPIC)).isSameAs(MessageCodecs.JSON);
+    }
+
+    private RoundResultDto roundResult(int numberOfPlayers) {
+        RoundResultDto roundResultDto = new RoundResultDto();
+        roundResultDto.setSimulationId(12);
+        roundResultDto.setRoundNumber(300);
+        roundResultDto.setSeasonNumber(4);
+        roundResultDto.setNumberOfParticipatns(numberOfPlayers + 7);
+        roundResultDto.setRoundStartedAtMicros(LatencyMetrics.nowMicros());
+        for (int i = 1; i <= 6; i++) {
+            roundResultDto.getGeneratorsInputsForCurrentRound().add(input(12, SourceEnum.GENERATOR, "Generator" + i, i * 15));
+        }
+        for (int i = 1; i <= numberOfPlayers; i++) {
+            roundResultDto.getPlayersInputsForCurrentRound().add(input(12, SourceEnum.PLAYER, "Player" + i, i % 100));
+            roundResultDto.getResultForCurrentRound().put("Player" + i, i % 3);
+        }
+        roundResultDto.getPlayersInputsForCurrentRound().add(input(12, SourceEnum.PREDICTION_ENGINE, "PredictionEngine", -1));
+        roundResultDto.getResultForCurrentRound().put("PredictionEngine", 0);
+        return roundResultDto;
+    }
+
+    private RoundInputDto input(int simulationId, SourceEnum source, String sourceName, int value) {
+        RoundInputDto roundInputDto = new RoundInputDto();
+        roundInputDto.setSimulationId(simulationId);
+        roundInputDto.setSource(source);
+        roundInputDto.setSourceName(sourceName);
+        roundInputDto.setValue(value);
+        return roundInputDto;
+    }
+}
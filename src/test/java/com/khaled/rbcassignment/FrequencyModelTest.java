@@ -0,0 +1,58 @@
+package com.khaled.rbcassignment;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class FrequencyModelTest {
+
+    @Test
+    public void valuesArePickedAsOftenAsTheyWereSeen() throws Exception {
+        FrequencyModel frequencyModel = new FrequencyModel(0, 100, 0);
+        assertThat(frequencyModel.isEmpty()).isTrue();
+
+        int[] seen = {3, 3, 3, 3, 3, 3, 42, 42, 42, 7};
+        for (int value : seen) {
+            frequencyModel.record(value);
+        }
+
+        Random random = new Random(11);
+        int[] picked = new int[100];
+        int samples = 200_000;
+        for (int i = 0; i < samples; i++) {
+            picked[frequencyModel.sample(random)]++;
+        }
+
+        assertThat(picked[3]  / (double) samples).isCloseTo(0.6, within(0.01));
+        assertThat(picked[42] / (double) samples).isCloseTo(0.3, within(0.01));
+        assertThat(picked[7]  / (double) samples).isCloseTo(0.1, within(0.01));
+        assertThat(picked[3] + picked[42] + picked[7]).isEqualTo(samples);
+    }
+
+    @Test
+    public void onlyTheLastWindowValuesArePicked() throws Exception {
+        FrequencyModel frequencyModel = new FrequencyModel(0, 100, 3);
+        for (int value : new int[]{1, 2, 3, 4, 5, 5}) {
+            frequencyModel.record(value);
+        }
+
+        Random random = new Random(5);
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(frequencyModel.sample(random)).isIn(4, 5);
+        }
+    }
+
+    @Test
+    public void valuesOutsideTheRangeAreNotRecorded() throws Exception {
+        FrequencyModel frequencyModel = new FrequencyModel(10, 20, 0);
+
+        assertThat(frequencyModel.record(9)).isFalse();
+        assertThat(frequencyModel.record(20)).isFalse();
+        assertThat(frequencyModel.isEmpty()).isTrue();
+        assertThat(frequencyModel.record(10)).isTrue();
+        assertThat(frequencyModel.sample(new Random())).isEqualTo(10);
+    }
+}
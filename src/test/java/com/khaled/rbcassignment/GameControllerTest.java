@@ -2,52 +2,68 @@ package com.khaled.rbcassignment;
 
 import com.google.gson.Gson;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class GameControllerTest {
 
     @Mock
-    private KafkaTemplate kafkaTemplate;
+    private MessageBus messageBus;
 
     GameController gameController;
 
     @Before
     public void setup(){
         gameController = new GameController();
-        gameController.setKafkaTemplate(kafkaTemplate);
+        gameController.setMessageBus(messageBus);
+        gameController.setRoundTimer(new RoundTimer(messageBus));
+    }
+
+    @After
+    public void tearDown(){
+        gameController.getRoundTimer().destroy();
     }
 
     @Test
     public void rootSeedStoredAsLatest() throws Exception {
 
 
-        ConsumerRecord consumerRecord1 = new ConsumerRecord<String, String>(GameController.ROOT_SEED_TOPIC,
-                0, 0L, "mykey", "5" );
+        ConsumerRecord consumerRecord1 = new ConsumerRecord<String, byte[]>(GameController.ROOT_SEED_TOPIC,
+                0, 0L, "mykey", "5".getBytes(StandardCharsets.UTF_8) );
         gameController.onMessage(consumerRecord1);
 
         assertThat(gameController.getLatestSeed()).isEqualTo(5);
 
-        ConsumerRecord consumerRecord2 = new ConsumerRecord<String, String>(GameController.ROOT_SEED_TOPIC,
-                0, 0L, "mykey", "6" );
+        ConsumerRecord consumerRecord2 = new ConsumerRecord<String, byte[]>(GameController.ROOT_SEED_TOPIC,
+                0, 0L, "mykey", "6".getBytes(StandardCharsets.UTF_8) );
         gameController.onMessage(consumerRecord2);
 
         assertThat(gameController.getLatestSeed()).isEqualTo(6);
@@ -62,10 +78,9 @@ public class GameControllerTest {
         simulationDto.setNumberOfSeasons(2);
 
         gameController.getSimulationsMap().put(simulationDto.getSimulationId(),simulationDto);
-        gameController.setGenerator(new Random());
 
-        ConsumerRecord consumerRecord = new ConsumerRecord<String, String>(GameController.ROOT_SEED_TOPIC,
-                0, 0L, "mykey", new Gson().toJson(simulationDto ));
+        ConsumerRecord consumerRecord = new ConsumerRecord<String, byte[]>(GameController.ROOT_SEED_TOPIC,
+                0, 0L, "mykey", new Gson().toJson(simulationDto).getBytes(StandardCharsets.UTF_8));
 
         gameController.listenOnRoundCompleted(consumerRecord);
 
@@ -86,10 +101,9 @@ public class GameControllerTest {
         simulationDto.setCurrentSeasonNumber(new AtomicInteger(1));
 
         gameController.getSimulationsMap().put(simulationDto.getSimulationId(),simulationDto);
-        gameController.setGenerator(new Random());
 
-        ConsumerRecord consumerRecord = new ConsumerRecord<String, String>(GameController.ROOT_SEED_TOPIC,
-                0, 0L, "mykey", new Gson().toJson(simulationDto ));
+        ConsumerRecord consumerRecord = new ConsumerRecord<String, byte[]>(GameController.ROOT_SEED_TOPIC,
+                0, 0L, "mykey", new Gson().toJson(simulationDto).getBytes(StandardCharsets.UTF_8));
 
         gameController.listenOnRoundCompleted(consumerRecord);
 
@@ -109,10 +123,9 @@ public class GameControllerTest {
         simulationDto.setCurrentSeasonNumber(new AtomicInteger(2));
 
         gameController.getSimulationsMap().put(simulationDto.getSimulationId(),simulationDto);
-        gameController.setGenerator(new Random());
 
-        ConsumerRecord consumerRecord = new ConsumerRecord<String, String>(GameController.ROOT_SEED_TOPIC,
-                0, 0L, "mykey", new Gson().toJson(simulationDto ));
+        ConsumerRecord consumerRecord = new ConsumerRecord<String, byte[]>(GameController.ROOT_SEED_TOPIC,
+                0, 0L, "mykey", new Gson().toJson(simulationDto).getBytes(StandardCharsets.UTF_8));
 
         gameController.listenOnRoundCompleted(consumerRecord);
 
@@ -120,4 +133,118 @@ public class GameControllerTest {
         assertThat(simulationDto.getStatus()).isEqualTo(StatusEnum.COMPLETE);
     }
 
+    @Test
+    public void batchStartsEverySimulationWithOnePublish(){
+        List<SimulationDto> simulations = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            SimulationDto simulationDto = new SimulationDto();
+            simulationDto.setNumberOfRounds(3);
+            simulationDto.setNumberOfSeasons(2);
+            simulations.add(simulationDto);
+        }
+        simulations.get(1).setSeed(42L);
+        simulations.get(2).setSeed(0L);
+
+        assertThat(gameController.simulationsBatch(simulations).getBody()).containsExactly(1, 2, 3, 4);
+        verify(messageBus, times(1)).publish(eq(GameController.SIMULATION_START_BATCH_TOPIC), any(byte[].class));
+
+        assertThat(gameController.getSimulationsMap()).hasSize(4);
+        assertThat(gameController.getSimulationsMap().get(2).getSeed()).isEqualTo(42L);
+        //0 is a seed, only a missing seed is picked
+        assertThat(gameController.getSimulationsMap().get(3).getSeed()).isEqualTo(0L);
+        assertThat(gameController.getSimulationsMap().get(1).getSeed()).isNotNull().isNotEqualTo(gameController.getSimulationsMap().get(4).getSeed());
+    }
+
+    @Test
+    public void simulationIdsContinueAfterTheStoredSimulations(){
+        RoundHistoryStore roundHistoryStore = mock(RoundHistoryStore.class);
+        when(roundHistoryStore.getSimulationIds()).thenReturn(Arrays.asList(7, 3));
+        gameController.setRoundHistoryStore(roundHistoryStore);
+        gameController.subscribe();
+
+        List<SimulationDto> simulations = new ArrayList<>();
+        simulations.add(new SimulationDto());
+        simulations.add(new SimulationDto());
+
+        assertThat(gameController.simulationsBatch(simulations).getBody()).containsExactly(8, 9);
+    }
+
+    @Test
+    public void simulationsWithTheSameSeedPlayTheSameRoundSeeds(){
+        SimulationBatchDto simulationBatchDto = new SimulationBatchDto();
+        for (int simulationId = 1; simulationId <= 2; simulationId++) {
+            SimulationDto simulationDto = new SimulationDto();
+            simulationDto.setSimulationId(simulationId);
+            simulationDto.setNumberOfRounds(3);
+            simulationDto.setNumberOfSeasons(1);
+            simulationDto.setSeed(7L);
+            simulationBatchDto.getSimulations().add(simulationDto);
+            gameController.getSimulationsMap().put(simulationId, simulationDto);
+        }
+
+        gameController.onMessage(new ConsumerRecord<String, byte[]>(GameController.SIMULATION_START_BATCH_TOPIC,
+                0, 0L, null, new Gson().toJson(simulationBatchDto).getBytes(StandardCharsets.UTF_8)));
+
+        ArgumentCaptor<byte[]> roundStarts = ArgumentCaptor.forClass(byte[].class);
+        verify(messageBus, times(2)).publish(eq(GameController.ROUND_START_TOPIC), anyString(), roundStarts.capture(), any(Headers.class));
+        RoundStartDto first  = new Gson().fromJson(new String(roundStarts.getAllValues().get(0), StandardCharsets.UTF_8), RoundStartDto.class);
+        RoundStartDto second = new Gson().fromJson(new String(roundStarts.getAllValues().get(1), StandardCharsets.UTF_8), RoundStartDto.class);
+
+        assertThat(first.getSimulationId()).isEqualTo(1);
+        assertThat(second.getSimulationId()).isEqualTo(2);
+        assertThat(first.getSeed()).isEqualTo(second.getSeed());
+    }
+
+    @Test
+    public void roundCompletedTwiceStartsTheNextRoundOnce(){
+        SimulationDto simulationDto = new SimulationDto();
+        simulationDto.setSimulationId(1);
+        simulationDto.setNumberOfRounds(3);
+        simulationDto.setNumberOfSeasons(1);
+        gameController.getSimulationsMap().put(simulationDto.getSimulationId(), simulationDto);
+        gameController.onMessage(new ConsumerRecord<String, byte[]>(GameController.SIMULATION_START_TOPIC,
+                0, 0L, "1", new Gson().toJson(simulationDto).getBytes(StandardCharsets.UTF_8)));
+
+        ArgumentCaptor<byte[]> roundStart = ArgumentCaptor.forClass(byte[].class);
+        verify(messageBus).publish(eq(GameController.ROUND_START_TOPIC), anyString(), roundStart.capture(), any(Headers.class));
+        RoundStartDto roundStartDto = new Gson().fromJson(new String(roundStart.getValue(), StandardCharsets.UTF_8), RoundStartDto.class);
+        RoundResultDto roundResultDto = new RoundResultDto();
+        roundResultDto.setSimulationId(1);
+        roundResultDto.setSeasonNumber(1);
+        roundResultDto.setRoundNumber(1);
+        roundResultDto.setRoundStartedAtMicros(roundStartDto.getStartedAtMicros());
+        ConsumerRecord<String, byte[]> roundCompleted = new ConsumerRecord<>(GameController.ROUND_COMPLETED_TOPIC,
+                0, 0L, "1", new Gson().toJson(roundResultDto).getBytes(StandardCharsets.UTF_8));
+
+        gameController.onMessage(roundCompleted);
+        gameController.onMessage(roundCompleted);
+
+        assertThat(gameController.getSimulationsMap().get(1).getCurrentRoundNumber().get()).isEqualTo(2);
+    }
+
+    @Test
+    public void deferredRoundStartIsStampedWhenPublished() throws Exception {
+        gameController.setRoundFlowControl(new RoundFlowControl(1, 1));
+        for (int simulationId = 1; simulationId <= 2; simulationId++) {
+            SimulationDto simulationDto = new SimulationDto();
+            simulationDto.setSimulationId(simulationId);
+            simulationDto.setNumberOfRounds(1);
+            simulationDto.setNumberOfSeasons(1);
+            gameController.getSimulationsMap().put(simulationId, simulationDto);
+            gameController.onMessage(new ConsumerRecord<String, byte[]>(GameController.SIMULATION_START_TOPIC,
+                    0, 0L, String.valueOf(simulationId), new Gson().toJson(simulationDto).getBytes(StandardCharsets.UTF_8)));
+        }
+        verify(messageBus).publish(eq(GameController.ROUND_START_TOPIC), anyString(), any(byte[].class), any(Headers.class));
+
+        Thread.sleep(20);
+        long storedAtMicros = LatencyMetrics.nowMicros();
+        gameController.getRoundFlowControl().roundStored();
+
+        ArgumentCaptor<byte[]> roundStarts = ArgumentCaptor.forClass(byte[].class);
+        verify(messageBus, times(2)).publish(eq(GameController.ROUND_START_TOPIC), anyString(), roundStarts.capture(), any(Headers.class));
+        List<byte[]> published = roundStarts.getAllValues();
+        RoundStartDto deferred = new Gson().fromJson(new String(published.get(published.size() - 1), StandardCharsets.UTF_8), RoundStartDto.class);
+        assertThat(deferred.getSimulationId()).isEqualTo(2);
+        assertThat(deferred.getStartedAtMicros()).isGreaterThanOrEqualTo(storedAtMicros);
+    }
 }
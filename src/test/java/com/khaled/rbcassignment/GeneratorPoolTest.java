@@ -0,0 +1,81 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GeneratorPoolTest {
+
+    @Mock
+    private MessageBus messageBus;
+
+    private final MessageCodecs messageCodecs = new MessageCodecs();
+
+    private GeneratorPool generatorPool;
+
+    @Before
+    public void setup(){
+        generatorPool = new GeneratorPool(messageBus, messageCodecs, GeneratorPool.BUILT_IN_GENERATORS.keySet());
+    }
+
+    @Test
+    public void roundValuesAreSentAsOneBatch() throws Exception {
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSimulationId(3);
+        roundStartDto.setSeed(42);
+        generatorPool.onMessage(new ConsumerRecord<>(GameController.ROUND_START_TOPIC, 0, 0L, "3",
+                messageCodecs.encode(GameController.ROUND_START_TOPIC, roundStartDto)));
+
+        RoundInputBatchDto batch = published(GameController.ROUND_INPUT_BATCH_TOPIC);
+        assertThat(batch.getSimulationId()).isEqualTo(3);
+        assertThat(batch.getInputs()).hasSize(6);
+        for (int i = 0; i < 6; i++) {
+            RoundInputDto input = batch.getInputs().get(i);
+            assertThat(input.getSourceName()).isEqualTo("Generator" + (i + 1));
+            assertThat(input.getSource()).isEqualTo(SourceEnum.GENERATOR);
+            assertThat(input.getValue()).isEqualTo(GeneratorPool.BUILT_IN_GENERATORS.get(input.getSourceName()).get().generateValue(42));
+        }
+
+        RoundResultDto roundResultDto = new RoundResultDto();
+        roundResultDto.setSimulationId(3);
+        ConsumerRecord<String, byte[]> roundCompleted = new ConsumerRecord<>(GameController.ROUND_COMPLETED_TOPIC, 0, 0L, "3",
+                messageCodecs.encode(GameController.ROUND_COMPLETED_TOPIC, roundResultDto));
+        generatorPool.onMessage(roundCompleted);
+        //Values are only shared once
+        generatorPool.onMessage(roundCompleted);
+
+        assertThat(published(GameController.ROUND_INPUT_AFTER_THE_FACT_BATCH_TOPIC)).isEqualTo(batch);
+    }
+
+    @Test
+    public void generatorsAreHostedOnceByName() throws Exception {
+        GeneratorPool pool = new GeneratorPool(messageBus, messageCodecs, Arrays.asList("Generator2", "Generator5"));
+
+        assertThat(pool.size()).isEqualTo(2);
+        assertThatThrownBy(() -> pool.addGenerator(new Generator5())).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new GeneratorPool(messageBus, messageCodecs, Collections.singletonList("Generator7")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private RoundInputBatchDto published(String topic) {
+        ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+        verify(messageBus, times(1)).publish(eq(topic), eq("3"), payload.capture(), any(Headers.class));
+        return messageCodecs.decode(payload.getValue(), RoundInputBatchDto.class);
+    }
+}
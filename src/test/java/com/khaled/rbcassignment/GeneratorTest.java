@@ -0,0 +1,28 @@
+package com.khaled.rbcassignment;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class GeneratorTest {
+
+    @Test
+    public void precomputedValuesMatchComputedValues() throws Exception {
+        for (Generator generator : new Generator[]{new Generator1(), new Generator2(), new Generator3(),
+                new Generator4(), new Generator5(), new Generator6()}) {
+            generator.precomputeValues(-50, 150);
+            for (int seed = -100; seed < 200; seed++) {
+                assertThat(generator.generateValue(seed)).isEqualTo(generator.computeValue(seed));
+            }
+        }
+    }
+
+    @Test
+    public void seedRangeIsBounded() throws Exception {
+        Generator generator = new Generator1();
+
+        assertThatThrownBy(() -> generator.precomputeValues(10, 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> generator.precomputeValues(Integer.MIN_VALUE, Integer.MAX_VALUE)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,188 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryMessageBusTest {
+
+    private InMemoryMessageBus messageBus;
+
+    @Before
+    public void setup(){
+        MessageBusProperties properties = new MessageBusProperties();
+        properties.getConcurrencyByGroup().put("keyed", 4);
+        messageBus = new InMemoryMessageBus(10, 2, properties);
+    }
+
+    @After
+    public void tearDown(){
+        messageBus.destroy();
+    }
+
+    @Test
+    public void everySubscriptionReceivesAllMessagesInOrder() throws Exception {
+        int numberOfMessages = 100;
+        CountDownLatch latch = new CountDownLatch(2 * numberOfMessages);
+        List<String> received1 = Collections.synchronizedList(new ArrayList<>());
+        List<String> received2 = Collections.synchronizedList(new ArrayList<>());
+
+        messageBus.subscribe("group1", message -> { received1.add(new String(message.value(), StandardCharsets.UTF_8)); latch.countDown(); }, GameController.ROUND_START_TOPIC);
+        messageBus.subscribe("group2", message -> { received2.add(new String(message.value(), StandardCharsets.UTF_8)); latch.countDown(); }, GameController.ROUND_START_TOPIC);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < numberOfMessages; i++) {
+            expected.add(String.valueOf(i));
+            messageBus.publish(GameController.ROUND_START_TOPIC, String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(received1).isEqualTo(expected);
+        assertThat(received2).isEqualTo(expected);
+    }
+
+    @Test
+    public void messagesWithTheSameKeyAreProcessedInOrder() throws Exception {
+        int numberOfSimulations = 8;
+        int numberOfMessages    = 50;
+        CountDownLatch latch = new CountDownLatch(numberOfSimulations * numberOfMessages);
+        Map<String, List<Integer>> receivedBySimulation = new ConcurrentHashMap<>();
+
+        messageBus.subscribe("keyed", message -> {
+            receivedBySimulation.computeIfAbsent(message.key(), k -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(Integer.parseInt(new String(message.value(), StandardCharsets.UTF_8)));
+            latch.countDown();
+        }, GameController.ROUND_INPUT_TOPIC);
+
+        for (int i = 0; i < numberOfMessages; i++) {
+            for (int simulationId = 0; simulationId < numberOfSimulations; simulationId++) {
+                messageBus.publish(GameController.ROUND_INPUT_TOPIC, String.valueOf(simulationId), String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(receivedBySimulation).hasSize(numberOfSimulations);
+        for (List<Integer> received : receivedBySimulation.values()) {
+            assertThat(received).isSorted().hasSize(numberOfMessages);
+        }
+    }
+
+    @Test
+    public void batchSubscriptionsReceiveMessagesInOrderInBoundedBatches() throws Exception {
+        int numberOfMessages = 100;
+        CountDownLatch latch = new CountDownLatch(numberOfMessages);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+        messageBus.subscribeBatch("batch", messages -> {
+            batchSizes.add(messages.size());
+            for (ConsumerRecord<String, byte[]> message : messages) {
+                received.add(Integer.parseInt(new String(message.value(), StandardCharsets.UTF_8)));
+                latch.countDown();
+            }
+        }, GameController.ROUND_COMPLETED_TOPIC);
+
+        for (int i = 0; i < numberOfMessages; i++) {
+            messageBus.publish(GameController.ROUND_COMPLETED_TOPIC, "1", String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(received).isSorted().hasSize(numberOfMessages);
+        //Mailboxes hold 10 messages
+        for (int batchSize : batchSizes) {
+            assertThat(batchSize).isBetween(1, 10);
+        }
+    }
+
+    @Test
+    public void workersPublishPastTheQueueCapacityWithoutBlocking() throws Exception {
+        int numberOfMessages = 30;
+        CountDownLatch published = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(numberOfMessages);
+
+        //The subscriber only drains its mailbox once the publishing worker is done
+        messageBus.subscribe("group2", message -> {
+            try {
+                published.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            latch.countDown();
+        }, GameController.ROUND_INPUT_TOPIC);
+        messageBus.subscribe("group1", message -> {
+            for (int i = 0; i < numberOfMessages; i++) {
+                messageBus.publish(GameController.ROUND_INPUT_TOPIC, String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+            }
+            published.countDown();
+        }, GameController.ROUND_START_TOPIC);
+
+        messageBus.publish(GameController.ROUND_START_TOPIC, "start".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(published.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void runawayCycleFailsPastMaxQueuedMessages() throws Exception {
+        InMemoryMessageBus boundedBus = new InMemoryMessageBus(10, 100, 2, new MessageBusProperties());
+        CountDownLatch failed = new CountDownLatch(1);
+        List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            //Never drained until the test is over
+            boundedBus.subscribe("slow", message -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, GameController.ROUND_INPUT_TOPIC);
+            //Every round start publishes round inputs and the next round start
+            boundedBus.subscribe("cycle", message -> {
+                try {
+                    for (int i = 0; i < 10; i++) {
+                        boundedBus.publish(GameController.ROUND_INPUT_TOPIC, String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+                    }
+                    boundedBus.publish(GameController.ROUND_START_TOPIC, "next".getBytes(StandardCharsets.UTF_8));
+                } catch (IllegalStateException e) {
+                    failures.add(e);
+                    failed.countDown();
+                }
+            }, GameController.ROUND_START_TOPIC);
+
+            boundedBus.publish(GameController.ROUND_START_TOPIC, "start".getBytes(StandardCharsets.UTF_8));
+
+            assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(failures.get(0)).hasMessageContaining("slow");
+        } finally {
+            release.countDown();
+            boundedBus.destroy();
+        }
+    }
+
+    @Test
+    public void messagesAreOnlyDeliveredToSubscribedTopics() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        List<String> topics = Collections.synchronizedList(new ArrayList<>());
+
+        messageBus.subscribe("group1", message -> { topics.add(message.topic()); latch.countDown(); }, GameController.ROUND_INPUT_TOPIC);
+
+        messageBus.publish(GameController.ROUND_START_TOPIC, "ignored".getBytes(StandardCharsets.UTF_8));
+        messageBus.publish(GameController.ROUND_INPUT_TOPIC, "received".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(topics).containsExactly(GameController.ROUND_INPUT_TOPIC);
+    }
+}
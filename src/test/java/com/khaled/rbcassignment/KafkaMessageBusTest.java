@@ -0,0 +1,86 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class KafkaMessageBusTest {
+
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    private final List<SettableListenableFuture<SendResult<String, byte[]>>> sends = new ArrayList<>();
+
+    private KafkaMessageBus messageBus;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup(){
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenAnswer(invocation -> {
+            SettableListenableFuture<SendResult<String, byte[]>> future = new SettableListenableFuture<>();
+            synchronized (sends) {
+                sends.add(future);
+            }
+            return future;
+        });
+        MessageBusProperties properties = new MessageBusProperties();
+        properties.setMaxInFlight(2);
+        messageBus = new KafkaMessageBus(kafkaTemplate, "localhost:9092", properties);
+    }
+
+    @Test
+    public void publishWaitsForAnAcknowledgementPastMaxInFlight() throws Exception {
+        messageBus.publish(GameController.ROUND_START_TOPIC, "1", new byte[0]);
+        messageBus.publish(GameController.ROUND_START_TOPIC, "2", new byte[0]);
+        assertThat(messageBus.getInFlight()).isEqualTo(2);
+
+        CountDownLatch published = new CountDownLatch(1);
+        Thread publisher = new Thread(() -> {
+            messageBus.publish(GameController.ROUND_START_TOPIC, "3", new byte[0]);
+            published.countDown();
+        });
+        publisher.start();
+        assertThat(published.await(200, TimeUnit.MILLISECONDS)).isFalse();
+
+        sends.get(0).set(null);
+        assertThat(published.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(messageBus.getInFlight()).isEqualTo(2);
+    }
+
+    @Test
+    public void failedSendsAreCountedByTopicAndFreeTheirSlot() {
+        messageBus.publish(GameController.ROUND_START_TOPIC, "1", new byte[0]);
+        messageBus.publish(GameController.ROUND_COMPLETED_TOPIC, "1", new byte[0]);
+
+        sends.get(0).setException(new IllegalStateException("broker unreachable"));
+        sends.get(1).set(null);
+
+        assertThat(messageBus.getInFlight()).isEqualTo(0);
+        assertThat(messageBus.getFailed()).isEqualTo(1);
+        Map<String, Number> metrics = new HashMap<>();
+        for (Metric<?> metric : messageBus.metrics()) {
+            metrics.put(metric.getName(), metric.getValue());
+        }
+        assertThat(metrics.get("messageBus.failed." + GameController.ROUND_START_TOPIC).longValue()).isEqualTo(1);
+        assertThat(metrics.get("messageBus.sent").longValue()).isEqualTo(1);
+    }
+}
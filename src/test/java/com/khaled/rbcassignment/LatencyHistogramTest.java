@@ -0,0 +1,73 @@
+package com.khaled.rbcassignment;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void everyValueIsInABucketWithinOneSixteenthOfIt(){
+        for (long value = 0; value < 1 << 20; value += 1 + value / 100) {
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value));
+            assertThat(highest).isGreaterThanOrEqualTo(value);
+            assertThat(highest - value).isLessThanOrEqualTo(value / 16);
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinTheBucketPrecision(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(10_000);
+        assertThat(histogram.getMax()).isEqualTo(10_000);
+        assertThat((double) histogram.getValueAtPercentile(50)).isCloseTo(5_000, within(5_000 / 16.0));
+        assertThat((double) histogram.getValueAtPercentile(99)).isCloseTo(9_900, within(9_900 / 16.0));
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(10_000);
+        assertThat(new LatencyHistogram().getValueAtPercentile(99)).isEqualTo(0);
+    }
+
+    @Test
+    public void mergedHistogramHoldsTheValuesOfBoth(){
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            fast.record(10);
+        }
+        slow.record(100_000);
+
+        LatencyHistogram merged = new LatencyHistogram();
+        merged.merge(fast);
+        merged.merge(slow);
+
+        assertThat(merged.getCount()).isEqualTo(100);
+        assertThat(merged.getMax()).isEqualTo(100_000);
+        assertThat(merged.getValueAtPercentile(99)).isEqualTo(10);
+        assertThat(merged.getValueAtPercentile(99.9)).isEqualTo(100_000);
+    }
+
+    @Test
+    public void participantsPastTheLimitShareOneHistogram(){
+        LatencyMetrics latencyMetrics = new LatencyMetrics(2);
+        long startedAt = LatencyMetrics.nowMicros() - 1_000;
+        for (int i = 1; i <= 5; i++) {
+            latencyMetrics.record(LatencyMetrics.ROUND_INPUT, "Player" + i, startedAt);
+        }
+        latencyMetrics.record(LatencyMetrics.ROUND_INPUT, "Player1", 0);
+
+        Map<String, LatencyHistogram> histograms = latencyMetrics.getHistograms(LatencyMetrics.ROUND_INPUT);
+
+        assertThat(histograms).containsOnlyKeys("Player1", "Player2", LatencyMetrics.OTHER_PARTICIPANTS, LatencyMetrics.ALL_PARTICIPANTS);
+        assertThat(histograms.get("Player1").getCount()).isEqualTo(1);
+        assertThat(histograms.get(LatencyMetrics.OTHER_PARTICIPANTS).getCount()).isEqualTo(3);
+        assertThat(histograms.get(LatencyMetrics.ALL_PARTICIPANTS).getCount()).isEqualTo(5);
+        assertThat(histograms.get(LatencyMetrics.ALL_PARTICIPANTS).getMax()).isGreaterThanOrEqualTo(1_000);
+        assertThat(latencyMetrics.getPercentiles().get(LatencyMetrics.ROUND_INPUT).get("Player1")).containsKeys("count", "p50", "p99", "p999", "max");
+    }
+}
@@ -0,0 +1,53 @@
+package com.khaled.rbcassignment;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LeaderboardTest {
+
+    @Test
+    public void playersWithTheSameScoreShareTheirRank() throws Exception {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.update("Player1", 3);
+        leaderboard.update("Player2", 7);
+        leaderboard.update("Player3", 3);
+        leaderboard.update("Player4", 1);
+
+        assertThat(leaderboard.top(10)).containsExactly(
+                new LeaderboardEntryDto(1, "Player2", 7),
+                new LeaderboardEntryDto(2, "Player1", 3),
+                new LeaderboardEntryDto(2, "Player3", 3),
+                new LeaderboardEntryDto(4, "Player4", 1));
+        assertThat(leaderboard.top(2)).hasSize(2);
+        assertThat(leaderboard.rank("Player3")).isEqualTo(new LeaderboardEntryDto(2, "Player3", 3));
+        assertThat(leaderboard.rank("Player5")).isNull();
+    }
+
+    @Test
+    public void standingsFollowScoreChanges() throws Exception {
+        Random random = new Random(7);
+        Leaderboard leaderboard = new Leaderboard();
+        Map<String, Integer> scores = new HashMap<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            String player = "Player" + random.nextInt(2_000);
+            int score = scores.getOrDefault(player, 0) + random.nextInt(3);
+            scores.put(player, score);
+            leaderboard.update(player, score);
+        }
+
+        List<Map.Entry<String, Integer>> expected = new ArrayList<>(scores.entrySet());
+        expected.sort(Comparator.<Map.Entry<String, Integer>>comparingInt(Map.Entry::getValue).reversed().thenComparing(Map.Entry::getKey));
+
+        List<LeaderboardEntryDto> top = leaderboard.top(scores.size());
+        assertThat(leaderboard.size()).isEqualTo(scores.size());
+        assertThat(top).hasSize(scores.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertThat(top.get(i).getPlayerName()).isEqualTo(expected.get(i).getKey());
+            assertThat(leaderboard.rank(top.get(i).getPlayerName())).isEqualTo(top.get(i));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.khaled.rbcassignment;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedRoundLogTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void roundsAreKeptAcrossRestarts() throws Exception {
+        File directory = temporaryFolder.newFolder();
+
+        MappedRoundLog roundLog = new MappedRoundLog(directory, 1024);
+        appendRounds(roundLog, 1, 30);
+        appendRounds(roundLog, 2, 10);
+        roundLog.destroy();
+
+        MappedRoundLog reopened = new MappedRoundLog(directory, 1024);
+        assertThat(reopened.getNumberOfSimulations()).isEqualTo(2);
+        assertThat(reopened.getSimulationIds()).containsOnly(1, 2);
+        assertRounds(reopened.getRounds(1), 30);
+        assertRounds(reopened.getRounds(2), 10);
+
+        //Appending after the restart continues where the log stopped
+        appendRounds(reopened, 3, 5);
+        assertRounds(reopened.getRounds(1), 30);
+        assertRounds(reopened.getRounds(3), 5);
+    }
+
+    @Test
+    public void reusedSimulationIdReplacesOldRounds() throws Exception {
+        File directory = temporaryFolder.newFolder();
+
+        MappedRoundLog roundLog = new MappedRoundLog(directory, 1024);
+        appendRounds(roundLog, 1, 30);
+        appendRounds(roundLog, 1, 4);
+        assertRounds(roundLog.getRounds(1), 4);
+        roundLog.destroy();
+
+        assertRounds(new MappedRoundLog(directory, 1024).getRounds(1), 4);
+        assertThat(new MappedRoundLog(directory, 1024).getRounds(2)).isEmpty();
+    }
+
+    private void assertRounds(List<RoundResultDto> rounds, int numberOfRounds) {
+        assertThat(rounds).hasSize(numberOfRounds);
+        for (int i = 0; i < rounds.size(); i++) {
+            assertThat(rounds.get(i).getRoundNumber()).isEqualTo(i + 1);
+            assertThat(rounds.get(i).getResultForCurrentRound()).containsEntry("Player1", i % 3);
+        }
+    }
+
+    private void appendRounds(MappedRoundLog roundLog, int simulationId, int numberOfRounds) {
+        for (int roundNumber = 1; roundNumber <= numberOfRounds; roundNumber++) {
+            RoundResultDto roundResultDto = new RoundResultDto();
+            roundResultDto.setSimulationId(simulationId);
+            roundResultDto.setSeasonNumber(1);
+            roundResultDto.setRoundNumber(roundNumber);
+            roundResultDto.getResultForCurrentRound().put("Player1", (roundNumber - 1) % 3);
+            roundLog.append(roundResultDto);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PlayerPoolTest {
+
+    private static final int NUMBER_OF_PLAYERS = 2_500;
+
+    @Mock
+    private MessageBus messageBus;
+
+    private final MessageCodecs messageCodecs = new MessageCodecs();
+
+    private PlayerPool playerPool;
+
+    @Before
+    public void setup(){
+        List<Player> players = new ArrayList<>();
+        for (int playerNumber = 1; playerNumber <= NUMBER_OF_PLAYERS; playerNumber++) {
+            players.add(new Player("Player" + playerNumber, messageBus, messageCodecs));
+        }
+        playerPool = new PlayerPool(messageBus, messageCodecs, players, 1_000, 2, 1);
+    }
+
+    @After
+    public void tearDown(){
+        playerPool.destroy();
+    }
+
+    @Test
+    public void everyPlayerPlaysOnceInBatches() throws Exception {
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSimulationId(4);
+        roundStartDto.setSeed(17);
+        playerPool.onMessage(new ConsumerRecord<>(GameController.ROUND_START_TOPIC, 0, 0L, "4",
+                messageCodecs.encode(GameController.ROUND_START_TOPIC, roundStartDto)));
+
+        ArgumentCaptor<byte[]> payloads = ArgumentCaptor.forClass(byte[].class);
+        //Every batch is published before onMessage returns
+        verify(messageBus, times(3)).publish(eq(GameController.ROUND_INPUT_BATCH_TOPIC), eq("4"), payloads.capture(), any(Headers.class));
+
+        Set<String> playerNames = new HashSet<>();
+        for (byte[] payload : payloads.getAllValues()) {
+            RoundInputBatchDto batch = messageCodecs.decode(payload, RoundInputBatchDto.class);
+            assertThat(batch.getSimulationId()).isEqualTo(4);
+            assertThat(batch.getInputs().size()).isLessThanOrEqualTo(1_000);
+            for (RoundInputDto input : batch.getInputs()) {
+                assertThat(input.getSource()).isEqualTo(SourceEnum.PLAYER);
+                assertThat(input.getValue()).isBetween(1, 99);
+                playerNames.add(input.getSourceName());
+            }
+        }
+        assertThat(playerNames).hasSize(NUMBER_OF_PLAYERS);
+    }
+
+    @Test
+    public void roundStartReceivedAfterDestroyIsStillPlayed() throws Exception {
+        playerPool.destroy();
+
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSimulationId(5);
+        playerPool.onMessage(new ConsumerRecord<>(GameController.ROUND_START_TOPIC, 0, 0L, "5",
+                messageCodecs.encode(GameController.ROUND_START_TOPIC, roundStartDto)));
+
+        verify(messageBus, times(3)).publish(eq(GameController.ROUND_INPUT_BATCH_TOPIC), eq("5"), any(byte[].class), any(Headers.class));
+    }
+}
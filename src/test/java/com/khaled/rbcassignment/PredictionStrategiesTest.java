@@ -0,0 +1,75 @@
+package com.khaled.rbcassignment;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PredictionStrategiesTest {
+
+    private final PredictionStrategies predictionStrategies = new PredictionStrategies();
+
+    @Test
+    public void defaultStrategyIsUsedWhenNoneIsPicked() throws Exception {
+        assertThat(predictionStrategies.getNames()).containsExactly("frequency", "markov", "seed");
+        assertThat(predictionStrategies.create(null)).isInstanceOf(FrequencyPredictionStrategy.class);
+        assertThat(predictionStrategies.isKnown("oracle")).isFalse();
+        assertThatThrownBy(() -> predictionStrategies.create("oracle")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void markovStrategyLearnsTheNextValueOfEachGenerator() throws Exception {
+        PredictionStrategy predictionStrategy = predictionStrategies.create(PredictionStrategies.MARKOV);
+        Random random = new Random(3);
+
+        //Generator1 cycles 10 -> 20 -> 30 -> 10, Generator2 always plays 20
+        int[] cycle = {10, 20, 30};
+        for (int round = 0; round < 31; round++) {
+            predictionStrategy.record(input("Generator1", cycle[round % cycle.length]));
+            predictionStrategy.record(input("Generator2", 20));
+        }
+
+        //Both generators are expected to play 20
+        assertThat(predictionStrategy.predict(roundStart(0), random)).isEqualTo(20);
+
+        //Generator2 never played after 30, only Generator1 is expected to play 30
+        predictionStrategy.record(input("Generator1", 20));
+        predictionStrategy.record(input("Generator2", 30));
+        assertThat(predictionStrategy.predict(roundStart(0), random)).isEqualTo(30);
+    }
+
+    @Test
+    public void seedAwareStrategyReplaysTheValuesOfAKnownSeed() throws Exception {
+        PredictionStrategy predictionStrategy = predictionStrategies.create(PredictionStrategies.SEED);
+        Random random = new Random(3);
+
+        predictionStrategy.predict(roundStart(5), random);
+        predictionStrategy.predict(roundStart(8), random);
+        //Values of the first round received after the second round is started
+        predictionStrategy.record(input("Generator1", 40));
+        predictionStrategy.record(input("Generator2", 41));
+        predictionStrategy.record(input("Generator3", 41));
+        predictionStrategy.record(input("Generator1", 70));
+        predictionStrategy.record(input("Generator2", 70));
+        predictionStrategy.record(input("Generator3", 12));
+
+        assertThat(predictionStrategy.predict(roundStart(5), random)).isEqualTo(41);
+        assertThat(predictionStrategy.predict(roundStart(8), random)).isEqualTo(70);
+    }
+
+    private static RoundStartDto roundStart(int seed) {
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSeed(seed);
+        return roundStartDto;
+    }
+
+    private static RoundInputDto input(String sourceName, int value) {
+        RoundInputDto roundInputDto = new RoundInputDto();
+        roundInputDto.setSource(SourceEnum.GENERATOR);
+        roundInputDto.setSourceName(sourceName);
+        roundInputDto.setValue(value);
+        return roundInputDto;
+    }
+}
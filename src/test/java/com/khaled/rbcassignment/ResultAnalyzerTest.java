@@ -2,32 +2,54 @@ package com.khaled.rbcassignment;
 
 import com.google.gson.Gson;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.record.TimestampType;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 import static org.junit.Assert.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 
 @RunWith(MockitoJUnitRunner.class)
 public class ResultAnalyzerTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Mock
-    private KafkaTemplate kafkaTemplate;
+    private MessageBus messageBus;
 
     private ResultAnalyzer resultAnalyzer;
 
     @Before
     public void setup(){
         resultAnalyzer = new ResultAnalyzer();
-        resultAnalyzer.setKafkaTemplate(kafkaTemplate);
+        resultAnalyzer.setMessageBus(messageBus);
     }
 
     @Test
@@ -38,7 +60,7 @@ public class ResultAnalyzerTest {
         simulationResultsDto.setNumberOfParticipatns(10);
         simulationResultsDto.setSimulationId(SIMULATION_ID);
 
-        resultAnalyzer.getRoundsResultsMap().put(SIMULATION_ID,simulationResultsDto);
+        resultAnalyzer.getRoundsResultsMap(0).put(SIMULATION_ID,simulationResultsDto);
 
         ArrayList<RoundInputDto> list = new ArrayList();
         RoundInputDto roundInput1 = new RoundInputDto();
@@ -92,13 +114,13 @@ public class ResultAnalyzerTest {
 
 
         for (RoundInputDto roundInput: list) {
-            ConsumerRecord consumerRecord = new ConsumerRecord<String, String>(GameController.ROUND_INPUT_TOPIC,
-                    0, 0L, "mykey", new Gson().toJson(roundInput) );
+            ConsumerRecord consumerRecord = new ConsumerRecord<String, byte[]>(GameController.ROUND_INPUT_TOPIC,
+                    0, 0L, "mykey", new Gson().toJson(roundInput).getBytes(StandardCharsets.UTF_8) );
             resultAnalyzer.onMessage(consumerRecord);
         }
 
         //Since not all inputs are received (only 7 out of 10), check that the counter is not resetted and is equal to the number of test inputs .
-        RoundResultDto roundResultDto = resultAnalyzer.getRoundsResultsMap().get(SIMULATION_ID);
+        RoundResultDto roundResultDto = resultAnalyzer.getRoundsResultsMap(0).get(SIMULATION_ID);
         assertThat(roundResultDto.getNumberOfInputsReceivedForCurrentRound().get()).isEqualTo(7);
     }
 
@@ -111,7 +133,7 @@ public class ResultAnalyzerTest {
         simulationResultsDto.setNumberOfParticipatns(10);
         simulationResultsDto.setSimulationId(SIMULATION_ID);
 
-        resultAnalyzer.getRoundsResultsMap().put(SIMULATION_ID,simulationResultsDto);
+        resultAnalyzer.getRoundsResultsMap(0).put(SIMULATION_ID,simulationResultsDto);
 
 
         ArrayList<RoundInputDto> list = new ArrayList();
@@ -187,15 +209,15 @@ public class ResultAnalyzerTest {
 
 
         for (RoundInputDto roundInput: list) {
-            ConsumerRecord consumerRecord = new ConsumerRecord<String, String>(GameController.ROUND_INPUT_TOPIC,
-                    0, 0L, "mykey", new Gson().toJson(roundInput) );
+            ConsumerRecord consumerRecord = new ConsumerRecord<String, byte[]>(GameController.ROUND_INPUT_TOPIC,
+                    0, 0L, "mykey", new Gson().toJson(roundInput).getBytes(StandardCharsets.UTF_8) );
             resultAnalyzer.onMessage(consumerRecord);
         }
 
 
 
         //Verify that the counter is resetted once all round inputs are received
-        RoundResultDto roundResultDto = resultAnalyzer.getRoundsResultsMap().get(SIMULATION_ID);
+        RoundResultDto roundResultDto = resultAnalyzer.getRoundsResultsMap(0).get(SIMULATION_ID);
         assertEquals(0, roundResultDto.getNumberOfInputsReceivedForCurrentRound().get());
 
         //Check players scores
@@ -204,5 +226,314 @@ public class ResultAnalyzerTest {
         assertEquals(1, roundResultDto.getResultForCurrentRound().get("PE").intValue());
     }
 
+    @Test
+    public void generatorsBatchCountsAsOneInputPerGenerator(){
+        int SIMULATION_ID = 1;
+
+        RoundResultDto simulationResultsDto = new RoundResultDto();
+        simulationResultsDto.setNumberOfParticipatns(8);
+        simulationResultsDto.setSimulationId(SIMULATION_ID);
+
+        resultAnalyzer.getRoundsResultsMap(0).put(SIMULATION_ID,simulationResultsDto);
+
+        RoundInputBatchDto generators = new RoundInputBatchDto();
+        generators.setSimulationId(SIMULATION_ID);
+        for (int i = 1; i <= 6; i++) {
+            RoundInputDto generator = new RoundInputDto();
+            generator.setSimulationId(SIMULATION_ID);
+            generator.setSource(SourceEnum.GENERATOR);
+            generator.setSourceName("Generator" + i);
+            generator.setValue(i % 3);
+            generators.getInputs().add(generator);
+        }
+        resultAnalyzer.onMessage(new ConsumerRecord<String, byte[]>(GameController.ROUND_INPUT_BATCH_TOPIC,
+                0, 0L, "mykey", new Gson().toJson(generators).getBytes(StandardCharsets.UTF_8) ));
+
+        RoundResultDto roundResultDto = resultAnalyzer.getRoundsResultsMap(0).get(SIMULATION_ID);
+        assertThat(roundResultDto.getNumberOfInputsReceivedForCurrentRound().get()).isEqualTo(6);
+
+        RoundInputDto player1 = new RoundInputDto();
+        player1.setSimulationId(SIMULATION_ID);
+        player1.setSource(SourceEnum.PLAYER);
+        player1.setSourceName("Player1");
+        player1.setValue(1);
+
+        RoundInputDto pe = new RoundInputDto();
+        pe.setSimulationId(SIMULATION_ID);
+        pe.setSource(SourceEnum.PREDICTION_ENGINE);
+        pe.setSourceName("PE");
+        pe.setValue(0);
+
+        for (RoundInputDto roundInput: new RoundInputDto[]{player1, pe}) {
+            ConsumerRecord consumerRecord = new ConsumerRecord<String, byte[]>(GameController.ROUND_INPUT_TOPIC,
+                    0, 0L, "mykey", new Gson().toJson(roundInput).getBytes(StandardCharsets.UTF_8) );
+            resultAnalyzer.onMessage(consumerRecord);
+        }
+
+        assertEquals(0, roundResultDto.getNumberOfInputsReceivedForCurrentRound().get());
+        assertEquals(2, roundResultDto.getResultForCurrentRound().get("Player1").intValue());
+        assertEquals(2, roundResultDto.getResultForCurrentRound().get("PE").intValue());
+    }
+
+    @Test
+    public void roundIsScoredWithTheInputsReceivedBeforeItsDeadline(){
+        int SIMULATION_ID = 2;
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSimulationId(SIMULATION_ID);
+        roundStartDto.setNumberOfPartictipants(3);
+        roundStartDto.setSeasonNumber(1);
+        roundStartDto.setRoundNumber(1);
+        resultAnalyzer.onMessage(record(GameController.ROUND_START_TOPIC, roundStartDto));
+
+        //Round 1 is complete, every participant is known
+        resultAnalyzer.onMessage(record(GameController.ROUND_INPUT_TOPIC, input(SIMULATION_ID, SourceEnum.GENERATOR, "Generator1", 7, 1, 1)));
+        resultAnalyzer.onMessage(record(GameController.ROUND_INPUT_TOPIC, input(SIMULATION_ID, SourceEnum.PLAYER, "Player1", 7, 1, 1)));
+        resultAnalyzer.onMessage(record(GameController.ROUND_INPUT_TOPIC, input(SIMULATION_ID, SourceEnum.PLAYER, "Player2", 3, 1, 1)));
+        verify(messageBus, times(1)).publish(eq(GameController.ROUND_COMPLETED_TOPIC), anyString(), any(byte[].class), any(Headers.class));
+
+        //Player2 doesn't play round 2
+        roundStartDto.setRoundNumber(2);
+        resultAnalyzer.onMessage(record(GameController.ROUND_START_TOPIC, roundStartDto));
+        resultAnalyzer.onMessage(record(GameController.ROUND_INPUT_TOPIC, input(SIMULATION_ID, SourceEnum.GENERATOR, "Generator1", 5, 1, 2)));
+        resultAnalyzer.onMessage(record(GameController.ROUND_INPUT_TOPIC, input(SIMULATION_ID, SourceEnum.PLAYER, "Player1", 5, 1, 2)));
+        verify(messageBus, times(1)).publish(eq(GameController.ROUND_COMPLETED_TOPIC), anyString(), any(byte[].class), any(Headers.class));
+
+        resultAnalyzer.onMessage(record(GameController.ROUND_DEADLINE_TOPIC, roundStartDto));
+        verify(messageBus, times(2)).publish(eq(GameController.ROUND_COMPLETED_TOPIC), anyString(), any(byte[].class), any(Headers.class));
+        RoundResultDto roundResultDto = resultAnalyzer.getRoundsResultsMap(0).get(SIMULATION_ID);
+        assertThat(roundResultDto.getResultForCurrentRound()).containsOnlyKeys("Player1");
+        assertThat(roundResultDto.getResultForCurrentRound().get("Player1")).isEqualTo(1);
+        assertThat(resultAnalyzer.getTimeoutsByParticipant()).containsOnlyKeys("Player2");
+
+        //The straggler is discarded, the round is only completed once
+        resultAnalyzer.onMessage(record(GameController.ROUND_INPUT_TOPIC, input(SIMULATION_ID, SourceEnum.PLAYER, "Player2", 5, 1, 2)));
+        resultAnalyzer.onMessage(record(GameController.ROUND_DEADLINE_TOPIC, roundStartDto));
+        verify(messageBus, times(2)).publish(eq(GameController.ROUND_COMPLETED_TOPIC), anyString(), any(byte[].class), any(Headers.class));
+        assertThat(resultAnalyzer.getLateInputsByParticipant().get("Player2").get()).isEqualTo(1);
+    }
+
+    @Test
+    public void deadlineIsOnlyPublishedForRoundsStillOpen(){
+        RoundTimer roundTimer = new RoundTimer(messageBus, 1, 64);
+        resultAnalyzer.setRoundTimer(roundTimer);
+        resultAnalyzer.setRoundDeadlineMillis(50);
+        try {
+            for (int simulationId = 10; simulationId <= 11; simulationId++) {
+                RoundStartDto roundStartDto = new RoundStartDto();
+                roundStartDto.setSimulationId(simulationId);
+                roundStartDto.setNumberOfPartictipants(1);
+                roundStartDto.setSeasonNumber(1);
+                roundStartDto.setRoundNumber(1);
+                resultAnalyzer.onMessage(keyedRecord(GameController.ROUND_START_TOPIC, simulationId, roundStartDto));
+            }
+            //Only the round of simulation 10 is completed before its deadline
+            resultAnalyzer.onMessage(keyedRecord(GameController.ROUND_INPUT_TOPIC, 10, input(10, SourceEnum.PLAYER, "Player1", 7, 1, 1)));
+
+            verify(messageBus, timeout(5_000)).publish(eq(GameController.ROUND_DEADLINE_TOPIC), eq("11"), any(byte[].class), (Headers) isNull());
+            verify(messageBus, never()).publish(eq(GameController.ROUND_DEADLINE_TOPIC), eq("10"), any(byte[].class), (Headers) isNull());
+        } finally {
+            roundTimer.destroy();
+        }
+    }
+
+    @Test
+    public void inputOfAPreviousRoundIsNotCountedInTheCurrentRound(){
+        int SIMULATION_ID = 3;
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSimulationId(SIMULATION_ID);
+        roundStartDto.setNumberOfPartictipants(2);
+        roundStartDto.setSeasonNumber(2);
+        roundStartDto.setRoundNumber(1);
+        resultAnalyzer.onMessage(record(GameController.ROUND_START_TOPIC, roundStartDto));
+
+        resultAnalyzer.onMessage(record(GameController.ROUND_INPUT_TOPIC, input(SIMULATION_ID, SourceEnum.PLAYER, "Player1", 5, 1, 4)));
+
+        assertThat(resultAnalyzer.getRoundsResultsMap(0).get(SIMULATION_ID).getNumberOfInputsReceivedForCurrentRound().get()).isEqualTo(0);
+        assertThat(resultAnalyzer.getLateInputsByParticipant().get("Player1").get()).isEqualTo(1);
+    }
+
+    @Test
+    public void tracedRoundResultCarriesTheHopOfEveryInput(){
+        int SIMULATION_ID = 4;
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSimulationId(SIMULATION_ID);
+        roundStartDto.setNumberOfPartictipants(2);
+        roundStartDto.setSeasonNumber(1);
+        roundStartDto.setRoundNumber(3);
+        roundStartDto.setStartedAtMicros(LatencyMetrics.nowMicros());
+        Headers roundStart = TraceHeaders.start(roundStartDto, "GameController");
+        resultAnalyzer.onMessage(record(GameController.ROUND_START_TOPIC, roundStartDto, roundStart));
+
+        resultAnalyzer.onMessage(record(GameController.ROUND_INPUT_TOPIC, input(SIMULATION_ID, SourceEnum.GENERATOR, "Generator1", 7, 1, 3),
+                TraceHeaders.forward(roundStart, "Generator1")));
+        resultAnalyzer.onMessage(record(GameController.ROUND_INPUT_TOPIC, input(SIMULATION_ID, SourceEnum.PLAYER, "Player1", 7, 1, 3),
+                TraceHeaders.forward(roundStart, "Player1")));
+
+        ArgumentCaptor<Headers> headers = ArgumentCaptor.forClass(Headers.class);
+        verify(messageBus).publish(eq(GameController.ROUND_COMPLETED_TOPIC), anyString(), any(byte[].class), headers.capture());
+        RoundTraceDto roundTraceDto = TraceHeaders.toTrace(headers.getValue(), "ScoreKeeper", LatencyMetrics.nowMicros());
+
+        assertThat(roundTraceDto.getSimulationId()).isEqualTo(SIMULATION_ID);
+        assertThat(roundTraceDto.getRoundNumber()).isEqualTo(3);
+        assertThat(roundTraceDto.getHops()).extracting("from").containsExactly("GameController", "Generator1", "Player1", "ResultAnalyzer");
+        assertThat(roundTraceDto.getLastParticipant()).isEqualTo("Player1");
+        assertThat(roundTraceDto.getCriticalPath()).extracting("from").containsExactly("Player1", "ResultAnalyzer");
+    }
 
+    @Test
+    public void untracedRoundResultHasNoHeaders(){
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSimulationId(5);
+        roundStartDto.setNumberOfPartictipants(1);
+        roundStartDto.setSeasonNumber(1);
+        roundStartDto.setRoundNumber(1);
+        resultAnalyzer.onMessage(record(GameController.ROUND_START_TOPIC, roundStartDto));
+        resultAnalyzer.onMessage(record(GameController.ROUND_INPUT_TOPIC, input(5, SourceEnum.PLAYER, "Player1", 7, 1, 1)));
+
+        verify(messageBus).publish(eq(GameController.ROUND_COMPLETED_TOPIC), anyString(), any(byte[].class), (Headers) isNull());
+    }
+
+    @Test
+    public void batchOfInterleavedSimulationsCompletesEveryRound(){
+        List<ConsumerRecord<String, byte[]>> batch = new ArrayList<>();
+        for (int simulationId = 6; simulationId <= 7; simulationId++) {
+            RoundStartDto roundStartDto = new RoundStartDto();
+            roundStartDto.setSimulationId(simulationId);
+            roundStartDto.setNumberOfPartictipants(2);
+            roundStartDto.setSeasonNumber(1);
+            roundStartDto.setRoundNumber(1);
+            batch.add(keyedRecord(GameController.ROUND_START_TOPIC, simulationId, roundStartDto));
+        }
+        for (int simulationId = 6; simulationId <= 7; simulationId++) {
+            batch.add(keyedRecord(GameController.ROUND_INPUT_TOPIC, simulationId, input(simulationId, SourceEnum.GENERATOR, "Generator1", 7, 1, 1)));
+        }
+        for (int simulationId = 6; simulationId <= 7; simulationId++) {
+            batch.add(keyedRecord(GameController.ROUND_INPUT_TOPIC, simulationId, input(simulationId, SourceEnum.PLAYER, "Player1", 7, 1, 1)));
+        }
+
+        resultAnalyzer.onMessages(batch);
+
+        verify(messageBus).publish(eq(GameController.ROUND_COMPLETED_TOPIC), eq("6"), any(byte[].class), (Headers) isNull());
+        verify(messageBus).publish(eq(GameController.ROUND_COMPLETED_TOPIC), eq("7"), any(byte[].class), (Headers) isNull());
+        assertThat(resultAnalyzer.getRoundsResultsMap(0).get(6).getResultForCurrentRound()).containsEntry("Player1", 1);
+        assertThat(resultAnalyzer.getRoundsResultsMap(0).get(7).getResultForCurrentRound()).containsEntry("Player1", 1);
+    }
+
+    @Test
+    public void reassignedPartitionIsRebuiltWithoutCompletingTheReplayedRoundsAgain(){
+        int SIMULATION_ID = 8;
+        Map<String, Long> assigned = new HashMap<>();
+        assigned.put(GameController.ROUND_START_TOPIC, 1L);
+        assigned.put(GameController.ROUND_INPUT_TOPIC, 2L);
+        Map<Integer, Map<String, Long>> positions = new HashMap<>();
+        positions.put(1, assigned);
+        PartitionListener.Replay replay = mock(PartitionListener.Replay.class);
+        resultAnalyzer.onPartitionsAssigned(positions, replay);
+        verify(replay).fromTime(eq(1), anyLong());
+
+        //Round 1 was completed by the previous owner of the partition
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSimulationId(SIMULATION_ID);
+        roundStartDto.setNumberOfPartictipants(2);
+        roundStartDto.setSeasonNumber(1);
+        roundStartDto.setRoundNumber(1);
+        resultAnalyzer.onMessage(partitionRecord(GameController.ROUND_START_TOPIC, 1, 0, SIMULATION_ID, roundStartDto));
+        resultAnalyzer.onMessage(partitionRecord(GameController.ROUND_INPUT_TOPIC, 1, 0, SIMULATION_ID, input(SIMULATION_ID, SourceEnum.GENERATOR, "Generator1", 7, 1, 1)));
+        resultAnalyzer.onMessage(partitionRecord(GameController.ROUND_INPUT_TOPIC, 1, 1, SIMULATION_ID, input(SIMULATION_ID, SourceEnum.PLAYER, "Player1", 7, 1, 1)));
+        verify(messageBus, never()).publish(eq(GameController.ROUND_COMPLETED_TOPIC), anyString(), any(byte[].class), any(Headers.class));
+        assertThat(resultAnalyzer.getRoundsResultsMap(1).get(SIMULATION_ID).getResultForCurrentRound()).containsEntry("Player1", 1);
+
+        //Round 2 is played on this node
+        roundStartDto.setRoundNumber(2);
+        resultAnalyzer.onMessage(partitionRecord(GameController.ROUND_START_TOPIC, 1, 1, SIMULATION_ID, roundStartDto));
+        resultAnalyzer.onMessage(partitionRecord(GameController.ROUND_INPUT_TOPIC, 1, 2, SIMULATION_ID, input(SIMULATION_ID, SourceEnum.GENERATOR, "Generator1", 3, 1, 2)));
+        resultAnalyzer.onMessage(partitionRecord(GameController.ROUND_INPUT_TOPIC, 1, 3, SIMULATION_ID, input(SIMULATION_ID, SourceEnum.PLAYER, "Player1", 3, 1, 2)));
+        verify(messageBus, times(1)).publish(eq(GameController.ROUND_COMPLETED_TOPIC), eq(String.valueOf(SIMULATION_ID)), any(byte[].class), (Headers) isNull());
+
+        //Assigned back where it was consumed up to, the state is kept
+        assigned.put(GameController.ROUND_START_TOPIC, 2L);
+        assigned.put(GameController.ROUND_INPUT_TOPIC, 4L);
+        resultAnalyzer.onPartitionsRevoked(positions.keySet());
+        resultAnalyzer.onPartitionsAssigned(positions, replay);
+        verify(replay, times(1)).fromTime(eq(1), anyLong());
+        assertThat(resultAnalyzer.getRoundsResultsMap(1)).containsKey(SIMULATION_ID);
+
+        //Consumed elsewhere meanwhile, the state is rebuilt
+        assigned.put(GameController.ROUND_INPUT_TOPIC, 6L);
+        resultAnalyzer.onPartitionsAssigned(positions, replay);
+        verify(replay, times(2)).fromTime(eq(1), anyLong());
+        assertThat(resultAnalyzer.getRoundsResultsMap(1)).isEmpty();
+    }
+
+    @Test
+    public void restartedNodeRestoresTheSnapshotAndReplaysOnlyTheInputsAfterIt() throws Exception {
+        int SIMULATION_ID = 9;
+        RoundStateSnapshots roundStateSnapshots = new RoundStateSnapshots(temporaryFolder.newFolder());
+        resultAnalyzer.setRoundStateSnapshots(roundStateSnapshots);
+        resultAnalyzer.onPartitionsAssigned(positions(0L, 0L), mock(PartitionListener.Replay.class));
+
+        //The first message of the partition is followed by a snapshot, the next one is only in the input topic
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSimulationId(SIMULATION_ID);
+        roundStartDto.setNumberOfPartictipants(3);
+        roundStartDto.setSeasonNumber(1);
+        roundStartDto.setRoundNumber(1);
+        resultAnalyzer.onMessage(partitionRecord(GameController.ROUND_START_TOPIC, 0, 0, SIMULATION_ID, roundStartDto));
+        resultAnalyzer.onMessage(partitionRecord(GameController.ROUND_INPUT_TOPIC, 0, 0, SIMULATION_ID, input(SIMULATION_ID, SourceEnum.GENERATOR, "Generator1", 7, 1, 1)));
+        assertThat(roundStateSnapshots.getNumberOfSaves()).isEqualTo(1);
+
+        ResultAnalyzer restarted = new ResultAnalyzer();
+        restarted.setMessageBus(messageBus);
+        restarted.setRoundStateSnapshots(roundStateSnapshots);
+        PartitionListener.Replay replay = mock(PartitionListener.Replay.class);
+        restarted.onPartitionsAssigned(positions(1L, 1L), replay);
+
+        verify(replay).fromOffsets(0, positions(1L, 0L).get(0));
+        verify(replay, never()).fromTime(anyInt(), anyLong());
+        assertThat(restarted.getRoundsResultsMap(0).get(SIMULATION_ID).getNumberOfParticipatns()).isEqualTo(3);
+
+        restarted.onMessage(partitionRecord(GameController.ROUND_INPUT_TOPIC, 0, 0, SIMULATION_ID, input(SIMULATION_ID, SourceEnum.GENERATOR, "Generator1", 7, 1, 1)));
+        restarted.onMessage(partitionRecord(GameController.ROUND_INPUT_TOPIC, 0, 1, SIMULATION_ID, input(SIMULATION_ID, SourceEnum.PLAYER, "Player1", 7, 1, 1)));
+        restarted.onMessage(partitionRecord(GameController.ROUND_INPUT_TOPIC, 0, 2, SIMULATION_ID, input(SIMULATION_ID, SourceEnum.PLAYER, "Player2", 3, 1, 1)));
+
+        verify(messageBus).publish(eq(GameController.ROUND_COMPLETED_TOPIC), eq(String.valueOf(SIMULATION_ID)), any(byte[].class), (Headers) isNull());
+        assertThat(restarted.getRoundsResultsMap(0).get(SIMULATION_ID).getResultForCurrentRound()).containsEntry("Player1", 1).containsEntry("Player2", 0);
+    }
+
+    private static Map<Integer, Map<String, Long>> positions(long roundStartPosition, long roundInputPosition) {
+        Map<String, Long> topicPositions = new HashMap<>();
+        topicPositions.put(GameController.ROUND_START_TOPIC, roundStartPosition);
+        topicPositions.put(GameController.ROUND_INPUT_TOPIC, roundInputPosition);
+        Map<Integer, Map<String, Long>> positions = new HashMap<>();
+        positions.put(0, topicPositions);
+        return positions;
+    }
+
+    private static RoundInputDto input(int simulationId, SourceEnum source, String sourceName, int value, int seasonNumber, int roundNumber) {
+        RoundInputDto roundInputDto = new RoundInputDto();
+        roundInputDto.setSimulationId(simulationId);
+        roundInputDto.setSource(source);
+        roundInputDto.setSourceName(sourceName);
+        roundInputDto.setValue(value);
+        roundInputDto.setSeasonNumber(seasonNumber);
+        roundInputDto.setRoundNumber(roundNumber);
+        return roundInputDto;
+    }
+
+    private static ConsumerRecord<String, byte[]> record(String topic, Object message) {
+        return new ConsumerRecord<>(topic, 0, 0L, "mykey", new Gson().toJson(message).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ConsumerRecord<String, byte[]> keyedRecord(String topic, int simulationId, Object message) {
+        return new ConsumerRecord<>(topic, 0, 0L, String.valueOf(simulationId), new Gson().toJson(message).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ConsumerRecord<String, byte[]> partitionRecord(String topic, int partition, long offset, int simulationId, Object message) {
+        return new ConsumerRecord<>(topic, partition, offset, String.valueOf(simulationId), new Gson().toJson(message).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ConsumerRecord<String, byte[]> record(String topic, Object message, Headers headers) {
+        return new ConsumerRecord<>(topic, 0, 0L, ConsumerRecord.NO_TIMESTAMP, TimestampType.NO_TIMESTAMP_TYPE, (long) ConsumerRecord.NULL_CHECKSUM,
+                ConsumerRecord.NULL_SIZE, ConsumerRecord.NULL_SIZE, "mykey", new Gson().toJson(message).getBytes(StandardCharsets.UTF_8), headers);
+    }
 }
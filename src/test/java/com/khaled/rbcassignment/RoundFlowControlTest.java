@@ -0,0 +1,111 @@
+package com.khaled.rbcassignment;
+
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoundFlowControlTest {
+
+    @Test
+    public void roundStartsAreDeferredPastMaxRoundsInFlight() {
+        RoundFlowControl roundFlowControl = new RoundFlowControl(3, 2);
+        List<Integer> started = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            int round = i;
+            roundFlowControl.start(() -> started.add(round));
+        }
+        assertThat(started).containsExactly(0, 1, 2);
+        assertThat(roundFlowControl.getRoundsInFlight()).isEqualTo(3);
+        assertThat(roundFlowControl.getDeferred()).isEqualTo(2);
+        assertThat(roundFlowControl.isPaused()).isTrue();
+
+        //Still above the resume threshold
+        roundFlowControl.roundStored();
+        assertThat(started).containsExactly(0, 1, 2);
+
+        //Under the resume threshold, resumes in the start order up to maxRoundsInFlight
+        roundFlowControl.roundStored();
+        assertThat(started).containsExactly(0, 1, 2, 3, 4);
+        assertThat(roundFlowControl.isPaused()).isFalse();
+        assertThat(roundFlowControl.getRoundsInFlight()).isEqualTo(3);
+    }
+
+    @Test
+    public void newRoundStartsWaitBehindTheDeferredOnes() {
+        RoundFlowControl roundFlowControl = new RoundFlowControl(3, 1);
+        List<Integer> started = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int round = i;
+            roundFlowControl.start(() -> started.add(round));
+        }
+        roundFlowControl.roundStored();
+        assertThat(started).containsExactly(0, 1, 2);
+
+        //A slot is free but round 3 is still deferred
+        roundFlowControl.start(() -> started.add(4));
+        assertThat(started).containsExactly(0, 1, 2);
+
+        roundFlowControl.roundStored();
+        roundFlowControl.roundStored();
+        assertThat(started).containsExactly(0, 1, 2, 3, 4);
+
+        Map<String, Number> metrics = new HashMap<>();
+        for (Metric<?> metric : roundFlowControl.metrics()) {
+            metrics.put(metric.getName(), metric.getValue());
+        }
+        assertThat(metrics.get("roundFlowControl.deferredTotal").longValue()).isEqualTo(2);
+        assertThat(metrics.get("roundFlowControl.pauses").longValue()).isEqualTo(1);
+        assertThat(metrics.get("roundFlowControl.roundsInFlight").longValue()).isEqualTo(2);
+    }
+
+    @Test
+    public void concurrentRoundStartsNeverGoPastMaxRoundsInFlight() throws Exception {
+        RoundFlowControl roundFlowControl = new RoundFlowControl(100, 50);
+        AtomicInteger started = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    roundFlowControl.start(started::incrementAndGet);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(started.get()).isEqualTo(100);
+        assertThat(roundFlowControl.getRoundsInFlight()).isEqualTo(100);
+        assertThat(roundFlowControl.getDeferred()).isEqualTo(8000 - 100);
+    }
+
+    @Test
+    public void noLimitStartsEveryRound() {
+        RoundFlowControl roundFlowControl = new RoundFlowControl();
+        List<Integer> started = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int round = i;
+            roundFlowControl.start(() -> started.add(round));
+        }
+        assertThat(started).hasSize(100);
+        assertThat(roundFlowControl.isPaused()).isFalse();
+    }
+}
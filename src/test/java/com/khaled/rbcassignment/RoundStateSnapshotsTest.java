@@ -0,0 +1,56 @@
+package com.khaled.rbcassignment;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoundStateSnapshotsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void latestSnapshotOfEveryPartitionIsLoaded() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        RoundStateSnapshots snapshots = new RoundStateSnapshots(directory);
+        assertThat(snapshots.load(0)).isNull();
+
+        snapshots.save(snapshot(0, 10L, 1));
+        snapshots.save(snapshot(0, 20L, 2));
+        snapshots.save(snapshot(1, 5L, 3));
+
+        //A restarted node reads the snapshots of the previous one
+        RoundStateSnapshots restarted = new RoundStateSnapshots(directory);
+        RoundStateSnapshotDto partition0 = restarted.load(0);
+        assertThat(partition0.getPositions()).containsEntry(GameController.ROUND_INPUT_TOPIC, 20L);
+        assertThat(partition0.getRounds()).hasSize(1);
+        assertThat(partition0.getRounds().get(0).getSimulationId()).isEqualTo(2);
+        assertThat(partition0.getRounds().get(0).getPlayersInputsForCurrentRound()).extracting("sourceName").containsExactly("Player1");
+        assertThat(restarted.load(1).getRounds().get(0).getSimulationId()).isEqualTo(3);
+        assertThat(snapshots.getNumberOfSaves()).isEqualTo(3);
+        assertThat(directory.list()).containsOnly("partition-0.json", "partition-1.json");
+    }
+
+    private static RoundStateSnapshotDto snapshot(int partition, long roundInputPosition, int simulationId) {
+        RoundInputDto roundInputDto = new RoundInputDto();
+        roundInputDto.setSimulationId(simulationId);
+        roundInputDto.setSource(SourceEnum.PLAYER);
+        roundInputDto.setSourceName("Player1");
+        roundInputDto.setValue(4);
+        RoundResultDto roundResultDto = new RoundResultDto();
+        roundResultDto.setSimulationId(simulationId);
+        roundResultDto.getPlayersInputsForCurrentRound().add(roundInputDto);
+        roundResultDto.getNumberOfInputsReceivedForCurrentRound().set(1);
+
+        RoundStateSnapshotDto snapshot = new RoundStateSnapshotDto();
+        snapshot.setPartition(partition);
+        snapshot.setTakenAtMillis(System.currentTimeMillis());
+        snapshot.getPositions().put(GameController.ROUND_INPUT_TOPIC, roundInputPosition);
+        snapshot.getRounds().add(roundResultDto);
+        return snapshot;
+    }
+}
@@ -0,0 +1,82 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.common.header.Headers;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.kafka.listener.MessageListener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoundTimerTest {
+
+    private RoundTimer roundTimer;
+
+    @After
+    public void tearDown(){
+        roundTimer.destroy();
+    }
+
+    @Test
+    public void messagesArePublishedAfterTheirDelay() throws Exception {
+        int numberOfMessages = 2_000;
+        RecordingMessageBus messageBus = new RecordingMessageBus(numberOfMessages);
+        //Small wheel so the longest delays take several turns of the wheel
+        roundTimer = new RoundTimer(messageBus, 5, 8);
+
+        Map<String, Long> deadlinesNanos = new HashMap<>();
+        for (int i = 0; i < numberOfMessages; i++) {
+            long delayMillis = i % 200;
+            String key = String.valueOf(i);
+            deadlinesNanos.put(key, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+            roundTimer.schedule(GameController.ROUND_START_TOPIC, key, new byte[0], delayMillis);
+        }
+
+        assertThat(messageBus.published.await(5, TimeUnit.SECONDS)).isTrue();
+        deadlinesNanos.forEach((key, deadline) -> assertThat(messageBus.publishedAtNanos.get(key)).isGreaterThanOrEqualTo(deadline));
+        assertThat(roundTimer.getPending()).isEqualTo(0);
+
+        Map<String, Number> metrics = new HashMap<>();
+        for (Metric<?> metric : roundTimer.metrics()) {
+            metrics.put(metric.getName(), metric.getValue());
+        }
+        assertThat(metrics.get("roundTimer.fired").longValue()).isEqualTo(numberOfMessages);
+        assertThat(metrics.get("roundTimer.lag.maxMillis").doubleValue()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    public void messagesWithoutDelayDontWaitForTheNextTick() throws Exception {
+        RecordingMessageBus messageBus = new RecordingMessageBus(1);
+        //Tick longer than the test timeout
+        roundTimer = new RoundTimer(messageBus, 60_000, 8);
+
+        roundTimer.schedule(GameController.ROUND_START_TOPIC, "1", new byte[0], 0);
+
+        assertThat(messageBus.published.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static class RecordingMessageBus implements MessageBus {
+        private final Map<String, Long> publishedAtNanos = new ConcurrentHashMap<>();
+        private final CountDownLatch published;
+
+        RecordingMessageBus(int expectedMessages) {
+            this.published = new CountDownLatch(expectedMessages);
+        }
+
+        @Override
+        public void publish(String topic, String key, byte[] message, Headers headers) {
+            publishedAtNanos.put(key, System.nanoTime());
+            published.countDown();
+        }
+
+        @Override
+        public void subscribe(String groupId, MessageListener<String, byte[]> listener, String... topics) {
+        }
+    }
+}
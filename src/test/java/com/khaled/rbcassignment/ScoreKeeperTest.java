@@ -0,0 +1,231 @@
+package com.khaled.rbcassignment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class ScoreKeeperTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    ScoreKeeper scoreKeeper;
+
+    @Before
+    public void setup() throws Exception {
+        RoundHistoryStore roundHistoryStore = new TieredRoundHistoryStore(1024 * 1024, temporaryFolder.newFolder());
+        for (int seasonNumber = 1; seasonNumber <= 3; seasonNumber++) {
+            for (int roundNumber = 1; roundNumber <= 10; roundNumber++) {
+                RoundResultDto roundResultDto = new RoundResultDto();
+                roundResultDto.setSimulationId(1);
+                roundResultDto.setSeasonNumber(seasonNumber);
+                roundResultDto.setRoundNumber(roundNumber);
+                roundResultDto.getResultForCurrentRound().put("Player1", 1);
+                roundHistoryStore.append(roundResultDto);
+            }
+        }
+
+        scoreKeeper = new ScoreKeeper();
+        scoreKeeper.setRoundHistoryStore(roundHistoryStore);
+    }
+
+    @Test
+    public void roundsArePagedWithinTheRequestedRange() throws Exception {
+        RoundPageDto firstPage = scoreKeeper.getSimulationRounds(1, null, 8, 1, 6, 2, 5).getBody();
+
+        assertThat(firstPage.getRounds()).hasSize(8);
+        assertThat(firstPage.getRounds().get(0).getSeasonNumber()).isEqualTo(1);
+        assertThat(firstPage.getRounds().get(0).getRoundNumber()).isEqualTo(6);
+        assertThat(firstPage.getNextCursor()).isEqualTo(13);
+
+        RoundPageDto secondPage = scoreKeeper.getSimulationRounds(1, firstPage.getNextCursor(), 8, 1, 6, 2, 5).getBody();
+
+        assertThat(secondPage.getRounds()).hasSize(2);
+        assertThat(secondPage.getRounds().get(1).getSeasonNumber()).isEqualTo(2);
+        assertThat(secondPage.getRounds().get(1).getRoundNumber()).isEqualTo(5);
+        assertThat(secondPage.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void pageEndingOnTheLastRoundOfTheRangeHasNoNextCursor() {
+        RoundPageDto page = scoreKeeper.getSimulationRounds(1, null, 10, 1, 6, 2, 5).getBody();
+
+        assertThat(page.getRounds()).hasSize(10);
+        assertThat(page.getNextCursor()).isNull();
+
+        assertThat(scoreKeeper.getSimulationRounds(1, null, 10, 3, 1, 3, 10).getBody().getNextCursor()).isNull();
+    }
+
+    @Test
+    public void batchOfRoundsIsScoredAndStoredTogether() {
+        List<ConsumerRecord<String, byte[]>> batch = new ArrayList<>();
+        for (int simulationId = 2; simulationId <= 3; simulationId++) {
+            for (int roundNumber = 1; roundNumber <= 3; roundNumber++) {
+                RoundResultDto roundResultDto = new RoundResultDto();
+                roundResultDto.setSimulationId(simulationId);
+                roundResultDto.setSeasonNumber(1);
+                roundResultDto.setRoundNumber(roundNumber);
+                roundResultDto.getResultForCurrentRound().put("Player1", roundNumber);
+                roundResultDto.getResultForCurrentRound().put("Player2", 0);
+                batch.add(record(GameController.ROUND_COMPLETED_TOPIC, simulationId, roundResultDto));
+            }
+        }
+        SimulationDto simulationDto = new SimulationDto();
+        simulationDto.setSimulationId(2);
+        batch.add(record(GameController.SIMULATION_COMPLETED_TOPIC, 2, simulationDto));
+
+        scoreKeeper.onMessages(batch);
+
+        assertThat(scoreKeeper.getRoundHistoryStore().countRounds(2)).isEqualTo(3);
+        assertThat(scoreKeeper.getRoundHistoryStore().countRounds(3)).isEqualTo(3);
+        assertThat(scoreKeeper.getSimulationRounds(3, null, 10, 1, 1, 1, 3).getBody().getRounds()).extracting("roundNumber").containsExactly(1, 2, 3);
+        SimulationScoreDto simulation2 = scoreKeeper.getAllSimulationsScores().get(2);
+        assertThat(simulation2.getStatus()).isEqualTo(StatusEnum.COMPLETE);
+        assertThat(simulation2.getPlayersScore().get("Player1").get()).isEqualTo(6);
+        assertThat(simulation2.getPlayersScore().get("Player2").get()).isEqualTo(0);
+        assertThat(scoreKeeper.getAllSimulationsScores().get(3).getStatus()).isEqualTo(StatusEnum.RUNNING);
+    }
+
+    @Test
+    public void roundCompletedTwiceIsScoredAndStoredOnce() {
+        RoundResultDto roundResultDto = new RoundResultDto();
+        roundResultDto.setSimulationId(4);
+        roundResultDto.setSeasonNumber(1);
+        roundResultDto.setRoundNumber(1);
+        roundResultDto.getResultForCurrentRound().put("Player1", 2);
+        ConsumerRecord<String, byte[]> roundCompleted = record(GameController.ROUND_COMPLETED_TOPIC, 4, roundResultDto);
+
+        scoreKeeper.onMessage(roundCompleted);
+        List<ConsumerRecord<String, byte[]>> batch = new ArrayList<>();
+        batch.add(roundCompleted);
+        scoreKeeper.onMessages(batch);
+
+        assertThat(scoreKeeper.getRoundHistoryStore().countRounds(4)).isEqualTo(1);
+        assertThat(scoreKeeper.getAllSimulationsScores().get(4).getPlayersScore().get("Player1").get()).isEqualTo(2);
+    }
+
+    @Test
+    public void storedRoundsFreeTheirRoundFlowControlSlot() {
+        RoundFlowControl roundFlowControl = new RoundFlowControl(1, 1);
+        scoreKeeper.setRoundFlowControl(roundFlowControl);
+        List<Integer> started = new ArrayList<>();
+        roundFlowControl.start(() -> started.add(1));
+        roundFlowControl.start(() -> started.add(2));
+        roundFlowControl.start(() -> started.add(3));
+
+        RoundResultDto roundResultDto = new RoundResultDto();
+        roundResultDto.setSimulationId(8);
+        roundResultDto.setSeasonNumber(1);
+        roundResultDto.setRoundNumber(1);
+        roundResultDto.getResultForCurrentRound().put("Player1", 1);
+        ConsumerRecord<String, byte[]> roundCompleted = record(GameController.ROUND_COMPLETED_TOPIC, 8, roundResultDto);
+        scoreKeeper.onMessage(roundCompleted);
+        assertThat(started).containsExactly(1, 2);
+
+        //A round completed twice is stored once and frees one slot
+        scoreKeeper.onMessage(roundCompleted);
+        assertThat(started).containsExactly(1, 2);
+        assertThat(roundFlowControl.getRoundsInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    public void roundCompletedAgainAfterTheSimulationIsCompletedIsDropped() {
+        List<ConsumerRecord<String, byte[]>> roundsCompleted = new ArrayList<>();
+        for (int roundNumber = 1; roundNumber <= 2; roundNumber++) {
+            RoundResultDto roundResultDto = new RoundResultDto();
+            roundResultDto.setSimulationId(9);
+            roundResultDto.setSeasonNumber(1);
+            roundResultDto.setRoundNumber(roundNumber);
+            roundResultDto.getResultForCurrentRound().put("Player1", 1);
+            roundsCompleted.add(record(GameController.ROUND_COMPLETED_TOPIC, 9, roundResultDto));
+            scoreKeeper.onMessage(roundsCompleted.get(roundNumber - 1));
+        }
+        SimulationDto simulationDto = new SimulationDto();
+        simulationDto.setSimulationId(9);
+        scoreKeeper.onMessage(record(GameController.SIMULATION_COMPLETED_TOPIC, 9, simulationDto));
+
+        assertThat(scoreKeeper.getLastStoredRounds()).doesNotContainKey(9);
+
+        //The first round would reset the scores of the simulation
+        scoreKeeper.onMessage(roundsCompleted.get(0));
+        scoreKeeper.onMessages(roundsCompleted);
+
+        assertThat(scoreKeeper.getRoundHistoryStore().countRounds(9)).isEqualTo(2);
+        assertThat(scoreKeeper.getAllSimulationsScores().get(9).getStatus()).isEqualTo(StatusEnum.COMPLETE);
+        assertThat(scoreKeeper.getAllSimulationsScores().get(9).getPlayersScore().get("Player1").get()).isEqualTo(2);
+        assertThat(scoreKeeper.getLastStoredRounds()).doesNotContainKey(9);
+    }
+
+    @Test
+    public void leaderboardsOfTheOldestCompletedSimulationsAreDropped() {
+        scoreKeeper.setMaxCompletedLeaderboards(1);
+        for (int simulationId = 5; simulationId <= 7; simulationId++) {
+            RoundResultDto roundResultDto = new RoundResultDto();
+            roundResultDto.setSimulationId(simulationId);
+            roundResultDto.setSeasonNumber(1);
+            roundResultDto.setRoundNumber(1);
+            roundResultDto.getResultForCurrentRound().put("Player1", 1);
+            scoreKeeper.onMessage(record(GameController.ROUND_COMPLETED_TOPIC, simulationId, roundResultDto));
+        }
+        for (int simulationId = 5; simulationId <= 6; simulationId++) {
+            SimulationDto simulationDto = new SimulationDto();
+            simulationDto.setSimulationId(simulationId);
+            scoreKeeper.onMessage(record(GameController.SIMULATION_COMPLETED_TOPIC, simulationId, simulationDto));
+        }
+
+        assertThat(scoreKeeper.getLeaderboard(5, 10).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(scoreKeeper.getLeaderboard(6, 10).getStatusCode()).isEqualTo(HttpStatus.OK);
+        //Running simulation
+        assertThat(scoreKeeper.getLeaderboard(7, 10).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(scoreKeeper.getAllSimulationsScores().get(5).getPlayersScore().get("Player1").get()).isEqualTo(1);
+    }
+
+    @Test
+    public void scoresAreRestoredFromTheRoundHistory() {
+        scoreKeeper.restoreScores();
+
+        SimulationScoreDto simulation1 = scoreKeeper.getAllSimulationsScores().get(1);
+        assertThat(simulation1.getStatus()).isEqualTo(StatusEnum.COMPLETE);
+        assertThat(simulation1.getPlayersScore().get("Player1").get()).isEqualTo(30);
+        assertThat(scoreKeeper.getLeaderboard(1, 10).getBody()).extracting("playerName", "score").containsExactly(tuple("Player1", 30));
+        assertThat(scoreKeeper.getLastStoredRounds()).isEmpty();
+
+        //Rounds already in the history are not scored twice
+        RoundResultDto roundResultDto = new RoundResultDto();
+        roundResultDto.setSimulationId(1);
+        roundResultDto.setSeasonNumber(3);
+        roundResultDto.setRoundNumber(10);
+        roundResultDto.getResultForCurrentRound().put("Player1", 1);
+        scoreKeeper.onMessage(record(GameController.ROUND_COMPLETED_TOPIC, 1, roundResultDto));
+
+        assertThat(simulation1.getPlayersScore().get("Player1").get()).isEqualTo(30);
+        assertThat(scoreKeeper.getRoundHistoryStore().countRounds(1)).isEqualTo(30);
+    }
+
+    private ConsumerRecord<String, byte[]> record(String topic, int simulationId, Object message) {
+        return new ConsumerRecord<>(topic, 0, 0L, String.valueOf(simulationId), scoreKeeper.getMessageCodecs().encode(topic, message));
+    }
+
+    @Test
+    public void simulationIsStreamedAsAJsonArray() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        scoreKeeper.getSimulationById(1).getBody().writeTo(outputStream);
+
+        RoundResultViewDto[] rounds = new ObjectMapper().readValue(outputStream.toByteArray(), RoundResultViewDto[].class);
+
+        assertThat(rounds).hasSize(30);
+        assertThat(rounds[29].getSeasonNumber()).isEqualTo(3);
+        assertThat(rounds[29].getResultForCurrentRound()).containsEntry("Player1", 1);
+    }
+}
@@ -0,0 +1,76 @@
+package com.khaled.rbcassignment;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ScoringEngineTest {
+
+    @Test
+    public void flatTableMatchesNaiveScoring(){
+        assertMatchesNaiveScoring(new ScoringEngine(), 0, 100);
+    }
+
+    @Test
+    public void hashTableMatchesNaiveScoring(){
+        assertMatchesNaiveScoring(new ScoringEngine(Integer.MIN_VALUE, Integer.MAX_VALUE, 1 << 20), -1000, 1000);
+    }
+
+    @Test
+    public void generatorsValuesOutsideTheRangeAreStillScored(){
+        ScoringEngine scoringEngine = new ScoringEngine(0, 100, 1 << 20);
+
+        int[] scores = scoringEngine.score(new int[]{5, 5, 150, -3, 99}, new int[]{5, 150, -3, 99, 100, 0});
+
+        assertThat(scores).containsExactly(2, 1, 1, 1, 0, 0);
+    }
+
+    @Test
+    public void resultAnalyzerScoresEveryPlayer(){
+        ResultAnalyzer resultAnalyzer = new ResultAnalyzer();
+        List<RoundInputDto> generators = new ArrayList<>();
+        List<RoundInputDto> players    = new ArrayList<>();
+        for (int value : new int[]{1, 2, 2, 4, 5, 6}) {
+            generators.add(input(SourceEnum.GENERATOR, "Generator" + value, value));
+        }
+        players.add(input(SourceEnum.PLAYER, "Player1", 2));
+        players.add(input(SourceEnum.PLAYER, "Player2", 3));
+        players.add(input(SourceEnum.PREDICTION_ENGINE, "PredictionEngine", 6));
+
+        Map results = resultAnalyzer.calculateMatchPoints(generators, players);
+
+        assertThat(results).containsEntry("Player1", 2).containsEntry("Player2", 0).containsEntry("PredictionEngine", 1);
+    }
+
+    private void assertMatchesNaiveScoring(ScoringEngine scoringEngine, int minValue, int maxValue) {
+        Random random = new Random(7);
+        ResultAnalyzer resultAnalyzer = new ResultAnalyzer();
+        for (int round = 0; round < 100; round++) {
+            int[] generatorsValues = random.ints(6, minValue, maxValue).toArray();
+            int[] playersValues    = random.ints(500, minValue, maxValue).toArray();
+            List<RoundInputDto> generators = new ArrayList<>();
+            for (int value : generatorsValues) {
+                generators.add(input(SourceEnum.GENERATOR, "Generator", value));
+            }
+
+            int[] scores = scoringEngine.score(generatorsValues, playersValues);
+
+            for (int i = 0; i < playersValues.length; i++) {
+                assertThat(scores[i]).isEqualTo(resultAnalyzer.countMatches(playersValues[i], generators));
+            }
+        }
+    }
+
+    private RoundInputDto input(SourceEnum source, String sourceName, int value) {
+        RoundInputDto roundInputDto = new RoundInputDto();
+        roundInputDto.setSource(source);
+        roundInputDto.setSourceName(sourceName);
+        roundInputDto.setValue(value);
+        return roundInputDto;
+    }
+}
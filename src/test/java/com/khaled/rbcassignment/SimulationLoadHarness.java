@@ -0,0 +1,233 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.rule.KafkaEmbedded;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the whole application against an embedded Kafka broker, no outside service is needed.
+ *
+ * Starts the broker and the application, starts the simulations through POST /simulations (all of them
+ * run concurrently), then reports every reportSeconds and once every round is stored by the ScoreKeeper:
+ * rounds/sec, round latency percentiles (LatencyMetrics), the lag of every consumer group and the heap use.
+ *
+ * Run with the test classpath, settings are key=value arguments:
+ *      mvn -Ploadtest test-compile exec:exec -Dload.args="simulations=100 players=1000 rounds=100"
+ *
+ *  simulations (20), players (100), seasons (2), rounds (50), intervalBetweenRounds (0), intervalBetweenSeasons (0),
+ *  predictionStrategy (frequency), partitions (4), reportSeconds (5), timeoutSeconds (600)
+ *
+ * Exits with 1 when the rounds are not all stored before the timeout.
+ */
+public class SimulationLoadHarness {
+
+    private static final String[] TOPICS = {GameController.ROOT_SEED_TOPIC, GameController.SIMULATION_START_TOPIC, GameController.SIMULATION_START_BATCH_TOPIC,
+            GameController.ROUND_START_TOPIC, GameController.ROUND_INPUT_TOPIC, GameController.ROUND_INPUT_BATCH_TOPIC, GameController.ROUND_COMPLETED_TOPIC,
+            GameController.ROUND_INPUT_AFTER_THE_FACT_TOPIC, GameController.ROUND_INPUT_AFTER_THE_FACT_BATCH_TOPIC, GameController.ROUND_DEADLINE_TOPIC,
+            GameController.SIMULATION_COMPLETED_TOPIC};
+
+    private final Map<String, String> settings;
+    private final String brokers;
+    private final KafkaMessageBus messageBus;
+    private final LatencyMetrics latencyMetrics;
+    private final String simulationsUrl;
+    private final Map<String, KafkaConsumer<byte[], byte[]>> lagConsumers = new HashMap<>();
+    private final Map<String, Long> maxLagByGroup = new TreeMap<>();
+    private long maxHeapUsed;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        for (String arg : args) {
+            String[] setting = arg.split("=", 2);
+            settings.put(setting[0], setting.length > 1 ? setting[1] : "");
+        }
+
+        KafkaEmbedded kafka = new KafkaEmbedded(1, true, intSetting(settings, "partitions", 4), TOPICS);
+        kafka.before();
+        File historyDirectory = Files.createTempDirectory("load-round-history").toFile();
+        ConfigurableApplicationContext context = null;
+        boolean completed = false;
+        try {
+            context = new SpringApplicationBuilder(RbcAssignmentApplication.class).bannerMode(Banner.Mode.OFF).run(
+                    "--kafka.server=" + kafka.getBrokersAsString(),
+                    "--messageBus.type=kafka",
+                    "--server.port=0",
+                    "--numberOfPlayers=" + intSetting(settings, "players", 100),
+                    "--roundHistory.store=tiered",
+                    "--roundHistory.spillDirectory=" + historyDirectory,
+                    "--tracing.sampleRate=0",
+                    "--logging.level.com.khaled.rbcassignment=warn",
+                    "--logging.level.com.khaled.rbcassignment.ScoreKeeper=warn");
+            completed = new SimulationLoadHarness(context, kafka.getBrokersAsString(), settings).run();
+        } finally {
+            if(context != null){
+                context.close();
+            }
+            kafka.after();
+        }
+        System.exit(completed ? 0 : 1);
+    }
+
+    SimulationLoadHarness(ConfigurableApplicationContext context, String brokers, Map<String, String> settings) {
+        this.settings       = settings;
+        this.brokers        = brokers;
+        this.messageBus     = (KafkaMessageBus) context.getBean(MessageBus.class);
+        this.latencyMetrics = context.getBean(LatencyMetrics.class);
+        this.simulationsUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/simulations";
+    }
+
+    boolean run() throws InterruptedException {
+        int simulations  = intSetting(settings, "simulations", 20);
+        int seasons      = intSetting(settings, "seasons", 2);
+        int rounds       = intSetting(settings, "rounds", 50);
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(intSetting(settings, "timeoutSeconds", 600));
+        long reportNanos  = TimeUnit.SECONDS.toNanos(intSetting(settings, "reportSeconds", 5));
+        long expectedRounds = (long) simulations * seasons * rounds;
+
+        //Consumers start from the latest offset, don't publish before they are assigned their partitions
+        long assignmentDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (!messageBus.isAssigned() && System.nanoTime() < assignmentDeadline) {
+            Thread.sleep(100);
+        }
+
+        System.out.printf("%d simulations x %d seasons x %d rounds, %s players%n", simulations, seasons, rounds, setting(settings, "players", "100"));
+        RestTemplate restTemplate = new RestTemplate();
+        long start = System.nanoTime();
+        for (int i = 0; i < simulations; i++) {
+            Map<String, Object> simulation = new HashMap<>();
+            simulation.put("numberOfSeasons", seasons);
+            simulation.put("numberOfRounds", rounds);
+            simulation.put("intervalBetweenSeasons", intSetting(settings, "intervalBetweenSeasons", 0));
+            simulation.put("intervalBetweenRounds", intSetting(settings, "intervalBetweenRounds", 0));
+            simulation.put("predictionStrategy", setting(settings, "predictionStrategy", PredictionStrategies.FREQUENCY));
+            restTemplate.postForEntity(simulationsUrl, simulation, Void.class);
+        }
+
+        long roundsStored = 0;
+        long lastReport = start;
+        long lastRoundsStored = 0;
+        double peakRoundsPerSecond = 0;
+        while (roundsStored < expectedRounds && System.nanoTime() - start < timeoutNanos) {
+            Thread.sleep(Math.min(200, TimeUnit.NANOSECONDS.toMillis(reportNanos)));
+            roundsStored = roundsStored();
+            long now = System.nanoTime();
+            sampleHeap();
+            if(now - lastReport >= reportNanos){
+                double roundsPerSecond = (roundsStored - lastRoundsStored) / seconds(now - lastReport);
+                peakRoundsPerSecond = Math.max(peakRoundsPerSecond, roundsPerSecond);
+                long lag = sampleLag();
+                System.out.printf("%7.1fs %10d/%d rounds %10.1f rounds/s   p99 %9.1f ms   lag %8d   heap %6d MB%n", seconds(now - start), roundsStored, expectedRounds,
+                        roundsPerSecond, millis(storedLatency().getValueAtPercentile(99)), lag, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20);
+                lastReport = now;
+                lastRoundsStored = roundsStored;
+            }
+        }
+        double elapsedSeconds = seconds(System.nanoTime() - start);
+        sampleLag();
+
+        System.out.println();
+        System.out.printf("Rounds stored         %d/%d in %.1f s%n", roundsStored, expectedRounds, elapsedSeconds);
+        System.out.printf("Sustained rounds/s    %.1f (peak %.1f over %s s)%n", roundsStored / elapsedSeconds, peakRoundsPerSecond, setting(settings, "reportSeconds", "5"));
+        report("Round completed", latencyMetrics.getHistograms(LatencyMetrics.ROUND_COMPLETED).get(LatencyMetrics.ALL_PARTICIPANTS));
+        report("Round stored", storedLatency());
+        System.out.println("Max consumer lag      " + maxLagByGroup);
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+        System.gc();
+        System.out.printf("Heap                  max used %d MB, live after GC %d MB, GC time %d ms%n", maxHeapUsed >> 20,
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20, gcMillis);
+
+        lagConsumers.values().forEach(KafkaConsumer::close);
+        return roundsStored >= expectedRounds;
+    }
+
+    private long roundsStored() {
+        return storedLatency().getCount();
+    }
+
+    private LatencyHistogram storedLatency() {
+        return latencyMetrics.getHistograms(LatencyMetrics.SCORE_KEEPER).get(LatencyMetrics.ALL_PARTICIPANTS);
+    }
+
+    private void sampleHeap() {
+        maxHeapUsed = Math.max(maxHeapUsed, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+    }
+
+    /**
+     * Lag of every consumer group: end offsets of the topics it reads minus its committed offsets
+     * @return total lag
+     */
+    private long sampleLag() {
+        long totalLag = 0;
+        for (Map.Entry<String, List<String>> group : messageBus.getTopicsByGroup().entrySet()) {
+            KafkaConsumer<byte[], byte[]> consumer = lagConsumers.computeIfAbsent(group.getKey(), this::lagConsumer);
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (String topic : group.getValue()) {
+                for (PartitionInfo partitionInfo : consumer.partitionsFor(topic)) {
+                    partitions.add(new TopicPartition(topic, partitionInfo.partition()));
+                }
+            }
+            long lag = 0;
+            for (Map.Entry<TopicPartition, Long> endOffset : consumer.endOffsets(partitions).entrySet()) {
+                OffsetAndMetadata committed = consumer.committed(endOffset.getKey());
+                lag += endOffset.getValue() - (committed == null ? 0 : committed.offset());
+            }
+            maxLagByGroup.merge(group.getKey(), lag, Math::max);
+            totalLag += lag;
+        }
+        return totalLag;
+    }
+
+    private KafkaConsumer<byte[], byte[]> lagConsumer(String groupId) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        return new KafkaConsumer<>(props);
+    }
+
+    private static void report(String stage, LatencyHistogram histogram) {
+        System.out.printf("%-21s p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, max %.1f ms%n", stage + " latency",
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMax()));
+    }
+
+    private static String setting(Map<String, String> settings, String name, String defaultValue) {
+        return settings.getOrDefault(name, defaultValue);
+    }
+
+    private static int intSetting(Map<String, String> settings, String name, int defaultValue) {
+        return Integer.parseInt(setting(settings, name, String.valueOf(defaultValue)));
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,60 @@
+package com.khaled.rbcassignment;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TieredRoundHistoryStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void completedSimulationsAreSpilledAndReloaded() throws Exception {
+        TieredRoundHistoryStore store = new TieredRoundHistoryStore(1_000, temporaryFolder.newFolder());
+
+        appendRounds(store, 1, 20);
+        store.simulationCompleted(1);
+        appendRounds(store, 2, 20);
+
+        assertThat(store.getNumberOfSpills()).isEqualTo(1);
+        assertThat(store.getMemoryTierBytes()).isLessThanOrEqualTo(1_000);
+
+        List<RoundResultDto> rounds = store.getRounds(1);
+
+        assertThat(store.getNumberOfReloads()).isEqualTo(1);
+        assertThat(rounds).hasSize(20);
+        for (int i = 0; i < rounds.size(); i++) {
+            assertThat(rounds.get(i).getRoundNumber()).isEqualTo(i + 1);
+            assertThat(rounds.get(i).getResultForCurrentRound()).containsEntry("Player1", i % 3);
+        }
+    }
+
+    @Test
+    public void runningSimulationsStayInMemory() throws Exception {
+        TieredRoundHistoryStore store = new TieredRoundHistoryStore(500, temporaryFolder.newFolder());
+
+        appendRounds(store, 1, 20);
+        appendRounds(store, 2, 20);
+
+        assertThat(store.getNumberOfSpills()).isZero();
+        assertThat(store.getRounds(1)).hasSize(20);
+        assertThat(store.getRounds(2)).hasSize(20);
+        assertThat(store.getRounds(3)).isEmpty();
+    }
+
+    private void appendRounds(TieredRoundHistoryStore store, int simulationId, int numberOfRounds) {
+        for (int roundNumber = 1; roundNumber <= numberOfRounds; roundNumber++) {
+            RoundResultDto roundResultDto = new RoundResultDto();
+            roundResultDto.setSimulationId(simulationId);
+            roundResultDto.setSeasonNumber(1);
+            roundResultDto.setRoundNumber(roundNumber);
+            roundResultDto.getResultForCurrentRound().put("Player1", (roundNumber - 1) % 3);
+            store.append(roundResultDto);
+        }
+    }
+}
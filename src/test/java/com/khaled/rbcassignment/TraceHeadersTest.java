@@ -0,0 +1,51 @@
+package com.khaled.rbcassignment;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TraceHeadersTest {
+
+    @Test
+    public void untracedRoundsCarryNoHeaders(){
+        assertThat(TraceHeaders.forward(null, "Player1")).isNull();
+        assertThat(TraceHeaders.forward(new RecordHeaders(), "Player1")).isNull();
+    }
+
+    @Test
+    public void forwardedHeadersKeepTheRoundAndItsOrigin(){
+        Headers roundStart = TraceHeaders.start(roundStart(7, 2, 5), "GameController");
+
+        Headers input = TraceHeaders.forward(roundStart, "Player1");
+
+        assertThat(TraceHeaders.isTraced(input)).isTrue();
+        assertThat(input.lastHeader(TraceHeaders.ROUND).value()).isEqualTo("7/2/5".getBytes());
+        assertThat(input.lastHeader(TraceHeaders.ORIGIN).value()).isEqualTo(roundStart.lastHeader(TraceHeaders.ORIGIN).value());
+        assertThat(input.lastHeader(TraceHeaders.SENT_BY).value()).isEqualTo("Player1".getBytes());
+    }
+
+    @Test
+    public void storeKeepsTheLastTraces(){
+        RoundTraceStore roundTraceStore = new RoundTraceStore(3);
+        for (int roundNumber = 1; roundNumber <= 5; roundNumber++) {
+            roundTraceStore.add(TraceHeaders.toTrace(TraceHeaders.send(TraceHeaders.collect(TraceHeaders.start(roundStart(1, 1, roundNumber), "GameController"),
+                    LatencyMetrics.nowMicros()), "ResultAnalyzer"), "ScoreKeeper", LatencyMetrics.nowMicros()));
+        }
+
+        assertThat(roundTraceStore.get(1, 1, 2)).isNull();
+        assertThat(roundTraceStore.get(1, 1, 5).getCriticalPath()).extracting("from").containsExactly("ResultAnalyzer");
+        assertThat(roundTraceStore.getTraces(1)).extracting("roundNumber").containsExactly(3, 4, 5);
+        assertThat(roundTraceStore.getTraces(2)).isEmpty();
+    }
+
+    private static RoundStartDto roundStart(int simulationId, int seasonNumber, int roundNumber) {
+        RoundStartDto roundStartDto = new RoundStartDto();
+        roundStartDto.setSimulationId(simulationId);
+        roundStartDto.setSeasonNumber(seasonNumber);
+        roundStartDto.setRoundNumber(roundNumber);
+        roundStartDto.setStartedAtMicros(LatencyMetrics.nowMicros());
+        return roundStartDto;
+    }
+}
@@ -0,0 +1,177 @@
+package com.khaled.rbcassignment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TurboEngineTest {
+
+    private static final int NUMBER_OF_PLAYERS = 5;
+
+    private final MessageCodecs messageCodecs = new MessageCodecs();
+    private InMemoryMessageBus messageBus;
+    private GeneratorPool generatorPool;
+    private PlayerPool playerPool;
+    private RoundTimer roundTimer;
+    private List<Player> players;
+    private TurboEngine turboEngine;
+
+    @Before
+    public void setup(){
+        messageBus = new InMemoryMessageBus(100, 4, new MessageBusProperties());
+        generatorPool = new GeneratorPool(messageBus, messageCodecs, GeneratorPool.BUILT_IN_GENERATORS.keySet());
+        players = new ArrayList<>();
+        for (int playerNumber = 1; playerNumber <= NUMBER_OF_PLAYERS; playerNumber++) {
+            players.add(new Player("Player" + playerNumber, messageBus, messageCodecs));
+        }
+        playerPool = new PlayerPool(messageBus, messageCodecs, players, 2, 2, 4);
+        roundTimer = new RoundTimer(messageBus);
+        turboEngine = new TurboEngine(generatorPool.getGenerators(), players, new PredictionStrategies(), new ScoringEngine());
+    }
+
+    @After
+    public void tearDown(){
+        roundTimer.destroy();
+        playerPool.destroy();
+        messageBus.destroy();
+    }
+
+    @Test
+    public void scoreIsTheSumOfTheRoundsResults() throws Exception {
+        List<RoundResultDto> rounds = new ArrayList<>();
+        SimulationScoreDto simulationScoreDto = turboEngine.run(simulation(3, 4, 42L), rounds::add);
+
+        assertThat(simulationScoreDto.getStatus()).isEqualTo(StatusEnum.COMPLETE);
+        assertThat(rounds).hasSize(12);
+        assertThat(rounds.get(4).getSeasonNumber()).isEqualTo(2);
+        assertThat(rounds.get(4).getRoundNumber()).isEqualTo(1);
+
+        Map<String, Integer> totals = new HashMap<>();
+        for (RoundResultDto round : rounds) {
+            round.getResultForCurrentRound().forEach((player, points) -> totals.merge(player, points, Integer::sum));
+        }
+        assertThat(totals).hasSize(NUMBER_OF_PLAYERS + 1);
+        totals.forEach((player, points) -> assertThat(simulationScoreDto.getPlayersScore().get(player).get()).isEqualTo(points));
+    }
+
+    @Test
+    public void parallelRunPlaysTheSameSimulations() throws Exception {
+        List<SimulationDto> simulations = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            SimulationDto simulationDto = simulation(5, 20, i);
+            simulationDto.setSimulationId(i);
+            simulations.add(simulationDto);
+        }
+
+        List<SimulationScoreDto> simulationsScores = turboEngine.runAll(simulations);
+
+        assertThat(simulationsScores).hasSize(simulations.size());
+        for (int i = 0; i < simulations.size(); i++) {
+            assertThat(scores(simulationsScores.get(i))).isEqualTo(scores(turboEngine.run(simulations.get(i))));
+        }
+    }
+
+    /**
+     * Same seeds on the message bus and in the TurboEngine play the same rounds. The PredictionEngine is left out,
+     * on the bus the values it has seen when it predicts depend on the delivery of the after the fact messages.
+     */
+    @Test
+    public void messageBusPlaysTheSameRoundsForTheSameSeed() throws Exception {
+        List<SimulationDto> simulations = Arrays.asList(simulation(3, 5, 7L), simulation(2, 8, -99L), simulation(1, 10, 123456789L));
+
+        Map<Integer, List<RoundResultDto>> busRounds = new ConcurrentHashMap<>();
+        CountDownLatch completed = new CountDownLatch(simulations.size());
+        messageBus.subscribe("TurboEngineTest", message -> {
+            if(GameController.ROUND_COMPLETED_TOPIC.equals(message.topic())){
+                RoundResultDto roundResultDto = messageCodecs.decode(message, RoundResultDto.class);
+                busRounds.computeIfAbsent(roundResultDto.getSimulationId(), id -> Collections.synchronizedList(new ArrayList<>())).add(roundResultDto);
+            } else {
+                completed.countDown();
+            }
+        }, GameController.ROUND_COMPLETED_TOPIC, GameController.SIMULATION_COMPLETED_TOPIC);
+
+        GameController gameController = startPipeline();
+        for (SimulationDto simulationDto : simulations) {
+            gameController.simulations(simulationDto);
+        }
+        assertThat(completed.await(30, TimeUnit.SECONDS)).isTrue();
+
+        for (SimulationDto simulationDto : simulations) {
+            List<RoundResultDto> turboRounds = new ArrayList<>();
+            turboEngine.run(simulationDto, turboRounds::add);
+
+            List<RoundResultDto> rounds = busRounds.get(simulationDto.getSimulationId());
+            assertThat(rounds).hasSize(turboRounds.size());
+            for (int i = 0; i < rounds.size(); i++) {
+                assertThat(rounds.get(i).getSeasonNumber()).isEqualTo(turboRounds.get(i).getSeasonNumber());
+                assertThat(rounds.get(i).getRoundNumber()).isEqualTo(turboRounds.get(i).getRoundNumber());
+                assertThat(generatorsValues(rounds.get(i))).isEqualTo(generatorsValues(turboRounds.get(i)));
+                assertThat(playersResults(rounds.get(i))).isEqualTo(playersResults(turboRounds.get(i)));
+            }
+        }
+    }
+
+    private GameController startPipeline() {
+        ResultAnalyzer resultAnalyzer = new ResultAnalyzer();
+        resultAnalyzer.setMessageBus(messageBus);
+        resultAnalyzer.setMessageCodecs(messageCodecs);
+        resultAnalyzer.subscribe();
+
+        PredictionEngine predictionEngine = new PredictionEngine();
+        predictionEngine.setMessageBus(messageBus);
+        predictionEngine.setMessageCodecs(messageCodecs);
+        predictionEngine.subscribe();
+
+        generatorPool.subscribe();
+        playerPool.subscribe();
+
+        GameController gameController = new GameController();
+        gameController.setMessageBus(messageBus);
+        gameController.setMessageCodecs(messageCodecs);
+        gameController.setGeneratorPool(generatorPool);
+        gameController.setRoundTimer(roundTimer);
+        gameController.setNumberOfPlayers(NUMBER_OF_PLAYERS);
+        gameController.subscribe();
+        return gameController;
+    }
+
+    private static Map<String, Integer> scores(SimulationScoreDto simulationScoreDto) {
+        Map<String, Integer> scores = new HashMap<>();
+        simulationScoreDto.getPlayersScore().forEach((player, score) -> scores.put(player, score.get()));
+        return scores;
+    }
+
+    private static Map<String, Integer> generatorsValues(RoundResultDto roundResultDto) {
+        Map<String, Integer> values = new HashMap<>();
+        for (RoundInputDto roundInputDto : roundResultDto.getGeneratorsInputsForCurrentRound()) {
+            values.put(roundInputDto.getSourceName(), roundInputDto.getValue());
+        }
+        return values;
+    }
+
+    private static Map<String, Integer> playersResults(RoundResultDto roundResultDto) {
+        Map<String, Integer> results = new HashMap<>(roundResultDto.getResultForCurrentRound());
+        results.remove(TurboEngine.PREDICTION_ENGINE);
+        return results;
+    }
+
+    private static SimulationDto simulation(int numberOfSeasons, int numberOfRounds, long seed) {
+        SimulationDto simulationDto = new SimulationDto();
+        simulationDto.setNumberOfSeasons(numberOfSeasons);
+        simulationDto.setNumberOfRounds(numberOfRounds);
+        simulationDto.setSeed(seed);
+        return simulationDto;
+    }
+}